@@ -25,6 +25,25 @@ export async function addToCart(productId: number, quantity: number = 1) {
   return data;
 }
 
+export type BatchLine = { productId: number; quantity: number };
+
+export type BatchLineResult = BatchLine & {
+  status: 'ADDED' | 'UPDATED' | 'REMOVED' | 'REJECTED';
+  message?: string;
+};
+
+/** Adds several products in one request, e.g. to reorder a past order. */
+export async function addItemsToCart(items: BatchLine[]): Promise<{ cart: CartDto; results: BatchLineResult[] }> {
+  const { data } = await http.post('/cart/items:batch', { items });
+  return data;
+}
+
+/** Sets quantities for several products at once; quantity 0 removes the product. */
+export async function setCartItems(items: BatchLine[]): Promise<{ cart: CartDto; results: BatchLineResult[] }> {
+  const { data } = await http.patch('/cart/items:batch', { items });
+  return data;
+}
+
 export async function updateCartItem(itemId: number, quantity: number) {
   const { data } = await http.patch(`/cart/items/${itemId}`, { quantity });
   return data;
@@ -7,9 +7,31 @@ export type Product = {
   description?: string;
   price: number;
   imageUrl?: string;
+  thumbnailUrl?: string;
+  mediumUrl?: string;
 };
 
-export async function listProducts(): Promise<Product[]> {
-  const { data } = await http.get('/products');
+export type ProductPage = {
+  items: Product[];
+  nextCursor: string | null;
+};
+
+export type ProductFilters = {
+  active?: boolean;
+  minPrice?: number;
+  maxPrice?: number;
+  maxStock?: number;
+  name?: string;
+  category?: number;
+};
+
+// One page; pass the returned nextCursor back for the next one, until it is null.
+export async function listProducts(cursor?: string, filters: ProductFilters = {}, limit?: number): Promise<ProductPage> {
+  const { data } = await http.get<ProductPage>('/products', { params: { ...filters, cursor, limit } });
   return data;
 }
+
+export async function countProducts(filters: ProductFilters = {}): Promise<number> {
+  const { data } = await http.get<{ count: number }>('/products/count', { params: filters });
+  return data.count;
+}
@@ -22,20 +22,20 @@ export default function AdminDashboard() {
     async function fetchDashboardData() {
         try {
             const results = await Promise.allSettled([
-                API.get("/products"),
+                API.get("/products/count"),
                 API.get("/orders/all"),
                 API.get("/payments/pending"),
                 API.get("/api/reviews/pending"),
                 API.get("/discounts").catch(() => ({ data: [] }))
             ]);
 
-            const products = results[0].status === "fulfilled" ? results[0].value.data : [];
+            const productCount = results[0].status === "fulfilled" ? results[0].value.data.count : 0;
             const orders = results[1].status === "fulfilled" ? results[1].value.data : [];
             const payments = results[2].status === "fulfilled" ? results[2].value.data : [];
             const reviews = results[3].status === "fulfilled" ? results[3].value.data : [];
             const discounts = results[4].status === "fulfilled" ? results[4].value.data : [];
 
-            console.log("Dashboard Data:", { products, orders, payments, reviews, discounts });
+            console.log("Dashboard Data:", { productCount, orders, payments, reviews, discounts });
 
             const totalRevenue = orders.reduce((sum, order) => {
                 const orderTotal = order.total || order.totalAmount || 0;
@@ -48,7 +48,7 @@ export default function AdminDashboard() {
 
             setStats({
                 totalUsers: 0,
-                totalProducts: products.length,
+                totalProducts: productCount,
                 totalOrders: orders.length,
                 pendingPayments: payments.length,
                 pendingReviews: reviews.length,
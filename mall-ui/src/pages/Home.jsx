@@ -21,14 +21,15 @@ export default function Home() {
 
     async function fetchHomeData() {
         try {
-            const [productsRes, categoriesRes] = await Promise.all([
-                API.get("/products"),
+            const [productsRes, countRes, categoriesRes] = await Promise.all([
+                API.get("/products", { params: { limit: 6 } }),
+                API.get("/products/count"),
                 API.get("/categories")
             ]);
-            setFeaturedProducts(productsRes.data.slice(0, 6));
+            setFeaturedProducts(productsRes.data.items.slice(0, 6));
             setCategories(categoriesRes.data.slice(0, 4));
             setStats({
-                products: productsRes.data.length,
+                products: countRes.data.count,
                 customers: 1000,
                 orders: 500
             });
@@ -18,7 +18,7 @@ export default function Home() {
   const add = useCart((s) => s.add);
 
   useEffect(() => {
-    listProducts().then(setProducts).catch(console.error);
+    listProducts(undefined, {}, 8).then((page) => setProducts(page.items)).catch(console.error);
   }, []);
 
   const handleAddToCart = async (productId: number, productName: string) => {
@@ -5,16 +5,35 @@ import { useAuth } from "../AuthContext";
 
 export default function Products() {
     const [products, setProducts] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [total, setTotal] = useState(null);
     const [loading, setLoading] = useState(true);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [searchTerm, setSearchTerm] = useState("");
     const { role } = useAuth();
 
     useEffect(() => {
+        API.get("/products/count")
+            .then(res => setTotal(res.data.count))
+            .catch(() => setTotal(null));
         API.get("/products")
-            .then(res => setProducts(res.data))
+            .then(res => {
+                setProducts(res.data.items);
+                setNextCursor(res.data.nextCursor);
+            })
             .finally(() => setLoading(false));
     }, []);
 
+    const loadMore = () => {
+        setLoadingMore(true);
+        API.get("/products", { params: { cursor: nextCursor } })
+            .then(res => {
+                setProducts(prev => [...prev, ...res.data.items]);
+                setNextCursor(res.data.nextCursor);
+            })
+            .finally(() => setLoadingMore(false));
+    };
+
     const filteredProducts = products.filter(product =>
         product.name.toLowerCase().includes(searchTerm.toLowerCase())
     );
@@ -143,6 +162,7 @@ export default function Products() {
                     fontSize: "16px"
                 }}>
                     Showing <strong>{filteredProducts.length}</strong> product{filteredProducts.length !== 1 ? 's' : ''}
+                    {total !== null && !searchTerm && <> of <strong>{total}</strong></>}
                 </div>
 
                 {/* Products Grid */}
@@ -169,6 +189,30 @@ export default function Products() {
                         ))}
                     </div>
                 )}
+
+                {/* Load More */}
+                {nextCursor && (
+                    <div style={{ textAlign: "center", marginTop: "40px" }}>
+                        <button
+                            onClick={loadMore}
+                            disabled={loadingMore}
+                            style={{
+                                padding: "14px 32px",
+                                background: "white",
+                                color: "#4B368B",
+                                border: "2px solid #4B368B",
+                                borderRadius: "12px",
+                                fontSize: "16px",
+                                fontWeight: "700",
+                                cursor: loadingMore ? "default" : "pointer",
+                                opacity: loadingMore ? 0.6 : 1,
+                                transition: "all 0.3s"
+                            }}
+                        >
+                            {loadingMore ? "Loading..." : "Load more products"}
+                        </button>
+                    </div>
+                )}
             </div>
         </div>
     );
@@ -206,7 +250,7 @@ function ProductCard({ product }) {
                 }}>
                     {product.imageUrl ? (
                         <img
-                            src={`http://localhost:8081${product.imageUrl}?t=${new Date().getTime()}`}
+                            src={`http://localhost:8081${product.mediumUrl || product.imageUrl}`}
                             alt={product.name}
                             style={{
                                 width: "100%",
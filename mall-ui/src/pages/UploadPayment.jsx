@@ -70,12 +70,24 @@ export default function UploadPayment() {
         setMessage("");
 
         try {
+            // The receipt is uploaded first; the payment may only attach a receipt its payer uploaded
+            let uploadedReceiptUrl = receiptUrl;
+            if (receiptFile && !uploadedReceiptUrl) {
+                const formData = new FormData();
+                formData.append("file", receiptFile);
+                const res = await API.post("/payments/receipt", formData, {
+                    headers: { "Content-Type": "multipart/form-data" }
+                });
+                uploadedReceiptUrl = res.data.url;
+                setReceiptUrl(uploadedReceiptUrl);
+            }
+
             const payload = {
                 orderId: parseInt(selectedOrder),
                 paymentMethod,
                 amount: parseFloat(amount),
                 reference: reference || undefined,
-                receiptUrl: receiptUrl || undefined,
+                receiptUrl: uploadedReceiptUrl || undefined,
 
                 // Card fields
                 ...(paymentMethod === "CARD" && {
@@ -474,7 +486,7 @@ export default function UploadPayment() {
                                 </label>
                                 <input
                                     type="file"
-                                    onChange={(e) => setReceiptFile(e.target.files[0])}
+                                    onChange={(e) => { setReceiptFile(e.target.files[0]); setReceiptUrl(""); }}
                                     accept="image/*,.pdf"
                                     style={{
                                         width: "100%",
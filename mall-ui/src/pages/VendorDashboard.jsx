@@ -19,6 +19,18 @@ export default function VendorDashboard() {
         fetchDashboardData();
     }, []);
 
+    // ✅ Low stock (stock < 10) is filtered on the server; follow the cursor through every page
+    async function fetchLowStock() {
+        const items = [];
+        let cursor = null;
+        do {
+            const res = await API.get("/products", { params: { maxStock: 9, limit: 100, cursor } });
+            items.push(...res.data.items);
+            cursor = res.data.nextCursor;
+        } while (cursor);
+        return items;
+    }
+
     async function fetchDashboardData() {
         setLoading(true);
         setError("");
@@ -27,10 +39,14 @@ export default function VendorDashboard() {
             // ✅ Fetch all data with proper error handling
             console.log("Fetching dashboard data...");
 
-            const [productsRes, ordersRes, discountsRes] = await Promise.all([
-                API.get("/products").catch(err => {
+            const [productCountRes, lowStock, ordersRes, discountsRes] = await Promise.all([
+                API.get("/products/count").catch(err => {
                     console.error("Products API error:", err);
-                    return { data: [] };
+                    return { data: { count: 0 } };
+                }),
+                fetchLowStock().catch(err => {
+                    console.error("Products API error:", err);
+                    return [];
                 }),
                 API.get("/orders").catch(err => {  // ✅ Changed from /orders?status=all
                     console.error("Orders API error:", err);
@@ -42,17 +58,13 @@ export default function VendorDashboard() {
                 })
             ]);
 
-            console.log("Products:", productsRes.data);
+            console.log("Products:", productCountRes.data, lowStock);
             console.log("Orders:", ordersRes.data);
             console.log("Discounts:", discountsRes.data);
 
-            const products = Array.isArray(productsRes.data) ? productsRes.data : [];
             const orders = Array.isArray(ordersRes.data) ? ordersRes.data : [];
             const discounts = Array.isArray(discountsRes.data) ? discountsRes.data : [];
 
-            // ✅ Filter low stock products (stock < 10)
-            const lowStock = products.filter(p => p.stock != null && p.stock < 10);
-
             // ✅ Calculate total revenue safely
             const totalRevenue = orders.reduce((sum, o) => {
                 const orderTotal = parseFloat(o.total) || 0;
@@ -68,7 +80,7 @@ export default function VendorDashboard() {
             const activeDiscountCount = discounts.filter(d => d.active === true).length;
 
             setStats({
-                totalProducts: products.length,
+                totalProducts: productCountRes.data?.count ?? 0,
                 lowStockProducts: lowStock.length,
                 totalOrders: orders.length,
                 pendingOrders: pendingCount,
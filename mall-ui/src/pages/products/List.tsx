@@ -1,13 +1,20 @@
-import { Grid2 as Grid, Stack, TextField } from "@mui/material";
+import { Button, Grid2 as Grid, Stack, TextField } from "@mui/material";
 import ProductCard from "../../components/ProductCard";
 import { useEffect, useState } from "react";
 import { listProducts, type ProductDto } from "../../api/products";
 
 export default function ProductsPage() {
   const [items, setItems] = useState<ProductDto[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
   const [q, setQ] = useState("");
 
-  useEffect(() => { listProducts().then(setItems); }, []);
+  const load = (cursor?: string) =>
+    listProducts(cursor).then(page => {
+      setItems(prev => cursor ? [...prev, ...page.items] : page.items);
+      setNextCursor(page.nextCursor);
+    });
+
+  useEffect(() => { load(); }, []);
   const filtered = items.filter(p =>
     p.name.toLowerCase().includes(q.toLowerCase()) || p.sku.toLowerCase().includes(q.toLowerCase())
   );
@@ -33,6 +40,11 @@ export default function ProductsPage() {
           </Grid>
         ))}
       </Grid>
+      {nextCursor && (
+        <Button variant="outlined" onClick={() => load(nextCursor)}>
+          Load more
+        </Button>
+      )}
     </Stack>
   );
 }
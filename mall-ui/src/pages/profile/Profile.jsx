@@ -182,7 +182,7 @@ export default function Profile() {
                         }}>
                             {user.profilePictureUrl || profilePicturePreview ? (
                                 <img
-                                    src={profilePicturePreview || `http://localhost:8081${user.profilePictureUrl}`}
+                                    src={profilePicturePreview || `http://localhost:8081${user.profilePictureThumbnailUrl || user.profilePictureUrl}`}
                                     alt="Profile"
                                     style={{
                                         width: '100%',
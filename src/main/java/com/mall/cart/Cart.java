@@ -4,6 +4,9 @@ import com.mall.common.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Entity
 @Table(name = "carts", indexes = @Index(name = "idx_cart_user", columnList = "userEmail", unique = true))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
@@ -13,4 +16,12 @@ public class Cart extends BaseEntity {
 
     @Column(nullable = false, length = 255, unique = true)
     private String userEmail; // from JWT subject
+
+    @Version
+    private long version;
+
+    @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
+    @Builder.Default
+    private List<CartItem> items = new ArrayList<>();
 }
@@ -1,6 +1,8 @@
 package com.mall.cart;
 
 import com.mall.cart.dto.*;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,6 +26,16 @@ public class CartController {
         return ResponseEntity.ok(service.addItem(email, req));
     }
 
+    @PostMapping("/items:batch")
+    public BatchCartResponse addBatch(@AuthenticationPrincipal UserDetails principal, @RequestBody BatchItemsRequest req) {
+        return service.addItems(principal.getUsername(), req);
+    }
+
+    @PatchMapping("/items:batch")
+    public BatchCartResponse updateBatch(@AuthenticationPrincipal UserDetails principal, @RequestBody BatchItemsRequest req) {
+        return service.setItems(principal.getUsername(), req);
+    }
+
     @PatchMapping("/items/{itemId}")
     public CartDto update(@AuthenticationPrincipal UserDetails principal, @PathVariable Long itemId, @RequestBody UpdateItemRequest req) {
         String email = principal.getUsername();
@@ -46,4 +58,10 @@ public class CartController {
     public ResponseEntity<?> badRequest(IllegalArgumentException ex) {
         return ResponseEntity.badRequest().body(java.util.Map.of("message", ex.getMessage()));
     }
+
+    /** Still conflicting after CartService's retries; the client can simply send the request again. */
+    @ExceptionHandler({ConcurrencyFailureException.class})
+    public ResponseEntity<?> conflict(ConcurrencyFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "Cart was changed concurrently, please retry"));
+    }
 }
@@ -8,7 +8,7 @@ import lombok.*;
 @Table(name = "cart_items", indexes = {
         @Index(name = "idx_cartitem_cart", columnList = "cart_id"),
         @Index(name = "idx_cartitem_product", columnList = "productId")
-})
+}, uniqueConstraints = @UniqueConstraint(name = "uk_cartitem_cart_product", columnNames = {"cart_id", "productId"}))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class CartItem extends BaseEntity {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -35,4 +35,7 @@ public class CartItem extends BaseEntity {
 
     @Column(nullable = false)
     private Double lineTotal; // price * quantity
+
+    @Version
+    private long version;
 }
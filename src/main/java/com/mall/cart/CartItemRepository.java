@@ -1,6 +1,9 @@
 package com.mall.cart;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -9,4 +12,22 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     List<CartItem> findByCartId(Long cartId);
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
     void deleteByCartId(Long cartId);
+
+    /** One DELETE statement, unlike {@link #deleteByCartId} which loads and removes each item. */
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id = :cartId")
+    int deleteAllInCart(@Param("cartId") Long cartId);
+
+    /**
+     * Adds to the quantity in the database rather than writing back a value read earlier, so
+     * concurrent adds of the same product all count. Returns 0 when the cart has no such line.
+     * The line total is assigned first because MySQL evaluates SET clauses left to right. Bulk updates
+     * skip {@code @UpdateTimestamp}, so {@code updatedAt} is set here, keeping the cart from looking
+     * idle to {@link CartSweeper}.
+     */
+    @Modifying
+    @Query("update CartItem i set i.lineTotal = i.price * (i.quantity + :quantity), i.quantity = i.quantity + :quantity, i.version = i.version + 1, " +
+           "i.updatedAt = instant " +
+           "where i.productId = :productId and i.cart.id = (select c.id from Cart c where c.userEmail = :userEmail)")
+    int increment(@Param("userEmail") String userEmail, @Param("productId") Long productId, @Param("quantity") int quantity);
 }
@@ -0,0 +1,111 @@
+package com.mall.cart;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.List;
+
+/** Writes cart lines with batched JDBC statements, for changes that touch many lines at once. */
+@Component
+@RequiredArgsConstructor
+public class CartItemWriter {
+    static final int BATCH_SIZE = 500;
+    private static final String INSERT = "insert into cart_items (cart_id, product_id, sku, name, price, quantity, line_total, version, created_at, updated_at) " +
+                                         "values (?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+    private static final String UPDATE = "update cart_items set quantity = ?, price = ?, line_total = ?, updated_at = ?, version = version + 1 where id = ?";
+    private static final String UPDATE_VERSIONED = UPDATE + " and version = ?";
+    private static final String INCREMENT = "update cart_items set line_total = price * (quantity + ?), quantity = quantity + ?, updated_at = ?, version = version + 1 where id = ?";
+    private static final String DELETE = "delete from cart_items where id = ?";
+
+    /**
+     * A line's values; {@code id} is null until the line is inserted. A non-null {@code version} is the
+     * one the values were computed from, and the update fails if the row has moved on since.
+     */
+    record Row(Long id, long productId, String sku, String name, double price, int quantity, Long version) {
+        Row(Long id, long productId, String sku, String name, double price, int quantity) {
+            this(id, productId, sku, name, price, quantity, null);
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+
+    /** Inserts {@code rows} into the cart and returns their generated ids, in order. */
+    List<Long> insert(long cartId, List<Row> rows) {
+        if (rows.isEmpty()) return List.of();
+        var now = Timestamp.from(Instant.now());
+        var keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate(con -> con.prepareStatement(INSERT, new String[]{"id"}), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                var r = rows.get(i);
+                ps.setLong(1, cartId);
+                ps.setLong(2, r.productId());
+                ps.setString(3, r.sku());
+                ps.setString(4, r.name());
+                ps.setDouble(5, r.price());
+                ps.setInt(6, r.quantity());
+                ps.setDouble(7, r.price() * r.quantity());
+                ps.setTimestamp(8, now);
+                ps.setTimestamp(9, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        }, keys);
+        return keys.getKeyList().stream().map(k -> ((Number) k.values().iterator().next()).longValue()).toList();
+    }
+
+    /** Sets quantity and price (and so the line total) of existing rows. */
+    void update(Collection<Row> rows) {
+        if (rows.isEmpty()) return;
+        var now = Timestamp.from(Instant.now());
+        var versioned = rows.stream().filter(r -> r.version() != null).toList();
+        var unversioned = rows.stream().filter(r -> r.version() == null).toList();
+        if (!unversioned.isEmpty()) jdbc.batchUpdate(UPDATE, unversioned, BATCH_SIZE, (ps, r) -> setUpdate(ps, r, now));
+        if (versioned.isEmpty()) return;
+        int[][] counts = jdbc.batchUpdate(UPDATE_VERSIONED, versioned, BATCH_SIZE, (ps, r) -> {
+            setUpdate(ps, r, now);
+            ps.setLong(6, r.version());
+        });
+        // drivers that rewrite batches report SUCCESS_NO_INFO rather than a count; only 0 means a miss
+        if (Arrays.stream(counts).flatMapToInt(Arrays::stream).anyMatch(c -> c == 0))
+            throw new OptimisticLockingFailureException("Cart item was changed concurrently");
+    }
+
+    /** Adds each row's {@code quantity} to the stored one, whatever it is by now; price is left alone. */
+    void increment(Collection<Row> rows) {
+        if (rows.isEmpty()) return;
+        var now = Timestamp.from(Instant.now());
+        jdbc.batchUpdate(INCREMENT, rows, BATCH_SIZE, (ps, r) -> {
+            ps.setInt(1, r.quantity());
+            ps.setInt(2, r.quantity());
+            ps.setTimestamp(3, now);
+            ps.setLong(4, r.id());
+        });
+    }
+
+    private static void setUpdate(PreparedStatement ps, Row r, Timestamp now) throws SQLException {
+        ps.setInt(1, r.quantity());
+        ps.setDouble(2, r.price());
+        ps.setDouble(3, r.price() * r.quantity());
+        ps.setTimestamp(4, now);
+        ps.setLong(5, r.id());
+    }
+
+    void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        jdbc.batchUpdate(DELETE, ids, BATCH_SIZE, (ps, id) -> ps.setLong(1, id));
+    }
+}
@@ -0,0 +1,50 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.CartDto;
+import com.mall.cart.dto.CartItemDto;
+import com.mall.cart.dto.LineStatus;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+
+/**
+ * Prices a cart against the current catalog. Lines keep the price they were added at; this brings
+ * each line to the product's price now and flags lines that cannot be ordered any more. All of the
+ * cart's products come from one {@link ProductCatalogCache#getAll} call, so a cart costs at most one
+ * query however many lines it has.
+ */
+@Component
+@RequiredArgsConstructor
+public class CartPricer {
+    private final ProductCatalogCache catalog;
+
+    public CartDto price(CartDto cart) {
+        if (cart.items().isEmpty()) return cart;
+        var products = catalog.getAll(cart.items().stream().map(CartItemDto::productId).toList());
+        var lines = new ArrayList<CartItemDto>(cart.items().size());
+        double total = 0;
+        for (var line : cart.items()) {
+            var priced = price(line, products.get(line.productId()));
+            lines.add(priced);
+            total += priced.lineTotal();
+        }
+        return new CartDto(cart.id(), cart.userEmail(), lines, total);
+    }
+
+    /** Lines that cannot be ordered keep the price they were added at. */
+    private static CartItemDto price(CartItemDto line, ProductView p) {
+        double added = line.addedPrice();
+        int quantity = line.quantity();
+        LineStatus status;
+        if (p == null) status = LineStatus.UNAVAILABLE;
+        else if (!Boolean.TRUE.equals(p.active()) || p.price() == null) status = LineStatus.INACTIVE;
+        else if (p.stock() != null && p.stock() < quantity) status = LineStatus.OUT_OF_STOCK;
+        else status = p.price() == added ? LineStatus.OK : LineStatus.PRICE_CHANGED;
+
+        double price = status.orderable() || status == LineStatus.OUT_OF_STOCK ? p.price() : added;
+        return new CartItemDto(line.id(), line.productId(), line.sku(), line.name(), price, quantity, price * quantity, added, status);
+    }
+}
@@ -1,10 +1,15 @@
 package com.mall.cart;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserEmail(String userEmail);
     boolean existsByUserEmail(String userEmail);
+
+    @Query("select c from Cart c left join fetch c.items where c.userEmail = :email")
+    Optional<Cart> findWithItemsByUserEmail(@Param("email") String userEmail);
 }
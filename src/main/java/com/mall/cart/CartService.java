@@ -1,94 +1,128 @@
 package com.mall.cart;
 
 import com.mall.cart.dto.*;
-import com.mall.product.Product;
-import com.mall.product.ProductRepository;
-import lombok.RequiredArgsConstructor;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
 public class CartService {
-    private final CartRepository carts;
-    private final CartItemRepository items;
-    private final ProductRepository products;
+    static final int MAX_BATCH_LINES = 100;
 
-    private Cart getOrCreateCart(String userEmail) {
-        return carts.findByUserEmail(userEmail).orElseGet(() -> carts.save(Cart.builder().userEmail(userEmail).build()));
+    private final CartStore store;
+    private final ProductCatalogCache catalog;
+    private final CartPricer pricer;
+    private final int maxAttempts;
+
+    public CartService(CartStore store, ProductCatalogCache catalog, CartPricer pricer,
+                       @Value("${cart.retry.max-attempts:3}") int maxAttempts) {
+        this.store = store;
+        this.catalog = catalog;
+        this.pricer = pricer;
+        this.maxAttempts = Math.max(1, maxAttempts);
     }
 
+    /** Every cart this service returns is priced against the current catalog by {@link CartPricer}. */
     public CartDto getCart(String userEmail) {
-        var cart = getOrCreateCart(userEmail);
-        var list = items.findByCartId(cart.getId()).stream().map(this::toDto).toList();
-        return new CartDto(cart.getId(), cart.getUserEmail(), list, list.stream().mapToDouble(CartItemDto::lineTotal).sum());
+        return pricer.price(retrying(() -> store.get(userEmail)));
     }
 
-    @Transactional
     public CartDto addItem(String userEmail, AddItemRequest req) {
         if (req.productId() == null || req.quantity() == null || req.quantity() < 1)
             throw new IllegalArgumentException("Invalid product or quantity");
-        var product = products.findById(req.productId()).orElseThrow(() -> new IllegalArgumentException("Product not found"));
+        var product = catalog.get(req.productId()).orElseThrow(() -> new IllegalArgumentException("Product not found"));
         validateProduct(product);
-
-        var cart = getOrCreateCart(userEmail);
-        var existing = items.findByCartIdAndProductId(cart.getId(), product.getId());
-        if (existing.isPresent()) {
-            var ci = existing.get();
-            ci.setQuantity(ci.getQuantity() + req.quantity());
-            ci.setLineTotal(ci.getPrice() * ci.getQuantity());
-            items.save(ci);
-        } else {
-            var ci = CartItem.builder()
-                    .cart(cart)
-                    .productId(product.getId())
-                    .sku(product.getSku())
-                    .name(product.getName())
-                    .price(product.getPrice())
-                    .quantity(req.quantity())
-                    .lineTotal(product.getPrice() * req.quantity())
-                    .build();
-            items.save(ci);
-        }
-        return getCart(userEmail);
+        return pricer.price(retrying(() -> store.add(userEmail, product, req.quantity())));
     }
 
-    @Transactional
     public CartDto updateItem(String userEmail, Long itemId, UpdateItemRequest req) {
         if (req.quantity() == null || req.quantity() < 1) throw new IllegalArgumentException("Quantity must be at least 1");
-        var cart = getOrCreateCart(userEmail);
-        var item = items.findById(itemId).orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
-        if (!item.getCart().getId().equals(cart.getId())) throw new IllegalArgumentException("Item does not belong to cart");
-        item.setQuantity(req.quantity());
-        item.setLineTotal(item.getPrice() * item.getQuantity());
-        items.save(item);
-        return getCart(userEmail);
+        return pricer.price(retrying(() -> store.update(userEmail, itemId, req.quantity())));
     }
 
-    @Transactional
     public CartDto removeItem(String userEmail, Long itemId) {
-        var cart = getOrCreateCart(userEmail);
-        var item = items.findById(itemId).orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
-        if (!item.getCart().getId().equals(cart.getId())) throw new IllegalArgumentException("Item does not belong to cart");
-        items.delete(item);
-        return getCart(userEmail);
+        return pricer.price(retrying(() -> store.remove(userEmail, itemId)));
     }
 
-    @Transactional
     public CartDto clear(String userEmail) {
-        var cart = getOrCreateCart(userEmail);
-        items.deleteByCartId(cart.getId());
-        return getCart(userEmail);
+        return pricer.price(retrying(() -> store.clear(userEmail)));
+    }
+
+    /** Adds every line's quantity; lines that cannot be added are rejected on their own. */
+    public BatchCartResponse addItems(String userEmail, BatchItemsRequest req) {
+        return batch(userEmail, req, false);
+    }
+
+    /** Sets every line's quantity, adding missing products; quantity 0 removes the line. */
+    public BatchCartResponse setItems(String userEmail, BatchItemsRequest req) {
+        return batch(userEmail, req, true);
+    }
+
+    private BatchCartResponse batch(String userEmail, BatchItemsRequest req, boolean setQuantities) {
+        if (req == null || req.items() == null || req.items().isEmpty()) throw new IllegalArgumentException("No items in batch");
+        if (req.items().size() > MAX_BATCH_LINES) throw new IllegalArgumentException("At most " + MAX_BATCH_LINES + " items per batch");
+
+        var lines = req.items();
+        var products = catalog.getAll(lines.stream().filter(Objects::nonNull).map(AddItemRequest::productId).filter(Objects::nonNull).toList());
+        var results = new BatchLineResult[lines.size()];
+        var changes = new ArrayList<CartStore.LineChange>();
+        var positions = new ArrayList<Integer>();
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            String problem = line == null || line.productId() == null || line.quantity() == null || line.quantity() < (setQuantities ? 0 : 1)
+                    ? "Invalid product or quantity" : null;
+            var product = problem == null ? products.get(line.productId()) : null;
+            if (problem == null && product == null) problem = "Product not found";
+            // removing a line is fine even if the product can no longer be bought
+            if (problem == null && line.quantity() > 0) problem = productProblem(product);
+            if (problem != null) {
+                results[i] = BatchLineResult.rejected(line, problem);
+            } else {
+                changes.add(new CartStore.LineChange(product, line.quantity()));
+                positions.add(i);
+            }
+        }
+
+        if (changes.isEmpty()) return new BatchCartResponse(getCart(userEmail), Arrays.asList(results));
+        var outcome = retrying(() -> store.apply(userEmail, changes, setQuantities));
+        for (int k = 0; k < changes.size(); k++) {
+            var line = lines.get(positions.get(k));
+            results[positions.get(k)] = new BatchLineResult(line.productId(), line.quantity(), outcome.statuses().get(k), null);
+        }
+        return new BatchCartResponse(pricer.price(outcome.cart()), Arrays.asList(results));
+    }
+
+    /**
+     * Runs a store call again when it lost a race with another request on the same cart: a stale
+     * version, a lock timeout, or a duplicate cart or line inserted at the same moment. Each attempt
+     * is its own transaction and rereads the cart.
+     */
+    private <T> T retrying(Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                if (attempt >= maxAttempts) throw e;
+            }
+        }
     }
 
-    private void validateProduct(Product p) {
-        if (p.getActive() == null || !p.getActive()) throw new IllegalArgumentException("Product is inactive");
-        if (p.getPrice() == null || p.getPrice() < 0) throw new IllegalArgumentException("Product price invalid");
+    private void validateProduct(ProductView p) {
+        var problem = productProblem(p);
+        if (problem != null) throw new IllegalArgumentException(problem);
     }
 
-    private CartItemDto toDto(CartItem ci) {
-        return new CartItemDto(ci.getId(), ci.getProductId(), ci.getSku(), ci.getName(), ci.getPrice(), ci.getQuantity(), ci.getLineTotal());
+    private static String productProblem(ProductView p) {
+        if (p.active() == null || !p.active()) return "Product is inactive";
+        if (p.price() == null || p.price() < 0) return "Product price invalid";
+        return null;
     }
 }
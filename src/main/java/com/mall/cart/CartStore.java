@@ -0,0 +1,43 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.BatchLineResult;
+import com.mall.cart.dto.CartDto;
+import com.mall.product.ProductView;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Where cart state lives between requests. {@link CartService} validates requests and prices
+ * products; the store applies the change and answers with the resulting cart.
+ */
+public interface CartStore {
+
+    /** One line of a batch: a quantity to add, or to set when setting quantities, where 0 removes the line. */
+    record LineChange(ProductView product, int quantity) {}
+
+    /** The cart after a batch and what happened to each change, in order. */
+    record BatchOutcome(CartDto cart, List<BatchLineResult.Status> statuses) {}
+
+    /** Never creates a cart: a user without one gets an empty cart with a null id. */
+    CartDto get(String userEmail);
+
+    CartDto add(String userEmail, ProductView product, int quantity);
+
+    CartDto update(String userEmail, Long itemId, int quantity);
+
+    CartDto remove(String userEmail, Long itemId);
+
+    CartDto clear(String userEmail);
+
+    /** Applies {@code changes} in order, writing all affected lines in batches. */
+    BatchOutcome apply(String userEmail, List<LineChange> changes, boolean setQuantities);
+
+    /** Makes the database reflect every change accepted for this cart, e.g. before checkout reads it. */
+    default void flush(String userEmail) {}
+
+    /** Carts held in memory, whose rows {@link CartSweeper} must leave alone however old they look. */
+    default Set<Long> residentCartIds() {
+        return Set.of();
+    }
+}
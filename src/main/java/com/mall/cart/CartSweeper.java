@@ -0,0 +1,82 @@
+package com.mall.cart;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deletes carts nobody has touched for {@code cart.sweep.ttl}, together with their items. A cart is
+ * idle when neither its row nor any of its items has been updated since the cutoff. The table is
+ * walked in id order, {@code cart.sweep.chunk} carts per transaction, each chunk locking the carts it
+ * is about to delete so a concurrent add either lands first (and the cart stays) or fails its foreign
+ * key and is retried against a new cart.
+ */
+@Slf4j
+@Component
+public class CartSweeper {
+    private static final String IDLE = "select c.id from carts c where c.id > ? and c.updated_at < ? " +
+                                       "and not exists (select 1 from cart_items i where i.cart_id = c.id and i.updated_at >= ?) " +
+                                       "order by c.id limit ? for update";
+
+    public record Report(int carts, int items) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final CartStore store;
+    private final Duration ttl;
+    private final int chunk;
+
+    public CartSweeper(JdbcTemplate jdbc, TransactionTemplate tx, CartStore store,
+                       @Value("${cart.sweep.ttl:P30D}") Duration ttl,
+                       @Value("${cart.sweep.chunk:500}") int chunk) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.store = store;
+        this.ttl = ttl;
+        this.chunk = Math.max(1, chunk);
+    }
+
+    @Scheduled(initialDelayString = "${cart.sweep.interval-ms:3600000}", fixedDelayString = "${cart.sweep.interval-ms:3600000}")
+    public Report sweep() {
+        var cutoff = Timestamp.from(Instant.now().minus(ttl));
+        long after = 0;
+        int carts = 0, items = 0;
+        Chunk done;
+        do {
+            long from = after;
+            done = tx.execute(status -> sweep(from, cutoff));
+            carts += done.carts();
+            items += done.items();
+            after = done.last();
+        } while (done.full());
+        var report = new Report(carts, items);
+        if (carts > 0) log.info("Cart sweep: {} carts and {} items idle since {} deleted", carts, items, cutoff.toInstant());
+        return report;
+    }
+
+    /** One chunk's outcome; {@code last} is the highest id it looked at, where the next chunk starts. */
+    private record Chunk(long last, boolean full, int carts, int items) {}
+
+    private Chunk sweep(long after, Timestamp cutoff) {
+        List<Long> ids = jdbc.queryForList(IDLE, Long.class, after, cutoff, cutoff, chunk);
+        if (ids.isEmpty()) return new Chunk(after, false, 0, 0);
+        var resident = store.residentCartIds();
+        var idle = ids.stream().filter(id -> !resident.contains(id)).toList();
+        int items = sum(jdbc.batchUpdate("delete from cart_items where cart_id = ?", idle, CartItemWriter.BATCH_SIZE, (ps, id) -> ps.setLong(1, id)));
+        int carts = sum(jdbc.batchUpdate("delete from carts where id = ?", idle, CartItemWriter.BATCH_SIZE, (ps, id) -> ps.setLong(1, id)));
+        return new Chunk(ids.get(ids.size() - 1), ids.size() == chunk, carts, items);
+    }
+
+    private static int sum(int[][] counts) {
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).map(c -> Math.max(c, 0)).sum();
+    }
+}
@@ -0,0 +1,158 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.*;
+import com.mall.product.ProductView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/** Carts read and written through JPA on every request; the default store. */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaCartStore implements CartStore {
+    private final CartRepository carts;
+    private final CartItemRepository items;
+    private final CartItemWriter writer;
+
+    /** The cart and its items in one fetch-join; mutations work on this graph and build their reply from it. */
+    private Cart getOrCreateCart(String userEmail) {
+        return carts.findWithItemsByUserEmail(userEmail).orElseGet(() -> carts.save(Cart.builder().userEmail(userEmail).build()));
+    }
+
+    /** Like {@link #getOrCreateCart}, but a user without a cart gets an empty one that is not saved. */
+    private Cart findCart(String userEmail) {
+        return carts.findWithItemsByUserEmail(userEmail).orElseGet(() -> Cart.builder().userEmail(userEmail).build());
+    }
+
+    @Override
+    public CartDto get(String userEmail) {
+        return toDto(findCart(userEmail));
+    }
+
+    /**
+     * Increments an existing line in place before reading the cart, so the reply includes adds that
+     * committed concurrently. A new line that loses an insert race to another request trips the
+     * unique key on (cart, product); the retry then finds the line and increments it.
+     */
+    @Override
+    @Transactional
+    public CartDto add(String userEmail, ProductView product, int quantity) {
+        if (items.increment(userEmail, product.id(), quantity) > 0) return toDto(getOrCreateCart(userEmail));
+        var cart = getOrCreateCart(userEmail);
+        var ci = CartItem.builder()
+                .cart(cart)
+                .productId(product.id())
+                .sku(product.sku())
+                .name(product.name())
+                .price(product.price())
+                .quantity(quantity)
+                .lineTotal(product.price() * quantity)
+                .build();
+        cart.getItems().add(items.save(ci));
+        return toDto(cart);
+    }
+
+    @Override
+    @Transactional
+    public CartDto update(String userEmail, Long itemId, int quantity) {
+        var cart = findCart(userEmail);
+        var item = itemIn(cart, itemId);
+        item.setQuantity(quantity);
+        item.setLineTotal(item.getPrice() * item.getQuantity());
+        return toDto(cart);
+    }
+
+    @Override
+    @Transactional
+    public CartDto remove(String userEmail, Long itemId) {
+        var cart = findCart(userEmail);
+        cart.getItems().remove(itemIn(cart, itemId));
+        return toDto(cart);
+    }
+
+    @Override
+    @Transactional
+    public CartDto clear(String userEmail) {
+        var cart = findCart(userEmail);
+        if (!cart.getItems().isEmpty()) items.deleteAllInCart(cart.getId());
+        return new CartDto(cart.getId(), cart.getUserEmail(), List.of(), 0.0);
+    }
+
+    /**
+     * Works on plain rows rather than the managed items, so the writes go out as a few JDBC batches
+     * instead of one statement per changed entity. Adds go out as increments, like {@link #add};
+     * sets are checked against the version they were read at. The reply is the cart as read plus
+     * this batch, so an add that commits concurrently shows up on the next read.
+     */
+    @Override
+    @Transactional
+    public BatchOutcome apply(String userEmail, List<LineChange> changes, boolean setQuantities) {
+        var cart = getOrCreateCart(userEmail);
+        var lines = new LinkedHashMap<Long, CartItemWriter.Row>();
+        for (var ci : cart.getItems()) {
+            lines.put(ci.getProductId(), new CartItemWriter.Row(ci.getId(), ci.getProductId(), ci.getSku(), ci.getName(), ci.getPrice(), ci.getQuantity(), ci.getVersion()));
+        }
+        var statuses = new ArrayList<BatchLineResult.Status>(changes.size());
+        for (var change : changes) {
+            var p = change.product();
+            var line = lines.get(p.id());
+            int quantity = setQuantities || line == null ? change.quantity() : line.quantity() + change.quantity();
+            if (quantity == 0) {
+                lines.remove(p.id());
+                statuses.add(BatchLineResult.Status.REMOVED);
+            } else if (line == null) {
+                lines.put(p.id(), new CartItemWriter.Row(null, p.id(), p.sku(), p.name(), p.price(), quantity));
+                statuses.add(BatchLineResult.Status.ADDED);
+            } else {
+                lines.put(p.id(), new CartItemWriter.Row(line.id(), line.productId(), line.sku(), line.name(), line.price(), quantity, line.version()));
+                statuses.add(BatchLineResult.Status.UPDATED);
+            }
+        }
+
+        var kept = lines.values().stream().map(CartItemWriter.Row::id).filter(Objects::nonNull).collect(Collectors.toSet());
+        var before = cart.getItems().stream().collect(Collectors.toMap(CartItem::getId, CartItem::getQuantity));
+        writer.delete(before.keySet().stream().filter(id -> !kept.contains(id)).toList());
+        var changed = lines.values().stream().filter(r -> r.id() != null && r.quantity() != before.get(r.id())).toList();
+        if (setQuantities) {
+            writer.update(changed);
+        } else {
+            writer.increment(changed.stream()
+                    .map(r -> new CartItemWriter.Row(r.id(), r.productId(), r.sku(), r.name(), r.price(), r.quantity() - before.get(r.id())))
+                    .toList());
+        }
+        var inserts = lines.values().stream().filter(r -> r.id() == null).toList();
+        var ids = writer.insert(cart.getId(), inserts);
+
+        var rows = new ArrayList<>(lines.values().stream().filter(r -> r.id() != null).toList());
+        for (int i = 0; i < inserts.size(); i++) {
+            var r = inserts.get(i);
+            rows.add(new CartItemWriter.Row(ids.get(i), r.productId(), r.sku(), r.name(), r.price(), r.quantity()));
+        }
+        rows.sort(Comparator.comparing(CartItemWriter.Row::id));
+        var list = rows.stream()
+                .map(r -> new CartItemDto(r.id(), r.productId(), r.sku(), r.name(), r.price(), r.quantity(), r.price() * r.quantity()))
+                .toList();
+        var dto = new CartDto(cart.getId(), cart.getUserEmail(), list, list.stream().mapToDouble(CartItemDto::lineTotal).sum());
+        return new BatchOutcome(dto, statuses);
+    }
+
+    private CartItem itemIn(Cart cart, Long itemId) {
+        return cart.getItems().stream().filter(ci -> ci.getId().equals(itemId)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        items.existsById(itemId) ? "Item does not belong to cart" : "Cart item not found"));
+    }
+
+    private CartDto toDto(Cart cart) {
+        var list = cart.getItems().stream().map(CartItemDto::of).toList();
+        return new CartDto(cart.getId(), cart.getUserEmail(), list, list.stream().mapToDouble(CartItemDto::lineTotal).sum());
+    }
+}
@@ -0,0 +1,479 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.BatchLineResult;
+import com.mall.cart.dto.CartDto;
+import com.mall.cart.dto.CartItemDto;
+import com.mall.common.WriteAheadLog;
+import com.mall.product.ProductView;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps active carts in memory and writes their changes to the database in the background.
+ * Mutations run under one of {@value #STRIPES} striped locks, are appended to a
+ * {@link WriteAheadLog} and applied in memory; every {@code cart.write-behind.flush-ms} the
+ * changes of all carts go out in one transaction of batched statements, coalesced so a line bumped
+ * ten times is written once; only carts with unwritten changes are visited. New lines are still
+ * inserted synchronously, because clients address lines by their database id. Every
+ * {@code cart.write-behind.evict-ms}, carts that are idle or over {@code cart.write-behind.max-carts}
+ * are dropped from memory once their changes are written.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore {
+    private static final int STRIPES = 64;
+
+    /** A cart line as the store sees it; a removed line lingers until its delete is written. */
+    private static final class Line {
+        final long id;
+        final long productId;
+        String sku;
+        String name;
+        double price;
+        int quantity;
+        boolean removed;
+
+        Line(long id, long productId, String sku, String name, double price, int quantity) {
+            this.id = id;
+            this.productId = productId;
+            this.sku = sku;
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+        }
+
+        Line(CartItem ci) {
+            this(ci.getId(), ci.getProductId(), ci.getSku(), ci.getName(), ci.getPrice(), ci.getQuantity());
+        }
+    }
+
+    private static final class ActiveCart {
+        /** Null until the first line is added; written under the cart's stripe lock. */
+        volatile Long id;
+        final String userEmail;
+        final SortedMap<Long, Line> lines = new TreeMap<>();
+        /** Line id to the number of its latest change that is not in the database yet. */
+        final Map<Long, Long> pending = new HashMap<>();
+        volatile long lastAccess;
+
+        ActiveCart(Long id, String userEmail) {
+            this.id = id;
+            this.userEmail = userEmail;
+        }
+    }
+
+    /** A line's state to write: its quantity and price, or its deletion. */
+    private record Change(long itemId, long seq, boolean delete, int quantity, double price) {
+        String record() {
+            return delete ? "D " + itemId : "U " + itemId + " " + quantity + " " + price;
+        }
+
+        static Change parse(String record) {
+            String[] f = record.split(" ");
+            return f[0].equals("D")
+                    ? new Change(Long.parseLong(f[1]), 0, true, 0, 0)
+                    : new Change(Long.parseLong(f[1]), 0, false, Integer.parseInt(f[2]), Double.parseDouble(f[3]));
+        }
+    }
+
+    private final CartRepository carts;
+    private final CartItemRepository items;
+    private final CartItemWriter writer;
+    private final TransactionTemplate writeTx;
+    private final WriteAheadLog wal;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<String, ActiveCart> active = new ConcurrentHashMap<>();
+    /** Carts with changes not yet drained for writing; added to under the cart's stripe lock. */
+    private final Set<ActiveCart> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong changes = new AtomicLong();
+    private final Object flushing = new Object();
+    private final int maxCarts;
+    private final Duration idle;
+
+    public WriteBehindCartStore(CartRepository carts, CartItemRepository items, CartItemWriter writer,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${cart.write-behind.wal-dir:cart-wal}") String walDir,
+                                @Value("${cart.write-behind.wal-fsync:false}") boolean fsync,
+                                @Value("${cart.write-behind.max-carts:100000}") int maxCarts,
+                                @Value("${cart.write-behind.idle:PT30M}") Duration idle) throws IOException {
+        this.carts = carts;
+        this.items = items;
+        this.writer = writer;
+        this.writeTx = new TransactionTemplate(transactionManager);
+        this.writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.wal = new WriteAheadLog(Path.of(walDir), "cart", fsync);
+        this.maxCarts = maxCarts;
+        this.idle = idle;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+    }
+
+    /** Replays changes a previous run accepted but did not get to write. */
+    @PostConstruct
+    void recover() throws IOException {
+        List<Path> segments = wal.rotate();
+        var latest = new LinkedHashMap<Long, Change>();
+        for (String record : wal.records(segments)) {
+            Change change;
+            try {
+                change = Change.parse(record);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Corrupt cart log record: " + record, e);
+            }
+            latest.remove(change.itemId());
+            latest.put(change.itemId(), change);
+        }
+        if (!latest.isEmpty()) {
+            write(List.copyOf(latest.values()));
+            log.info("Recovered {} cart line changes from the write-ahead log", latest.size());
+        }
+        wal.delete(segments);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        flush();
+        wal.close();
+    }
+
+    @Override
+    public CartDto get(String userEmail) {
+        return withCart(userEmail, this::toDto);
+    }
+
+    @Override
+    public CartDto add(String userEmail, ProductView product, int quantity) {
+        return withCart(userEmail, cart -> {
+            var line = cart.lines.values().stream()
+                    .filter(l -> l.productId == product.id() && !l.removed).findFirst().orElse(null);
+            if (line == null) {
+                insert(cart, List.of(new CartItemWriter.Row(null, product.id(), product.sku(), product.name(), product.price(), quantity)));
+            } else {
+                set(cart, line, line.quantity + quantity, line.price);
+            }
+            return toDto(cart);
+        });
+    }
+
+    @Override
+    public CartDto update(String userEmail, Long itemId, int quantity) {
+        return withCart(userEmail, cart -> {
+            var line = lineIn(cart, itemId);
+            set(cart, line, quantity, line.price);
+            return toDto(cart);
+        });
+    }
+
+    @Override
+    public CartDto remove(String userEmail, Long itemId) {
+        return withCart(userEmail, cart -> {
+            drop(cart, lineIn(cart, itemId));
+            return toDto(cart);
+        });
+    }
+
+    @Override
+    public CartDto clear(String userEmail) {
+        return withCart(userEmail, cart -> {
+            cart.lines.values().stream().filter(l -> !l.removed).forEach(l -> drop(cart, l));
+            return toDto(cart);
+        });
+    }
+
+    /** Quantity changes join the write-behind queue; new lines are inserted together in one batch. */
+    @Override
+    public BatchOutcome apply(String userEmail, List<LineChange> changes, boolean setQuantities) {
+        return withCart(userEmail, cart -> {
+            var statuses = new ArrayList<BatchLineResult.Status>(changes.size());
+            var inserts = new LinkedHashMap<Long, CartItemWriter.Row>();
+            for (var change : changes) {
+                var p = change.product();
+                var queued = inserts.get(p.id());
+                var line = queued != null ? null : cart.lines.values().stream()
+                        .filter(l -> l.productId == p.id() && !l.removed).findFirst().orElse(null);
+                int base = queued != null ? queued.quantity() : line != null ? line.quantity : 0;
+                int quantity = setQuantities ? change.quantity() : base + change.quantity();
+                if (quantity == 0) {
+                    if (line != null) drop(cart, line);
+                    inserts.remove(p.id());
+                    statuses.add(BatchLineResult.Status.REMOVED);
+                } else if (line != null) {
+                    set(cart, line, quantity, line.price);
+                    statuses.add(BatchLineResult.Status.UPDATED);
+                } else {
+                    inserts.put(p.id(), new CartItemWriter.Row(null, p.id(), p.sku(), p.name(), p.price(), quantity));
+                    statuses.add(BatchLineResult.Status.ADDED);
+                }
+            }
+            if (!inserts.isEmpty()) insert(cart, List.copyOf(inserts.values()));
+            return new BatchOutcome(toDto(cart), statuses);
+        });
+    }
+
+    /**
+     * Writes this cart's pending changes and forgets it, so the caller can read and change its rows
+     * directly. Inside a transaction the cart's stripe stays locked until that transaction completes,
+     * so no request loads the cart again before the caller's changes to its rows are committed.
+     */
+    @Override
+    public void flush(String userEmail) {
+        var lock = stripe(userEmail);
+        synchronized (flushing) {
+            lock.lock();
+            try {
+                var cart = active.remove(userEmail);
+                if (cart != null) {
+                    dirty.remove(cart);
+                    try {
+                        write(drain(cart));
+                    } catch (RuntimeException e) {
+                        active.put(userEmail, cart);
+                        if (!cart.pending.isEmpty()) dirty.add(cart);
+                        throw e;
+                    }
+                }
+            } catch (RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.unlock();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Writes the pending changes of every cart that has some in one transaction; returns how many
+     * lines were written. A cart whose stripe is held, e.g. through a checkout, waits for the next run.
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-ms:200}")
+    public int flush() {
+        synchronized (flushing) {
+            var drained = new HashMap<ActiveCart, List<Change>>();
+            try {
+                List<Path> sealed = wal.rotate();
+                boolean skipped = false;
+                for (var cart : List.copyOf(dirty)) {
+                    var lock = stripe(cart.userEmail);
+                    if (!lock.tryLock()) {
+                        skipped = true;
+                        continue;
+                    }
+                    try {
+                        dirty.remove(cart);
+                        var changes = drain(cart);
+                        if (!changes.isEmpty()) drained.put(cart, changes);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                var all = drained.values().stream().flatMap(List::stream).toList();
+                if (!all.isEmpty()) write(all);
+                drained.forEach((cart, changes) -> locked(cart, c -> confirm(c, changes)));
+                // a skipped cart's changes are still only in the sealed segments; a later run deletes them
+                if (!skipped) wal.delete(sealed);
+                return all.size();
+            } catch (IOException | RuntimeException e) {
+                dirty.addAll(drained.keySet());
+                log.warn("Writing cart changes failed; they stay in memory and in the log until the next attempt", e);
+                return 0;
+            }
+        }
+    }
+
+    int activeCarts() {
+        return active.size();
+    }
+
+    @Override
+    public Set<Long> residentCartIds() {
+        return active.values().stream().map(c -> c.id).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    private <T> T withCart(String userEmail, Function<ActiveCart, T> action) {
+        var lock = stripe(userEmail);
+        lock.lock();
+        try {
+            var cart = active.get(userEmail);
+            if (cart == null) {
+                cart = load(userEmail);
+                active.put(userEmail, cart);
+            }
+            cart.lastAccess = System.nanoTime();
+            return action.apply(cart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T locked(ActiveCart cart, Function<ActiveCart, T> action) {
+        var lock = stripe(cart.userEmail);
+        lock.lock();
+        try {
+            return action.apply(cart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ActiveCart load(String userEmail) {
+        var cart = carts.findWithItemsByUserEmail(userEmail);
+        var loaded = new ActiveCart(cart.map(Cart::getId).orElse(null), userEmail);
+        cart.ifPresent(c -> c.getItems().forEach(ci -> loaded.lines.put(ci.getId(), new Line(ci))));
+        return loaded;
+    }
+
+    /**
+     * Inserts new lines right away, since clients address lines by id. A removed line of the same
+     * product may not have had its delete written yet, and a cart keeps one row per product, so
+     * such rows go first.
+     */
+    private void insert(ActiveCart cart, List<CartItemWriter.Row> rows) {
+        var products = rows.stream().map(CartItemWriter.Row::productId).collect(Collectors.toSet());
+        var stale = cart.lines.values().stream().filter(l -> l.removed && products.contains(l.productId)).map(l -> l.id).toList();
+        if (cart.id == null) cart.id = writeTx.execute(status -> carts.save(Cart.builder().userEmail(cart.userEmail).build()).getId());
+        var ids = writeTx.execute(status -> {
+            writer.delete(stale);
+            return writer.insert(cart.id, rows);
+        });
+        stale.forEach(id -> {
+            cart.lines.remove(id);
+            cart.pending.remove(id);
+        });
+        for (int i = 0; i < rows.size(); i++) {
+            var r = rows.get(i);
+            cart.lines.put(ids.get(i), new Line(ids.get(i), r.productId(), r.sku(), r.name(), r.price(), r.quantity()));
+        }
+    }
+
+    private Line lineIn(ActiveCart cart, Long itemId) {
+        var line = cart.lines.get(itemId);
+        if (line != null && !line.removed) return line;
+        throw new IllegalArgumentException(items.existsById(itemId) ? "Item does not belong to cart" : "Cart item not found");
+    }
+
+    /** Logs, then applies, a new quantity and price for {@code line}. */
+    private void set(ActiveCart cart, Line line, int quantity, double price) {
+        var change = new Change(line.id, changes.incrementAndGet(), false, quantity, price);
+        log(change);
+        line.quantity = quantity;
+        line.price = price;
+        cart.pending.put(line.id, change.seq());
+        dirty.add(cart);
+    }
+
+    private void drop(ActiveCart cart, Line line) {
+        var change = new Change(line.id, changes.incrementAndGet(), true, 0, 0);
+        log(change);
+        line.removed = true;
+        cart.pending.put(line.id, change.seq());
+        dirty.add(cart);
+    }
+
+    private void log(Change change) {
+        try {
+            wal.append(change.record());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not log cart change", e);
+        }
+    }
+
+    private List<Change> drain(ActiveCart cart) {
+        var out = new ArrayList<Change>(cart.pending.size());
+        cart.pending.forEach((id, seq) -> {
+            var line = cart.lines.get(id);
+            out.add(new Change(id, seq, line.removed, line.quantity, line.price));
+        });
+        return out;
+    }
+
+    /** Clears the changes that were written, unless the line changed again meanwhile. */
+    private Void confirm(ActiveCart cart, List<Change> written) {
+        for (var change : written) {
+            if (cart.pending.remove(change.itemId(), change.seq()) && change.delete()) cart.lines.remove(change.itemId());
+        }
+        return null;
+    }
+
+    private void write(List<Change> changes) {
+        var updates = changes.stream().filter(c -> !c.delete())
+                .map(c -> new CartItemWriter.Row(c.itemId(), 0, null, null, c.price(), c.quantity()))
+                .toList();
+        var deletes = changes.stream().filter(Change::delete).map(Change::itemId).toList();
+        writeTx.executeWithoutResult(status -> {
+            writer.update(updates);
+            writer.delete(deletes);
+        });
+    }
+
+    /**
+     * Drops clean carts that went idle, then, only while over capacity, the least recently used clean
+     * ones; returns how many were dropped.
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.evict-ms:5000}")
+    public int evict() {
+        long idleSince = System.nanoTime() - idle.toNanos();
+        int evicted = 0;
+        for (var cart : active.values()) {
+            if (cart.lastAccess - idleSince < 0 && evictIfClean(cart)) evicted++;
+        }
+        int excess = active.size() - maxCarts;
+        if (excess <= 0) return evicted;
+        var lru = active.values().stream()
+                .filter(c -> c.pending.isEmpty())
+                .sorted(Comparator.comparingLong(c -> c.lastAccess))
+                .toList();
+        for (var cart : lru) {
+            if (excess <= 0) break;
+            if (evictIfClean(cart)) {
+                evicted++;
+                excess--;
+            }
+        }
+        return evicted;
+    }
+
+    private boolean evictIfClean(ActiveCart cart) {
+        return locked(cart, c -> c.pending.isEmpty() && active.remove(c.userEmail, c));
+    }
+
+    private ReentrantLock stripe(String userEmail) {
+        return stripes[Math.floorMod(userEmail.hashCode(), STRIPES)];
+    }
+
+    private CartDto toDto(ActiveCart cart) {
+        var list = cart.lines.values().stream()
+                .filter(l -> !l.removed)
+                .map(l -> new CartItemDto(l.id, l.productId, l.sku, l.name, l.price, l.quantity, l.price * l.quantity))
+                .toList();
+        return new CartDto(cart.id, cart.userEmail, list, list.stream().mapToDouble(CartItemDto::lineTotal).sum());
+    }
+}
@@ -0,0 +1,6 @@
+package com.mall.cart.dto;
+
+import java.util.List;
+
+/** The cart after a batch, and one result per requested line, in request order. */
+public record BatchCartResponse(CartDto cart, List<BatchLineResult> results) {}
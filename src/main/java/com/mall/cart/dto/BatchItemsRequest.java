@@ -0,0 +1,5 @@
+package com.mall.cart.dto;
+
+import java.util.List;
+
+public record BatchItemsRequest(List<AddItemRequest> items) {}
@@ -0,0 +1,13 @@
+package com.mall.cart.dto;
+
+/** What became of one line of a batch request; {@code message} says why a line was rejected. */
+public record BatchLineResult(Long productId, Integer quantity, Status status, String message) {
+
+    public enum Status { ADDED, UPDATED, REMOVED, REJECTED }
+
+    public static BatchLineResult rejected(AddItemRequest line, String message) {
+        return line == null
+                ? new BatchLineResult(null, null, Status.REJECTED, message)
+                : new BatchLineResult(line.productId(), line.quantity(), Status.REJECTED, message);
+    }
+}
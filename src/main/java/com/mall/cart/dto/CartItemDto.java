@@ -1,3 +1,17 @@
 package com.mall.cart.dto;
 
-public record CartItemDto(Long id, Long productId, String sku, String name, Double price, Integer quantity, Double lineTotal) {}
+import com.mall.cart.CartItem;
+
+/** {@code price} and {@code lineTotal} are current once priced; {@code addedPrice} is the price when the line was added. */
+public record CartItemDto(Long id, Long productId, String sku, String name, Double price, Integer quantity, Double lineTotal,
+                          Double addedPrice, LineStatus status) {
+
+    /** A line as stored, not yet compared with the catalog. */
+    public CartItemDto(Long id, Long productId, String sku, String name, Double price, Integer quantity, Double lineTotal) {
+        this(id, productId, sku, name, price, quantity, lineTotal, price, null);
+    }
+
+    public static CartItemDto of(CartItem ci) {
+        return new CartItemDto(ci.getId(), ci.getProductId(), ci.getSku(), ci.getName(), ci.getPrice(), ci.getQuantity(), ci.getLineTotal());
+    }
+}
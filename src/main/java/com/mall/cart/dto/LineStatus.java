@@ -0,0 +1,18 @@
+package com.mall.cart.dto;
+
+/** How a cart line compares with the catalog right now. */
+public enum LineStatus {
+    OK,
+    /** The product costs something else than when it was added; the line is priced at the current price. */
+    PRICE_CHANGED,
+    /** The product has been deactivated. */
+    INACTIVE,
+    /** There is less stock than the line's quantity. */
+    OUT_OF_STOCK,
+    /** The product no longer exists. */
+    UNAVAILABLE;
+
+    public boolean orderable() {
+        return this == OK || this == PRICE_CHANGED;
+    }
+}
@@ -6,7 +6,9 @@ import lombok.*;
 
 @Entity
 @Table(name = "categories", indexes = {
-        @Index(name = "uk_category_slug", columnList = "slug", unique = true)
+        @Index(name = "uk_category_slug", columnList = "slug", unique = true),
+        @Index(name = "idx_category_lft_rgt", columnList = "lft, rgt"),
+        @Index(name = "idx_category_parent", columnList = "parentId")
 })
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Category extends BaseEntity {
@@ -22,6 +24,12 @@ public class Category extends BaseEntity {
     // Simple parent reference by id to keep schema minimal
     private Long parentId;
 
+    // Nested-set interval maintained by CategoryService: a node's subtree is every
+    // category with lft between its lft and rgt
+    private Integer lft;
+    private Integer rgt;
+    private Integer depth;
+
     @Column(nullable = false)
     private Boolean active = true;
 }
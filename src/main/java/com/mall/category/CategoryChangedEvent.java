@@ -0,0 +1,9 @@
+package com.mall.category;
+
+import com.mall.common.CatalogChange;
+import com.mall.common.CatalogHttpCache;
+
+/** Published by {@link CategoryService} whenever a category is created, updated or deleted. */
+public record CategoryChangedEvent(Long id) implements CatalogChange {
+    @Override public String collection() { return CatalogHttpCache.CATEGORIES; }
+}
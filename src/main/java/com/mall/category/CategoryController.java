@@ -1,5 +1,7 @@
 package com.mall.category;
 
+import com.mall.common.CatalogHttpCache;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -8,20 +10,41 @@ import java.util.List;
 record CategoryDto(Long id, String name, String slug, Long parentId, Boolean active) {}
 record CreateCategoryDto(String name, String slug, Long parentId, Boolean active) {}
 record UpdateCategoryDto(String name, String slug, Long parentId, Boolean active) {}
+record CategoryTreeDto(Long id, String name, String slug, Boolean active, List<CategoryTreeDto> children) {}
 
 @RestController
 @RequestMapping("/categories")
 public class CategoryController {
     private final CategoryService service;
-    public CategoryController(CategoryService s) { this.service = s; }
+    private final CatalogHttpCache httpCache;
+    public CategoryController(CategoryService s, CatalogHttpCache httpCache) {
+        this.service = s;
+        this.httpCache = httpCache;
+    }
 
     @GetMapping
-    public List<CategoryDto> list() {
-        return service.findAll().stream().map(CategoryController::toDto).toList();
+    public ResponseEntity<List<CategoryDto>> list(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return httpCache.conditional(ifNoneMatch, treeTag(),
+                () -> service.listCached().stream().map(CategoryController::toDto).toList());
+    }
+
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryTreeDto>> tree(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return httpCache.conditional(ifNoneMatch, treeTag(), service::tree);
     }
 
     @GetMapping("/{id}")
-    public CategoryDto get(@PathVariable Long id) { return toDto(service.findById(id)); }
+    public CategoryDto get(@PathVariable Long id) { return toDto(service.node(id)); }
+
+    @GetMapping("/{slug}/breadcrumb")
+    public List<CategoryDto> breadcrumb(@PathVariable String slug) {
+        return service.breadcrumb(slug).stream().map(CategoryController::toDto).toList();
+    }
+
+    @GetMapping("/{id}/descendants")
+    public List<CategoryDto> descendants(@PathVariable Long id) {
+        return service.descendants(id).stream().map(CategoryController::toDto).toList();
+    }
 
     @PostMapping
     public ResponseEntity<CategoryDto> create(@RequestBody CreateCategoryDto dto) {
@@ -41,10 +64,16 @@ public class CategoryController {
         return ResponseEntity.noContent().build();
     }
 
+    private String treeTag() { return httpCache.versionTag(CatalogHttpCache.CATEGORIES, service.treeVersion()); }
+
     private static CategoryDto toDto(Category c) {
         return new CategoryDto(c.getId(), c.getName(), c.getSlug(), c.getParentId(), c.getActive());
     }
 
+    private static CategoryDto toDto(CategoryTree.Node n) {
+        return new CategoryDto(n.id(), n.name(), n.slug(), n.parentId(), n.active());
+    }
+
     @ExceptionHandler({IllegalArgumentException.class})
     public ResponseEntity<?> badRequest(IllegalArgumentException ex) {
         return ResponseEntity.badRequest().body(java.util.Map.of("message", ex.getMessage()));
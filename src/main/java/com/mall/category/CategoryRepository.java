@@ -1,10 +1,34 @@
 package com.mall.category;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     boolean existsBySlug(String slug);
     Optional<Category> findBySlug(String slug);
+    List<Category> findByParentId(Long parentId);
+    boolean existsByLftIsNull();
+
+    @Query("select coalesce(max(c.rgt), 0) from Category c")
+    int maxRgt();
+
+    /**
+     * Moves every interval boundary at or after {@code from} by {@code by}: opens a gap there, or closes
+     * one for a negative {@code by}. Intervals that start before {@code from} only stretch or shrink.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Category c set c.lft = case when c.lft >= :from then c.lft + :by else c.lft end, c.rgt = c.rgt + :by, " +
+           "c.updatedAt = instant where c.rgt >= :from")
+    int shift(@Param("from") int from, @Param("by") int by);
+
+    /** Moves the categories whose {@code lft} lies in {@code [lft, rgt]} by {@code by} positions and {@code levels} levels. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Category c set c.lft = c.lft + :by, c.rgt = c.rgt + :by, c.depth = c.depth + :levels, " +
+           "c.updatedAt = instant where c.lft between :lft and :rgt")
+    int moveRange(@Param("lft") int lft, @Param("rgt") int rgt, @Param("by") int by, @Param("levels") int levels);
 }
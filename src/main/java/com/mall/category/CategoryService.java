@@ -1,56 +1,207 @@
 package com.mall.category;
 
+import com.mall.common.TextFolding;
+import com.mall.product.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.text.Normalizer;
-import java.util.List;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class CategoryService {
     private final CategoryRepository repo;
+    private final CategoryTreeLockRepository locks;
+    private final ProductRepository products;
+    private final CategoryTree tree;
+    private final ApplicationEventPublisher events;
 
     public List<Category> findAll() { return repo.findAll(); }
     public Category findById(Long id) {
         return repo.findById(id).orElseThrow(() -> new IllegalArgumentException("Category not found"));
     }
 
+    String treeVersion() { return tree.version(); }
+
+    List<CategoryTree.Node> listCached() { return tree.all(); }
+
+    List<CategoryTreeDto> tree() { return tree.roots(); }
+
+    CategoryTree.Node node(Long id) {
+        return tree.byId(id).orElseThrow(() -> new IllegalArgumentException("Category not found"));
+    }
+
+    List<CategoryTree.Node> breadcrumb(String slug) {
+        return tree.breadcrumb(tree.bySlug(slug).orElseThrow(() -> new IllegalArgumentException("Category not found")));
+    }
+
+    List<CategoryTree.Node> descendants(Long id) { return tree.descendants(node(id)); }
+
     private String slugify(String input) {
-        String s = Normalizer.normalize(input.trim().toLowerCase(), Normalizer.Form.NFD)
-                .replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
+        String s = TextFolding.fold(input.trim());
         s = s.replaceAll("[^a-z0-9]+", "-").replaceAll("(^-|-$)", "");
         return s.isBlank() ? "n-a" : s;
     }
 
     @Transactional
     public Category create(String name, String slug, Long parentId, Boolean active) {
+        lockTree();
         String finalSlug = (slug == null || slug.isBlank()) ? slugify(name) : slugify(slug);
         if (repo.existsBySlug(finalSlug)) throw new IllegalArgumentException("Slug already exists");
-        if (parentId != null && !repo.existsById(parentId)) throw new IllegalArgumentException("Parent category not found");
+        var parent = parentId == null ? null : repo.findById(parentId).orElseThrow(() -> new IllegalArgumentException("Parent category not found"));
         var c = Category.builder()
                 .name(name.trim())
                 .slug(finalSlug)
                 .parentId(parentId)
                 .active(active == null ? true : active)
                 .build();
-        return repo.save(c);
+        // a new category goes last: after its parent's other children, or after the last root
+        if (parent == null) {
+            int end = repo.maxRgt();
+            c.setLft(end + 1);
+            c.setRgt(end + 2);
+            c.setDepth(0);
+        } else {
+            int at = parent.getRgt();
+            repo.shift(at, 2);
+            c.setLft(at);
+            c.setRgt(at + 1);
+            c.setDepth(parent.getDepth() + 1);
+        }
+        c = repo.save(c);
+        events.publishEvent(new CategoryChangedEvent(c.getId()));
+        return c;
     }
 
     @Transactional
     public Category update(Long id, String name, String slug, Long parentId, Boolean active) {
+        lockTree();
         var c = findById(id);
         String finalSlug = (slug == null || slug.isBlank()) ? slugify(name != null ? name : c.getName()) : slugify(slug);
         if (!finalSlug.equals(c.getSlug()) && repo.existsBySlug(finalSlug)) throw new IllegalArgumentException("Slug already exists");
         if (parentId != null && !repo.existsById(parentId)) throw new IllegalArgumentException("Parent category not found");
+        boolean moved = !Objects.equals(parentId, c.getParentId());
         c.setName(name != null ? name.trim() : c.getName());
         c.setSlug(finalSlug);
         c.setParentId(parentId);
         c.setActive(active == null ? c.getActive() : active);
-        return repo.save(c);
+        if (moved) {
+            move(c, parentId);
+            c = findById(id);
+        } else {
+            c = repo.save(c);
+        }
+        events.publishEvent(new CategoryChangedEvent(id));
+        return c;
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        lockTree();
+        var c = findById(id);
+        if (products.existsByCategoryId(id)) throw new IllegalArgumentException("Category still has products");
+        int lft = c.getLft(), rgt = c.getRgt();
+        // children move up to the deleted category's parent, taking its place in the intervals
+        for (var child : repo.findByParentId(id)) child.setParentId(c.getParentId());
+        repo.delete(c);
+        repo.moveRange(lft + 1, rgt - 1, -1, -1);
+        repo.shift(rgt + 1, -2);
+        events.publishEvent(new CategoryChangedEvent(id));
     }
 
+    /** Numbers categories created before intervals were tracked. */
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional
-    public void delete(Long id) { repo.deleteById(id); }
+    public void numberExistingTree() {
+        if (!locks.existsById(CategoryTreeLock.ID)) locks.save(new CategoryTreeLock(CategoryTreeLock.ID));
+        lockTree();
+        if (repo.existsByLftIsNull()) {
+            renumber();
+            // a tree snapshot taken before this ran holds no intervals
+            events.publishEvent(new CategoryChangedEvent(null));
+        }
+    }
+
+    /**
+     * Makes category writes take turns, so each one shifts intervals from what the previous one
+     * committed. Taken before anything is read, so the reads that follow see that commit.
+     */
+    private void lockTree() {
+        locks.acquire().orElseThrow(() -> new IllegalStateException("Category tree lock row is missing"));
+    }
+
+    /**
+     * Moves {@code c}'s subtree to the end of {@code parentId}'s children, or after the last root: it is
+     * parked after the last interval, the gap it left is closed, and it is moved into a gap opened at the
+     * end of the new parent. Leaves the persistence context cleared.
+     */
+    private void move(Category c, Long parentId) {
+        int lft = c.getLft(), rgt = c.getRgt(), width = rgt - lft + 1, depth = c.getDepth();
+        var parent = parentId == null ? null : findById(parentId);
+        if (parent != null && parent.getLft() >= lft && parent.getLft() <= rgt)
+            throw new IllegalArgumentException("Category cannot be its own ancestor");
+
+        int end = repo.maxRgt();
+        repo.moveRange(lft, rgt, end + 1 - lft, 0);
+        repo.shift(rgt + 1, -width);
+        // the subtree is now the last root, at [end - width + 1, end]
+        if (parent == null) {
+            repo.moveRange(end - width + 1, end, 0, -depth);
+            return;
+        }
+        int at = findById(parentId).getRgt();
+        repo.shift(at, width);
+        repo.moveRange(end + 1, end + width, at - end - 1, parent.getDepth() + 1 - depth);
+    }
+
+    /**
+     * Reassigns nested-set intervals for the whole tree by depth-first walk from the roots,
+     * ordered by id. Only rows whose interval actually changed are written on flush. Writes keep
+     * the intervals up to date themselves; this only numbers a tree that has none yet.
+     */
+    private void renumber() {
+        var all = repo.findAll();
+        var byId = new HashMap<Long, Category>();
+        for (var c : all) byId.put(c.getId(), c);
+
+        var children = new HashMap<Long, List<Category>>();
+        var roots = new ArrayList<Category>();
+        for (var c : all) {
+            if (c.getParentId() == null || !byId.containsKey(c.getParentId())) roots.add(c);
+            else children.computeIfAbsent(c.getParentId(), k -> new ArrayList<>()).add(c);
+        }
+        Comparator<Category> byIdOrder = Comparator.comparing(Category::getId);
+        roots.sort(byIdOrder);
+        children.values().forEach(l -> l.sort(byIdOrder));
+
+        int counter = 0, reached = 0;
+        var stack = new ArrayDeque<Frame>();
+        for (int i = roots.size() - 1; i >= 0; i--) stack.push(new Frame(roots.get(i), 0, false));
+        while (!stack.isEmpty()) {
+            var f = stack.pop();
+            if (f.exit()) {
+                set(f.category(), null, ++counter, null);
+                continue;
+            }
+            reached++;
+            set(f.category(), ++counter, null, f.depth());
+            stack.push(new Frame(f.category(), f.depth(), true));
+            var kids = children.getOrDefault(f.category().getId(), List.of());
+            for (int i = kids.size() - 1; i >= 0; i--) stack.push(new Frame(kids.get(i), f.depth() + 1, false));
+        }
+        // anything not reachable from a root sits on a parent cycle
+        if (reached != all.size()) throw new IllegalArgumentException("Category cannot be its own ancestor");
+    }
+
+    private record Frame(Category category, int depth, boolean exit) {}
+
+    private static void set(Category c, Integer lft, Integer rgt, Integer depth) {
+        if (lft != null && !lft.equals(c.getLft())) c.setLft(lft);
+        if (rgt != null && !rgt.equals(c.getRgt())) c.setRgt(rgt);
+        if (depth != null && !depth.equals(c.getDepth())) c.setDepth(depth);
+    }
 }
@@ -0,0 +1,146 @@
+package com.mall.category;
+
+import com.mall.common.CatalogHttpCache;
+import com.mall.common.CatalogVersions;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Immutable in-memory copy of the category hierarchy. It is loaded on first use and replaced
+ * as a whole after every committed category change, so reads never observe a half-built tree.
+ * Each copy records the {@link CatalogVersions categories version} it was loaded at, and a read
+ * that finds the table has moved on since (a change made by another instance or outside the
+ * application) reloads it first.
+ */
+@Component
+public class CategoryTree {
+
+    /**
+     * A category plus its position in the tree; {@code preorder} indexes {@link Snapshot#preorder}, and
+     * {@code lft}/{@code rgt} are its nested-set interval as stored.
+     */
+    public record Node(Long id, String name, String slug, Long parentId, Boolean active,
+                       int depth, int preorder, int descendantCount, Integer lft, Integer rgt) {}
+
+    private record Snapshot(String version, Map<Long, Node> byId, Map<String, Node> bySlug,
+                            List<Node> preorder, List<CategoryTreeDto> roots) {}
+
+    private final CategoryRepository repo;
+    private final CatalogVersions versions;
+    private volatile Snapshot snapshot;
+
+    public CategoryTree(CategoryRepository repo, CatalogVersions versions) {
+        this.repo = repo;
+        this.versions = versions;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCategoryChanged(CategoryChangedEvent event) { rebuild(); }
+
+    /** The categories version the current tree was loaded at; read it before the data it describes. */
+    String version() { return snapshot().version(); }
+
+    List<Node> all() { return snapshot().preorder(); }
+
+    List<CategoryTreeDto> roots() { return snapshot().roots(); }
+
+    public Optional<Node> byId(Long id) { return Optional.ofNullable(snapshot().byId().get(id)); }
+
+    Optional<Node> bySlug(String slug) { return Optional.ofNullable(snapshot().bySlug().get(slug)); }
+
+    /** Root first, ending with {@code node} itself. */
+    List<Node> breadcrumb(Node node) {
+        var byId = snapshot().byId();
+        var path = new ArrayList<Node>(node.depth() + 1);
+        for (var n = node; n != null; n = n.parentId() == null ? null : byId.get(n.parentId())) path.add(n);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /** Every category below {@code node}, in depth-first order; a slice of the preorder list. */
+    List<Node> descendants(Node node) {
+        return snapshot().preorder().subList(node.preorder() + 1, node.preorder() + 1 + node.descendantCount());
+    }
+
+    private Snapshot snapshot() {
+        var s = snapshot;
+        return s != null && s.version().equals(versions.version(CatalogHttpCache.CATEGORIES)) ? s : refresh(s);
+    }
+
+    /** Reloads unless another thread already replaced {@code stale} while this one waited. */
+    private synchronized Snapshot refresh(Snapshot stale) {
+        var s = snapshot;
+        return s != stale && s != null ? s : rebuild();
+    }
+
+    synchronized Snapshot rebuild() {
+        // the version is read first, so a write landing in between makes the tree look older than it is, never newer
+        String version = versions.current(CatalogHttpCache.CATEGORIES);
+        var all = repo.findAll();
+        var children = new HashMap<Long, List<Category>>();
+        var roots = new ArrayList<Category>();
+        var ids = new HashSet<Long>();
+        for (var c : all) ids.add(c.getId());
+        for (var c : all) {
+            if (c.getParentId() == null || !ids.contains(c.getParentId())) roots.add(c);
+            else children.computeIfAbsent(c.getParentId(), k -> new ArrayList<>()).add(c);
+        }
+        Comparator<Category> byIdOrder = Comparator.comparing(Category::getId);
+        roots.sort(byIdOrder);
+        children.values().forEach(l -> l.sort(byIdOrder));
+
+        // iterative depth-first walk; a node's descendant count is known once its exit frame pops
+        record Frame(Category c, int depth, boolean exit, int preorder) {}
+        var preorderCats = new ArrayList<Category>(all.size());
+        var depth = new HashMap<Long, Integer>();
+        var descendants = new HashMap<Long, Integer>();
+        var stack = new ArrayDeque<Frame>();
+        for (int i = roots.size() - 1; i >= 0; i--) stack.push(new Frame(roots.get(i), 0, false, -1));
+        while (!stack.isEmpty()) {
+            var f = stack.pop();
+            if (f.exit()) {
+                descendants.put(f.c().getId(), preorderCats.size() - f.preorder() - 1);
+                continue;
+            }
+            stack.push(new Frame(f.c(), f.depth(), true, preorderCats.size()));
+            preorderCats.add(f.c());
+            depth.put(f.c().getId(), f.depth());
+            var kids = children.getOrDefault(f.c().getId(), List.of());
+            for (int i = kids.size() - 1; i >= 0; i--) stack.push(new Frame(kids.get(i), f.depth() + 1, false, -1));
+        }
+
+        var byId = new HashMap<Long, Node>();
+        var bySlug = new HashMap<String, Node>();
+        var preorder = new ArrayList<Node>(preorderCats.size());
+        for (int i = 0; i < preorderCats.size(); i++) {
+            var c = preorderCats.get(i);
+            var n = new Node(c.getId(), c.getName(), c.getSlug(), c.getParentId(), c.getActive(),
+                    depth.get(c.getId()), i, descendants.get(c.getId()), c.getLft(), c.getRgt());
+            preorder.add(n);
+            byId.put(n.id(), n);
+            bySlug.put(n.slug(), n);
+        }
+
+        // build the nested DTOs bottom-up so /categories/tree serves a ready-made structure
+        var dtoChildren = new HashMap<Long, List<CategoryTreeDto>>();
+        for (int i = preorder.size() - 1; i >= 0; i--) {
+            var n = preorder.get(i);
+            var kids = dtoChildren.getOrDefault(n.id(), new ArrayList<>());
+            Collections.reverse(kids);
+            var dto = new CategoryTreeDto(n.id(), n.name(), n.slug(), n.active(), List.copyOf(kids));
+            Long parent = ids.contains(n.parentId()) ? n.parentId() : null;
+            dtoChildren.computeIfAbsent(parent, k -> new ArrayList<>()).add(dto);
+        }
+        var rootDtos = new ArrayList<>(dtoChildren.getOrDefault(null, List.of()));
+        Collections.reverse(rootDtos);
+
+        var s = new Snapshot(version, Map.copyOf(byId), Map.copyOf(bySlug), List.copyOf(preorder), List.copyOf(rootDtos));
+        snapshot = s;
+        return s;
+    }
+}
@@ -0,0 +1,15 @@
+package com.mall.category;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/** The single row category writes lock to take turns on the nested-set intervals; see {@link CategoryService}. */
+@Entity
+@Table(name = "category_tree_lock")
+@Getter @NoArgsConstructor @AllArgsConstructor
+public class CategoryTreeLock {
+    static final int ID = 1;
+
+    @Id
+    private Integer id;
+}
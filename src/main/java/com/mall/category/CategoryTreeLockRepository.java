@@ -0,0 +1,15 @@
+package com.mall.category;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface CategoryTreeLockRepository extends JpaRepository<CategoryTreeLock, Integer> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from CategoryTreeLock l where l.id = " + CategoryTreeLock.ID)
+    Optional<CategoryTreeLock> acquire();
+}
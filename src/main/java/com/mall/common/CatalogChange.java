@@ -0,0 +1,6 @@
+package com.mall.common;
+
+/** A committed write to one of the catalog collections tracked by {@link CatalogHttpCache}. */
+public interface CatalogChange {
+    String collection();
+}
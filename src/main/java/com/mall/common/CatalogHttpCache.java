@@ -0,0 +1,72 @@
+package com.mall.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Strong ETags and conditional GET for catalog reads. Single resources are tagged from their
+ * {@code updatedAt}; collections from the table-derived {@link CatalogVersions}, so every instance
+ * hands out the same tag for the same data. Tags are checked against {@code If-None-Match} before
+ * the body is loaded, so a revalidation costs no serialization and, while the version is fresh,
+ * no query.
+ */
+@Component
+public class CatalogHttpCache {
+    public static final String PRODUCTS = "products";
+    public static final String CATEGORIES = "categories";
+    public static final String DISCOUNTS = "discounts";
+
+    private final CatalogVersions versions;
+    private final CacheControl cacheControl;
+
+    public CatalogHttpCache(CatalogVersions versions, @Value("${catalog.http.max-age:0s}") Duration maxAge) {
+        this.versions = versions;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic().mustRevalidate();
+    }
+
+    public String collectionTag(String collection) {
+        return versionTag(collection, versions.version(collection));
+    }
+
+    /** For reads whose result depends on more than one collection. */
+    public String collectionTag(String collection, String other) {
+        return "\"" + collection + "." + other + "-" + versions.version(collection) + "-" + versions.version(other) + "\"";
+    }
+
+    /** For data held in memory that records the version it was built from, such as the category tree. */
+    public String versionTag(String collection, String version) {
+        return "\"" + collection + "-" + version + "\"";
+    }
+
+    /** Falls back to the collection tag for rows written before timestamps were kept. */
+    public String entityTag(String collection, Long id, Instant updatedAt) {
+        if (updatedAt == null) return collectionTag(collection);
+        return "\"" + collection + "-" + id + "-" + updatedAt.getEpochSecond() + "." + updatedAt.getNano() + "\"";
+    }
+
+    /** 304 when {@code ifNoneMatch} already names {@code etag}; otherwise 200 with the supplied body. */
+    public <T> ResponseEntity<T> conditional(String ifNoneMatch, String etag, Supplier<T> body) {
+        if (matches(ifNoneMatch, etag))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(body.get());
+    }
+
+    /** Weak comparison as RFC 9110 prescribes for If-None-Match. */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
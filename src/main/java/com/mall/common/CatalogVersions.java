@@ -0,0 +1,85 @@
+package com.mall.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Version of each catalog collection, taken from the table itself: its row count plus its latest
+ * {@code updated_at}. Every instance reading the same database sees the same version, and writes
+ * that bypass the entities (bulk JDBC, SQL run by hand) change it as long as they stamp
+ * {@code updated_at}; deletes change the count.
+ *
+ * <p>A version is re-read at most every {@code catalog.http.version-recheck}. A
+ * {@link CatalogChange} committed on this instance drops it at once, so only writes made elsewhere
+ * can go unnoticed, and for no longer than that interval.
+ */
+@Component
+public class CatalogVersions {
+    private static final Map<String, String> TABLES = Map.of(
+            CatalogHttpCache.PRODUCTS, "products",
+            CatalogHttpCache.CATEGORIES, "categories",
+            CatalogHttpCache.DISCOUNTS, "discounts");
+
+    /** {@code changes} is the collection's change count when the version was read. */
+    private record Checked(String version, long changes, long at) {}
+
+    private final Function<String, String> load;
+    private final long recheckNanos;
+    private final Map<String, Checked> checked = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> changes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CatalogVersions(JdbcTemplate jdbc, @Value("${catalog.http.version-recheck:PT1S}") Duration recheck) {
+        this(collection -> query(jdbc, collection), recheck);
+    }
+
+    CatalogVersions(Function<String, String> load, Duration recheck) {
+        this.load = load;
+        this.recheckNanos = recheck.toNanos();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChange change) {
+        changes(change.collection()).incrementAndGet();
+    }
+
+    /** The collection's version as last read, re-reading it when it may be out of date. */
+    public String version(String collection) {
+        var c = checked.get(collection);
+        if (c != null && c.changes() == changes(collection).get() && System.nanoTime() - c.at() < recheckNanos) return c.version();
+        return current(collection);
+    }
+
+    /** Reads the version from the database; call it before loading the data it is meant to describe. */
+    public String current(String collection) {
+        long seen = changes(collection).get();
+        long at = System.nanoTime();
+        String version = load.apply(collection);
+        checked.put(collection, new Checked(version, seen, at));
+        return version;
+    }
+
+    private AtomicLong changes(String collection) {
+        return this.changes.computeIfAbsent(collection, k -> new AtomicLong());
+    }
+
+    private static String query(JdbcTemplate jdbc, String collection) {
+        String table = TABLES.get(collection);
+        if (table == null) throw new IllegalArgumentException("Unknown catalog collection " + collection);
+        return jdbc.queryForObject("select count(*), max(updated_at) from " + table, (rs, row) -> {
+            Timestamp latest = rs.getTimestamp(2);
+            long micros = latest == null ? 0 : latest.getTime() / 1000 * 1_000_000 + latest.getNanos() / 1000;
+            return Long.toString(rs.getLong(1), 36) + "." + Long.toString(micros, 36);
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.mall.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Table-backed id blocks for entities whose inserts should batch, which {@code IDENTITY} ids prevent.
+ * Each entity names its row in {@link #TABLE} through a {@code @TableGenerator}; Hibernate takes
+ * {@link #BLOCK} ids at a time from it, handing them out from the low end (pooled-lo, see
+ * {@code hibernate.id.optimizer.pooled.preferred}).
+ * <p>
+ * Rows hold the last id handed out. Tables that used to have auto-increment ids already hold rows, so
+ * at startup each row is moved up to the table's highest id before any id is taken from it.
+ */
+@Slf4j
+@Component
+public class IdSequences {
+    public static final String TABLE = "id_sequences";
+    public static final int BLOCK = 50;
+
+    /** Sequence name to the table whose ids it generates. */
+    private static final Map<String, String> SEQUENCES = Map.of("orders", "orders", "order_items", "order_items");
+
+    private final JdbcTemplate jdbc;
+
+    /** Takes the entity manager factory so the schema, and so {@link #TABLE}, exists first. */
+    public IdSequences(JdbcTemplate jdbc, EntityManagerFactory schemaReady) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    void alignWithExistingIds() {
+        SEQUENCES.forEach((sequence, table) -> {
+            long last = jdbc.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+            int moved = jdbc.update("update " + TABLE + " set last_val = ? where name = ? and last_val < ?", last, sequence, last);
+            if (moved == 0 && jdbc.queryForObject("select count(*) from " + TABLE + " where name = ?", Integer.class, sequence) == 0) {
+                jdbc.update("insert into " + TABLE + " (name, last_val) values (?, ?)", sequence, last);
+            } else if (moved > 0) {
+                log.info("Moved id sequence {} up to the highest existing id of {}, {}", sequence, table, last);
+            }
+        });
+    }
+}
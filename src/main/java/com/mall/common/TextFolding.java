@@ -0,0 +1,17 @@
+package com.mall.common;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public final class TextFolding {
+    private static final Pattern DIACRITICS = Pattern.compile("[\\p{InCombiningDiacriticalMarks}]");
+
+    private TextFolding() {}
+
+    /** Lowercases and strips diacritics, e.g. {@code "Café Crème"} becomes {@code "cafe creme"}. */
+    public static String fold(String input) {
+        String s = Normalizer.normalize(input.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(s).replaceAll("");
+    }
+}
@@ -0,0 +1,102 @@
+package com.mall.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only record of changes that are in memory but not yet in the database, split into numbered
+ * segments named {@code <name>-<number>.wal}. A flush seals the current segment with {@link #rotate()}
+ * and deletes the sealed segments once its writes have committed; whatever is left on disk at startup
+ * is replayed. Whether replaying a record twice is harmless is up to the records.
+ */
+@Slf4j
+public final class WriteAheadLog implements Closeable {
+    private final Path dir;
+    private final String name;
+    private final Pattern segmentName;
+    private final boolean fsync;
+    private long segment;
+    private FileChannel current;
+
+    public WriteAheadLog(Path dir, String name, boolean fsync) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.name = name;
+        this.segmentName = Pattern.compile(Pattern.quote(name) + "-(\\d{16})\\.wal");
+        this.fsync = fsync;
+        this.segment = segments().stream().mapToLong(this::numberOf).max().orElse(0) + 1;
+        this.current = open(segment);
+    }
+
+    public synchronized void append(String record) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(record + "\n");
+        while (bytes.hasRemaining()) current.write(bytes);
+        if (fsync) current.force(false);
+    }
+
+    /** Starts a new segment and returns every older one, oldest first. */
+    public synchronized List<Path> rotate() throws IOException {
+        current.close();
+        current = open(++segment);
+        return segments().stream().filter(p -> numberOf(p) < segment).toList();
+    }
+
+    /**
+     * The records in {@code segments}, in the order they were written. A segment whose last record has
+     * no line end was cut short by a crash mid-append; that record was never acknowledged and is
+     * skipped.
+     */
+    public List<String> records(List<Path> segments) throws IOException {
+        var records = new ArrayList<String>();
+        for (Path p : segments) {
+            String content = Files.readString(p, StandardCharsets.UTF_8);
+            int end = content.lastIndexOf('\n') + 1;
+            if (end < content.length()) {
+                log.warn("Skipping a record cut short at the end of {}: {}", p.getFileName(), content.substring(end));
+            }
+            for (String line : content.substring(0, end).split("\n")) {
+                if (!line.isBlank()) records.add(line);
+            }
+        }
+        return records;
+    }
+
+    public void delete(List<Path> segments) throws IOException {
+        for (Path p : segments) Files.deleteIfExists(p);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.close();
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(dir.resolve("%s-%016d.wal".formatted(name, number)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> segmentName.matcher(p.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long numberOf(Path segment) {
+        var m = segmentName.matcher(segment.getFileName().toString());
+        if (!m.matches()) throw new IllegalArgumentException("Not a " + name + " log segment: " + segment);
+        return Long.parseLong(m.group(1));
+    }
+}
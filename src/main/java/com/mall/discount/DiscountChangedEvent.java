@@ -0,0 +1,9 @@
+package com.mall.discount;
+
+import com.mall.common.CatalogChange;
+import com.mall.common.CatalogHttpCache;
+
+/** Published by {@link DiscountService} whenever a discount is created, updated or deleted. */
+public record DiscountChangedEvent(Long id) implements CatalogChange {
+    @Override public String collection() { return CatalogHttpCache.DISCOUNTS; }
+}
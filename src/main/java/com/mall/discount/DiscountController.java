@@ -1,5 +1,7 @@
 package com.mall.discount;
 
+import com.mall.common.CatalogHttpCache;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,11 +16,16 @@ record UpdateDiscountDto(String code, String name, Double percentage, OffsetDate
 @RequestMapping("/discounts")
 public class DiscountController {
     private final DiscountService service;
-    public DiscountController(DiscountService s) { this.service = s; }
+    private final CatalogHttpCache httpCache;
+    public DiscountController(DiscountService s, CatalogHttpCache httpCache) {
+        this.service = s;
+        this.httpCache = httpCache;
+    }
 
     @GetMapping
-    public List<DiscountDto> list() {
-        return service.findAll().stream().map(DiscountController::toDto).toList();
+    public ResponseEntity<List<DiscountDto>> list(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return httpCache.conditional(ifNoneMatch, httpCache.collectionTag(CatalogHttpCache.DISCOUNTS),
+                () -> service.findAll().stream().map(DiscountController::toDto).toList());
     }
 
     @GetMapping("/{id}")
@@ -1,6 +1,7 @@
 package com.mall.discount;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,6 +12,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DiscountService {
     private final DiscountRepository repo;
+    private final ApplicationEventPublisher events;
 
     public List<Discount> findAll() { return repo.findAll(); }
     public Discount findById(Long id) { return repo.findById(id).orElseThrow(() -> new IllegalArgumentException("Discount not found")); }
@@ -36,7 +38,7 @@ public class DiscountService {
                 .endsAt(endsAt)
                 .active(active == null ? true : active)
                 .build();
-        return repo.save(d);
+        return changed(repo.save(d));
     }
 
     @Transactional
@@ -52,9 +54,17 @@ public class DiscountService {
         d.setStartsAt(startsAt);
         d.setEndsAt(endsAt);
         d.setActive(active == null ? d.getActive() : active);
-        return repo.save(d);
+        return changed(repo.save(d));
     }
 
     @Transactional
-    public void delete(Long id) { repo.deleteById(id); }
+    public void delete(Long id) {
+        repo.deleteById(id);
+        events.publishEvent(new DiscountChangedEvent(id));
+    }
+
+    private Discount changed(Discount d) {
+        events.publishEvent(new DiscountChangedEvent(d.getId()));
+        return d;
+    }
 }
@@ -0,0 +1,82 @@
+package com.mall.inventory;
+
+import com.mall.product.StockChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock kept in {@code products.stock} and changed with conditional updates, one per product, sent as
+ * one JDBC batch. Products are always updated in id order, so two checkouts sharing products lock
+ * their rows in the same order and cannot deadlock; a hot product serialises on its row lock. The
+ * default inventory.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.store", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseInventory implements Inventory {
+    private static final String TAKE = "update products set stock = stock - ?, updated_at = ? where id = ? and stock >= ?";
+    private static final String GIVE_BACK = "update products set stock = stock + ?, updated_at = ? where id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher events;
+
+    @Override
+    @Transactional
+    public void reserve(List<Line> lines) {
+        var byProduct = byProduct(lines);
+        var ordered = new ArrayList<>(byProduct.values());
+        var now = Timestamp.from(Instant.now());
+        int[] counts = jdbc.batchUpdate(TAKE, ordered.stream().map(l -> new Object[]{l.quantity(), now, l.productId(), l.quantity()}).toList());
+        var missing = new ArrayList<String>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) missing.add(ordered.get(i).sku());
+        }
+        if (!missing.isEmpty()) throw new IllegalArgumentException("Not enough stock for: " + String.join(", ", missing));
+        changed(byProduct.keySet());
+    }
+
+    @Override
+    @Transactional
+    public void release(List<Line> lines) {
+        var byProduct = byProduct(lines);
+        var now = Timestamp.from(Instant.now());
+        jdbc.batchUpdate(GIVE_BACK, byProduct.values().stream().map(l -> new Object[]{l.quantity(), now, l.productId()}).toList());
+        changed(byProduct.keySet());
+    }
+
+    /** Lines merged per product, in product id order. */
+    private static Map<Long, Line> byProduct(List<Line> lines) {
+        var merged = new TreeMap<Long, Line>();
+        for (var l : lines) {
+            merged.merge(l.productId(), l, (a, b) -> new Line(a.productId(), a.sku(), a.quantity() + b.quantity()));
+        }
+        return merged;
+    }
+
+    /**
+     * Lets the catalog cache, search index and HTTP tags see the new stock once the transaction commits,
+     * as one event for the whole batch. The rows were just updated in this transaction, so reading their
+     * stock and {@code updated_at} back gives exactly what commits.
+     */
+    void changed(Collection<Long> productIds) {
+        if (productIds.isEmpty()) return;
+        var levels = jdbc.query("select id, stock, updated_at from products where id in (" +
+                                String.join(", ", Collections.nCopies(productIds.size(), "?")) + ")",
+                (rs, row) -> new StockChangedEvent.Level(rs.getLong(1), rs.getInt(2), rs.getTimestamp(3).toInstant()),
+                productIds.toArray());
+        events.publishEvent(new StockChangedEvent(levels));
+    }
+}
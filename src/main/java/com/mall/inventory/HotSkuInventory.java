@@ -0,0 +1,289 @@
+package com.mall.inventory;
+
+import com.mall.common.WriteAheadLog;
+import com.mall.product.ProductRepository;
+import com.mall.product.StockEditedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+
+/**
+ * Stock of a few designated products ({@code inventory.hot.skus}) held in memory in
+ * {@link StripedCounter}s, so a flash sale's checkouts take stock without queueing on the product's
+ * row lock; every other product goes through {@link DatabaseInventory}. Takes and give-backs are
+ * appended to a {@link WriteAheadLog} as numbered deltas once the caller's transaction commits, so a
+ * crash before the commit leaves no trace of an order that never existed. Every
+ * {@code inventory.hot.reconcile-ms} the logged deltas are summed per product and added to
+ * {@code products.stock} in one transaction, which also records the number of the last delta written
+ * so a replay after a crash skips what already reached the database.
+ * <p>
+ * A take is held in memory from the moment it is granted and given back if the transaction rolls
+ * back; a give-back only happens on commit. A crash in the instant between a commit and its append
+ * loses that change from {@code products.stock}.
+ * <p>
+ * Counters are loaded from {@code products.stock} once, so only one instance may hold them: at startup
+ * it takes a lease on its checkpoint row ({@code inventory.hot.node-id}) and refuses to start while
+ * another instance's lease is younger than {@code inventory.hot.lease}. An instance that fails to renew
+ * its lease in time stops granting hot stock. Stock set by hand through {@link com.mall.product.ProductService#update}
+ * is applied to the counter as the difference from the value it replaced, so takes journaled but not
+ * yet written still count; stock rewritten any other way (a CSV import, SQL) is not seen until restart.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inventory.store", havingValue = "hot-sku")
+public class HotSkuInventory implements Inventory {
+    private static final String CHECKPOINT = "hot-sku";
+    private static final String ADD = "update products set stock = stock + ?, updated_at = ? where id = ?";
+
+    /** One logged change of a hot product's stock, negative for a take. */
+    private record Delta(long seq, long productId, long amount) {
+        String record() {
+            return seq + " " + productId + " " + amount;
+        }
+
+        static Delta parse(String record) {
+            String[] f = record.split(" ");
+            return new Delta(Long.parseLong(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]));
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ProductRepository products;
+    private final TransactionTemplate tx;
+    private final DatabaseInventory database;
+    private final WriteAheadLog journal;
+    private final List<String> hotSkus;
+    private final int stripes;
+    private final String nodeId;
+    private final Duration lease;
+    private final Map<Long, StripedCounter> counters = new HashMap<>();
+    private final Object reconciling = new Object();
+    private long seq;
+    private volatile Instant renewed;
+    private volatile boolean leaseLost;
+
+    public HotSkuInventory(JdbcTemplate jdbc, ProductRepository products, ApplicationEventPublisher events, TransactionTemplate tx,
+                           @Value("${inventory.hot.skus:}") List<String> hotSkus,
+                           @Value("${inventory.hot.journal-dir:inventory-journal}") String journalDir,
+                           @Value("${inventory.hot.journal-fsync:false}") boolean fsync,
+                           @Value("${inventory.hot.stripes:16}") int stripes,
+                           @Value("${inventory.hot.node-id:${HOSTNAME:local}}") String nodeId,
+                           @Value("${inventory.hot.lease:PT30S}") Duration lease) throws IOException {
+        this.jdbc = jdbc;
+        this.products = products;
+        this.tx = tx;
+        this.database = new DatabaseInventory(jdbc, events);
+        this.journal = new WriteAheadLog(Path.of(journalDir), "stock", fsync);
+        this.hotSkus = hotSkus.stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.stripes = stripes;
+        this.nodeId = nodeId;
+        this.lease = lease;
+    }
+
+    /**
+     * Takes the lease, writes what a previous run logged but did not get to write, then loads the hot
+     * products' stock.
+     */
+    @PostConstruct
+    void start() throws IOException {
+        if (jdbc.queryForObject("select count(*) from inventory_checkpoints where name = ?", Integer.class, CHECKPOINT) == 0) {
+            jdbc.update("insert into inventory_checkpoints (name, position) values (?, 0)", CHECKPOINT);
+        }
+        var now = Instant.now();
+        if (jdbc.update("update inventory_checkpoints set owner = ?, heartbeat = ? where name = ? " +
+                        "and (owner is null or owner = ? or heartbeat < ?)",
+                nodeId, Timestamp.from(now), CHECKPOINT, nodeId, Timestamp.from(now.minus(lease))) == 0) {
+            String owner = jdbc.queryForObject("select owner from inventory_checkpoints where name = ?", String.class, CHECKPOINT);
+            throw new IllegalStateException("Hot SKU stock is held by " + owner + "; inventory.store=hot-sku runs on one instance only");
+        }
+        renewed = now;
+        int recovered = write(journal.rotate());
+        if (recovered > 0) log.info("Recovered unwritten stock changes of {} hot products from the journal", recovered);
+        seq = checkpoint();
+        for (String sku : hotSkus) {
+            products.findBySku(sku).ifPresentOrElse(
+                    p -> counters.put(p.getId(), new StripedCounter(stripes, p.getStock())),
+                    () -> log.warn("Hot SKU {} is not in the catalog; its stock stays in the database", sku));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        reconcile();
+        journal.close();
+        jdbc.update("update inventory_checkpoints set owner = null where name = ? and owner = ?", CHECKPOINT, nodeId);
+    }
+
+    @Override
+    @Transactional
+    public void reserve(List<Line> lines) {
+        var hot = new ArrayList<Line>();
+        var cold = new ArrayList<Line>();
+        for (var l : lines) (counters.containsKey(l.productId()) ? hot : cold).add(l);
+        if (!hot.isEmpty() && leaseLost) throw new IllegalStateException("Hot SKU lease lost; not granting hot stock");
+
+        var taken = new ArrayList<Line>();
+        var missing = new ArrayList<String>();
+        for (var l : hot) {
+            if (counters.get(l.productId()).take(l.quantity())) taken.add(l);
+            else missing.add(l.sku());
+        }
+        if (!missing.isEmpty()) {
+            taken.forEach(l -> counters.get(l.productId()).give(l.quantity()));
+            throw new IllegalArgumentException("Not enough stock for: " + String.join(", ", missing));
+        }
+        if (!taken.isEmpty()) {
+            onOutcome(() -> log(taken, -1), () -> taken.forEach(l -> counters.get(l.productId()).give(l.quantity())));
+        }
+        if (!cold.isEmpty()) database.reserve(cold);
+    }
+
+    @Override
+    @Transactional
+    public void release(List<Line> lines) {
+        var hot = lines.stream().filter(l -> counters.containsKey(l.productId())).toList();
+        if (!hot.isEmpty()) onOutcome(() -> giveBack(hot), () -> {});
+        var cold = lines.stream().filter(l -> !counters.containsKey(l.productId())).toList();
+        if (!cold.isEmpty()) database.release(cold);
+    }
+
+    /** Adds the logged deltas to {@code products.stock}; returns how many products changed. */
+    @Scheduled(fixedDelayString = "${inventory.hot.reconcile-ms:500}")
+    public int reconcile() {
+        synchronized (reconciling) {
+            try {
+                renew();
+                return write(journal.rotate());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Writing hot stock changes failed; they stay in the journal until the next attempt", e);
+                return 0;
+            }
+        }
+    }
+
+    /** Applies a stock edit to the counter; the edit already set {@code products.stock}. */
+    @TransactionalEventListener
+    public void onStockEdited(StockEditedEvent event) {
+        var counter = counters.get(event.id());
+        if (counter == null) return;
+        counter.adjust((long) event.to() - event.from());
+        log.info("Hot stock of product {} edited from {} to {}", event.id(), event.from(), event.to());
+    }
+
+    /** Renews the lease once a third of it has passed; a lease someone else took stops hot takes. */
+    private void renew() {
+        var now = Instant.now();
+        if (leaseLost || renewed.plus(lease.dividedBy(3)).isAfter(now)) return;
+        if (jdbc.update("update inventory_checkpoints set heartbeat = ? where name = ? and owner = ?",
+                Timestamp.from(now), CHECKPOINT, nodeId) == 0) {
+            leaseLost = true;
+            log.error("Hot SKU lease taken over by another instance; this one stops granting hot stock");
+            return;
+        }
+        renewed = now;
+    }
+
+    /** A hot product's stock as held in memory; empty for products kept in the database. */
+    OptionalLong available(long productId) {
+        var counter = counters.get(productId);
+        return counter == null ? OptionalLong.empty() : OptionalLong.of(counter.total());
+    }
+
+    /**
+     * Runs {@code committed} once the caller's transaction commits and {@code rolledBack} if it rolls
+     * back; without a transaction, {@code committed} runs right away.
+     */
+    private static void onOutcome(Runnable committed, Runnable rolledBack) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) rolledBack.run();
+            }
+        });
+    }
+
+    private void giveBack(List<Line> lines) {
+        lines.forEach(l -> counters.get(l.productId()).give(l.quantity()));
+        log(lines, 1);
+    }
+
+    /**
+     * Numbers and appends one delta per line; numbering and appending happen together, so numbers grow
+     * along the journal. Runs after the commit, so a failed append can only be reported.
+     */
+    private void log(List<Line> lines, int sign) {
+        if (lines.isEmpty()) return;
+        synchronized (journal) {
+            try {
+                for (var l : lines) journal.append(new Delta(++seq, l.productId(), (long) sign * l.quantity()).record());
+            } catch (IOException e) {
+                log.error("Stock changes for {} could not be journaled and will not reach products.stock", lines, e);
+            }
+        }
+    }
+
+    private int write(List<Path> segments) throws IOException {
+        long written = checkpoint();
+        long last = written;
+        var sums = new TreeMap<Long, Long>();
+        for (String record : journal.records(segments)) {
+            Delta d;
+            try {
+                d = Delta.parse(record);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Corrupt stock journal record: " + record, e);
+            }
+            if (d.seq() <= written) continue;
+            sums.merge(d.productId(), d.amount(), Long::sum);
+            last = Math.max(last, d.seq());
+        }
+        sums.values().removeIf(sum -> sum == 0);
+        if (last > written) {
+            long upTo = last;
+            tx.executeWithoutResult(status -> {
+                var now = Timestamp.from(Instant.now());
+                jdbc.batchUpdate(ADD, sums.entrySet().stream().map(e -> new Object[]{e.getValue(), now, e.getKey()}).toList());
+                jdbc.update("update inventory_checkpoints set position = ? where name = ?", upTo, CHECKPOINT);
+                database.changed(sums.keySet());
+            });
+        }
+        journal.delete(segments);
+        return sums.size();
+    }
+
+    private long checkpoint() {
+        return jdbc.queryForObject("select position from inventory_checkpoints where name = ?", Long.class, CHECKPOINT);
+    }
+}
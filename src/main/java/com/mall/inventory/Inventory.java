@@ -0,0 +1,21 @@
+package com.mall.inventory;
+
+import java.util.List;
+
+/**
+ * Product stock taken by orders. Both operations join the caller's transaction, so a checkout that
+ * fails after reserving gives the stock back by rolling back.
+ */
+public interface Inventory {
+
+    record Line(long productId, String sku, int quantity) {}
+
+    /**
+     * Takes stock for every line or for none. Throws {@link IllegalArgumentException} naming the lines
+     * there is not enough stock for.
+     */
+    void reserve(List<Line> lines);
+
+    /** Returns stock taken by {@link #reserve}, e.g. when an order is cancelled. */
+    void release(List<Line> lines);
+}
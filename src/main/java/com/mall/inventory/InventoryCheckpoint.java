@@ -0,0 +1,26 @@
+package com.mall.inventory;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/** How far a stock journal has been written to {@code products.stock}; see {@link HotSkuInventory}. */
+@Entity
+@Table(name = "inventory_checkpoints")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class InventoryCheckpoint {
+    @Id
+    @Column(length = 40)
+    private String name;
+
+    /** The number of the last journal record that reached the database. */
+    private long position;
+
+    /** The instance whose journal this is, while it runs. */
+    @Column(length = 100)
+    private String owner;
+
+    /** Renewed by the owner; a lease older than {@code inventory.hot.lease} can be taken over. */
+    private Instant heartbeat;
+}
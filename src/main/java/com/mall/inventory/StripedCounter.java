@@ -0,0 +1,85 @@
+package com.mall.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A count that never goes below zero, split over stripes that are each taken from with
+ * compare-and-set, so threads taking at once mostly touch different cache lines and never block. A
+ * take that no single stripe can cover pools every stripe under a lock and takes from the pool, so it
+ * only fails when the whole count is short.
+ */
+final class StripedCounter {
+    /** Longs per stripe, so neighbouring stripes sit on different 64-byte cache lines. */
+    private static final int PAD = 8;
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+    private final ReentrantLock pooling = new ReentrantLock();
+
+    StripedCounter(int stripes, long initial) {
+        this.stripes = Math.max(1, stripes);
+        this.cells = new AtomicLongArray(this.stripes * PAD);
+        spread(initial);
+    }
+
+    /** Takes {@code n} if there is that much left. */
+    boolean take(long n) {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            int cell = (home + i) % stripes * PAD;
+            for (long v = cells.get(cell); v >= n; v = cells.get(cell)) {
+                if (cells.compareAndSet(cell, v, v - n)) return true;
+            }
+        }
+        pooling.lock();
+        try {
+            long pooled = 0;
+            for (int i = 0; i < stripes; i++) pooled += cells.getAndSet(i * PAD, 0);
+            boolean taken = pooled >= n;
+            spread(taken ? pooled - n : pooled);
+            return taken;
+        } finally {
+            pooling.unlock();
+        }
+    }
+
+    void give(long n) {
+        cells.getAndAdd(home() * PAD, n);
+    }
+
+    /** Moves the count by {@code delta}, stopping at zero when taking more than is left. */
+    void adjust(long delta) {
+        if (delta >= 0) {
+            give(delta);
+            return;
+        }
+        pooling.lock();
+        try {
+            long pooled = 0;
+            for (int i = 0; i < stripes; i++) pooled += cells.getAndSet(i * PAD, 0);
+            spread(Math.max(0, pooled + delta));
+        } finally {
+            pooling.unlock();
+        }
+    }
+
+    /** What is left; exact only while nothing is being taken or given. */
+    long total() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) sum += cells.get(i * PAD);
+        return sum;
+    }
+
+    private void spread(long n) {
+        long each = n / stripes, rest = n % stripes;
+        for (int i = 0; i < stripes; i++) {
+            long share = each + (i < rest ? 1 : 0);
+            if (share > 0) cells.getAndAdd(i * PAD, share);
+        }
+    }
+
+    private int home() {
+        return Math.floorMod(Long.hashCode(Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L), stripes);
+    }
+}
@@ -1,14 +1,22 @@
 package com.mall.order;
 
 import com.mall.common.BaseEntity;
+import com.mall.common.IdSequences;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Table(name = "orders", indexes = @Index(name = "idx_order_user", columnList = "userEmail"))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Order extends BaseEntity {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_ids")
+    @TableGenerator(name = "order_ids", table = IdSequences.TABLE, pkColumnName = "name", valueColumnName = "last_val",
+                    pkColumnValue = "orders", allocationSize = IdSequences.BLOCK)
     private Long id;
 
     @Column(nullable = false, length = 255)
@@ -23,4 +31,15 @@ public class Order extends BaseEntity {
 
     @Column(length = 500)
     private String shippingAddress;
+
+    /** Whether checkout took stock for this order; orders placed before stock was reserved did not. */
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean stockReserved;
+
+    /** For reading an order with its items; items are saved through {@link OrderItemRepository}. */
+    @OneToMany(mappedBy = "order")
+    @OrderBy("id")
+    @Builder.Default
+    private List<OrderItem> items = new ArrayList<>();
 }
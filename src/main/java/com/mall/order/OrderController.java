@@ -39,16 +39,7 @@ public class OrderController {
         boolean isAdmin = principal.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN") || auth.getAuthority().equals("ROLE_VENDOR"));
 
-        if (isAdmin) {
-            // Admin can view any order
-            return service.listByStatus(null).stream()
-                    .filter(o -> o.id().equals(id))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("Order not found"));
-        } else {
-            // Customer can only view their own order
-            return service.getOne(id, email);
-        }
+        return service.getOne(id, email, isAdmin);
     }
 
     // Admin/Vendor endpoints
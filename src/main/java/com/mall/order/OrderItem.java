@@ -1,6 +1,7 @@
 package com.mall.order;
 
 import com.mall.common.BaseEntity;
+import com.mall.common.IdSequences;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -8,7 +9,10 @@ import lombok.*;
 @Table(name = "order_items", indexes = @Index(name = "idx_orderitem_order", columnList = "order_id"))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class OrderItem extends BaseEntity {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_item_ids")
+    @TableGenerator(name = "order_item_ids", table = IdSequences.TABLE, pkColumnName = "name", valueColumnName = "last_val",
+                    pkColumnValue = "order_items", allocationSize = IdSequences.BLOCK)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -1,9 +1,16 @@
 package com.mall.order;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     List<OrderItem> findByOrderId(Long orderId);
+
+    /** Filters on the foreign key itself; the derived {@code findByOrderIdIn} joins orders and misses the order_id index. */
+    @Query("select oi from OrderItem oi where oi.order.id in :orderIds order by oi.id")
+    List<OrderItem> findByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
@@ -1,10 +1,23 @@
 package com.mall.order;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserEmailOrderByCreatedAtDesc(String userEmail);
     List<Order> findByStatusOrderByCreatedAtDesc(OrderStatus status);
+
+    @Query("select o from Order o left join fetch o.items where o.id = :id")
+    Optional<Order> findWithItemsById(@Param("id") Long id);
+
+    /** For status changes, so two of them on one order take turns and see each other's result. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.id = :id")
+    Optional<Order> lockById(@Param("id") Long id);
 }
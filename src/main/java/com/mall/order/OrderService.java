@@ -2,75 +2,104 @@ package com.mall.order;
 
 import com.mall.cart.CartRepository;
 import com.mall.cart.CartItemRepository;
+import com.mall.cart.CartPricer;
+import com.mall.cart.CartStore;
+import com.mall.cart.dto.CartDto;
+import com.mall.cart.dto.CartItemDto;
+import com.mall.inventory.Inventory;
 import com.mall.order.dto.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    /** Orders whose items are loaded per query; keeps the {@code IN} list within what databases plan well. */
+    static final int ITEM_BATCH = 1000;
+
     private final OrderRepository orders;
     private final OrderItemRepository orderItems;
     private final CartRepository carts;
     private final CartItemRepository cartItems;
+    private final CartStore cartStore;
+    private final CartPricer pricer;
+    private final Inventory inventory;
 
     public List<OrderDto> listMy(String userEmail) {
-        return orders.findByUserEmailOrderByCreatedAtDesc(userEmail).stream().map(this::toDto).toList();
+        return toDtos(orders.findByUserEmailOrderByCreatedAtDesc(userEmail));
     }
 
-    public OrderDto getOne(Long id, String userEmail) {
-        var o = orders.findById(id).orElseThrow(() -> new IllegalArgumentException("Order not found"));
-        if (!o.getUserEmail().equals(userEmail)) throw new IllegalArgumentException("Access denied");
-        return toDto(o);
+    /** One order with its items, in one query; {@code staff} may read anyone's order, customers only their own. */
+    public OrderDto getOne(Long id, String userEmail, boolean staff) {
+        var o = orders.findWithItemsById(id).orElseThrow(() -> new IllegalArgumentException("Order not found"));
+        if (!staff && !o.getUserEmail().equals(userEmail)) throw new IllegalArgumentException("Access denied");
+        return toDto(o, o.getItems());
     }
 
     public List<OrderDto> listByStatus(OrderStatus status) {
-        return (status == null ? orders.findAll() : orders.findByStatusOrderByCreatedAtDesc(status)).stream().map(this::toDto).toList();
+        return toDtos(status == null ? orders.findAll() : orders.findByStatusOrderByCreatedAtDesc(status));
     }
 
+    /**
+     * Orders the cart at current catalog prices, taking stock from {@link Inventory} in the same
+     * transaction; fails if any line can no longer be ordered or is short of stock. Order and items
+     * take ids from {@link com.mall.common.IdSequences} blocks, so their inserts go out as JDBC batches
+     * at commit, and the cart is emptied with one bulk delete.
+     */
     @Transactional
     public OrderDto checkout(String userEmail, CheckoutRequest req) {
-        var cart = carts.findByUserEmail(userEmail).orElseThrow(() -> new IllegalArgumentException("Cart not found"));
-        var items = cartItems.findByCartId(cart.getId());
-        if (items.isEmpty()) throw new IllegalArgumentException("Cart is empty");
+        cartStore.flush(userEmail);
+        var cart = carts.findWithItemsByUserEmail(userEmail).orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+        if (cart.getItems().isEmpty()) throw new IllegalArgumentException("Cart is empty");
 
-        double total = items.stream().mapToDouble(ci -> ci.getLineTotal()).sum();
+        var priced = pricer.price(new CartDto(cart.getId(), userEmail, cart.getItems().stream().map(CartItemDto::of).toList(), null));
+        var blocked = priced.items().stream().filter(ci -> !ci.status().orderable()).map(ci -> ci.sku() + " (" + ci.status() + ")").toList();
+        if (!blocked.isEmpty()) throw new IllegalArgumentException("Some items can no longer be ordered: " + String.join(", ", blocked));
+        var items = priced.items();
+        double total = priced.total();
+        inventory.reserve(items.stream().map(ci -> new Inventory.Line(ci.productId(), ci.sku(), ci.quantity())).toList());
 
         var order = orders.save(Order.builder()
                 .userEmail(userEmail)
                 .status(OrderStatus.PENDING)
                 .total(total)
                 .shippingAddress(req.shippingAddress())
+                .stockReserved(true)
                 .build());
 
-        for (var ci : items) {
-            orderItems.save(OrderItem.builder()
-                    .order(order)
-                    .productId(ci.getProductId())
-                    .sku(ci.getSku())
-                    .name(ci.getName())
-                    .price(ci.getPrice())
-                    .quantity(ci.getQuantity())
-                    .lineTotal(ci.getLineTotal())
-                    .build());
-        }
+        var saved = orderItems.saveAll(items.stream().map(ci -> OrderItem.builder()
+                .order(order)
+                .productId(ci.productId())
+                .sku(ci.sku())
+                .name(ci.name())
+                .price(ci.price())
+                .quantity(ci.quantity())
+                .lineTotal(ci.lineTotal())
+                .build()).toList());
 
         // clear cart after checkout
-        cartItems.deleteByCartId(cart.getId());
+        cartItems.deleteAllInCart(cart.getId());
 
-        return toDto(order);
+        return toDto(order, saved);
     }
 
     @Transactional
     public OrderDto updateStatus(Long id, UpdateStatusRequest req) {
-        var o = orders.findById(id).orElseThrow(() -> new IllegalArgumentException("Order not found"));
+        var o = orders.lockById(id).orElseThrow(() -> new IllegalArgumentException("Order not found"));
         var next = req.status();
         if (!isValidTransition(o.getStatus(), next))
             throw new IllegalArgumentException("Invalid status transition from " + o.getStatus() + " to " + next);
+        if (next == OrderStatus.CANCELLED && o.getStatus() != OrderStatus.CANCELLED && o.isStockReserved()) {
+            inventory.release(orderItems.findByOrderId(o.getId()).stream()
+                    .map(oi -> new Inventory.Line(oi.getProductId(), oi.getSku(), oi.getQuantity()))
+                    .toList());
+        }
         o.setStatus(next);
         orders.save(o);
         return toDto(o);
@@ -87,8 +116,23 @@ public class OrderService {
         };
     }
 
+    /** Loads the items of all {@code list} with one query per {@value #ITEM_BATCH} orders rather than one per order. */
+    private List<OrderDto> toDtos(List<Order> list) {
+        var ids = list.stream().map(Order::getId).toList();
+        var byOrder = new HashMap<Long, List<OrderItem>>();
+        for (int from = 0; from < ids.size(); from += ITEM_BATCH) {
+            orderItems.findByOrderIds(ids.subList(from, Math.min(ids.size(), from + ITEM_BATCH)))
+                    .forEach(oi -> byOrder.computeIfAbsent(oi.getOrder().getId(), k -> new ArrayList<>()).add(oi));
+        }
+        return list.stream().map(o -> toDto(o, byOrder.getOrDefault(o.getId(), List.of()))).toList();
+    }
+
     private OrderDto toDto(Order o) {
-        var its = orderItems.findByOrderId(o.getId()).stream()
+        return toDto(o, orderItems.findByOrderId(o.getId()));
+    }
+
+    private OrderDto toDto(Order o, List<OrderItem> items) {
+        var its = items.stream()
                 .map(oi -> new OrderItemDto(oi.getId(), oi.getProductId(), oi.getSku(), oi.getName(), oi.getPrice(), oi.getQuantity(), oi.getLineTotal()))
                 .toList();
         return new OrderDto(o.getId(), o.getUserEmail(), o.getStatus(), o.getTotal(), o.getShippingAddress(), its);
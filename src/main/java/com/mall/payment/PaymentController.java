@@ -9,8 +9,10 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -33,6 +35,11 @@ public class PaymentController {
         return ResponseEntity.ok(service.upload(email, req));
     }
 
+    @PostMapping("/receipt")
+    public Map<String, String> uploadReceipt(@AuthenticationPrincipal UserDetails principal, @RequestParam("file") MultipartFile file) {
+        return Map.of("url", service.uploadReceipt(principal.getUsername(), file));
+    }
+
     @GetMapping("/mine")
     public List<PaymentListDto> mine(@AuthenticationPrincipal UserDetails principal) {
         var email = principal.getUsername();
@@ -1,8 +1,10 @@
 package com.mall.payment;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     boolean existsByReference(String reference);
@@ -11,4 +13,7 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     // ✅ ADD THIS METHOD for the history endpoint
     List<Payment> findByUserEmail(String userEmail);
+
+    @Query("select p.receiptUrl from Payment p where p.receiptUrl is not null")
+    Stream<String> streamReceiptUrls();
 }
@@ -6,10 +6,14 @@ import com.mall.order.OrderStatus;
 import com.mall.payment.dto.*;
 import com.mall.payment.validation.PaymentValidatorFactory;
 import com.mall.payment.state.PaymentStateFactory;
+import com.mall.storage.ContentStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @Service
@@ -18,6 +22,8 @@ public class PaymentService {
 
     private final PaymentRepository payments;
     private final OrderRepository orders;
+    private final ReceiptUploadRepository receipts;
+    private final ContentStore store;
 
     public List<PaymentListDto> myPayments(String userEmail) {
         return payments.findByUserEmailOrderByCreatedAtDesc(userEmail).stream()
@@ -36,6 +42,23 @@ public class PaymentService {
                 .orElseThrow(() -> new IllegalArgumentException("Payment not found")));
     }
 
+    /**
+     * Stores a receipt for {@code userEmail} to attach to a payment later. Only the uploader can
+     * attach it; one that is never attached is released by {@link ReceiptUploadSweeper}.
+     */
+    @Transactional
+    public String uploadReceipt(String userEmail, MultipartFile file) {
+        if (file == null || file.isEmpty()) throw new IllegalArgumentException("Receipt file is required");
+        String url;
+        try {
+            url = store.store(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        receipts.save(ReceiptUpload.builder().url(url).userEmail(userEmail).build());
+        return url;
+    }
+
     @Transactional
     public PaymentDto upload(String userEmail, UploadPaymentRequest req) {
         // 1. Validate basic fields
@@ -85,6 +108,12 @@ public class PaymentService {
         // 7. Set payment method specific fields using Template Method pattern
         setPaymentMethodFields(p, req);
 
+        // 8. The payment takes over the reference held by the payer's own receipt upload
+        if (p.getReceiptUrl() != null) {
+            var receipt = receipts.findFirstByUrlAndUserEmail(p.getReceiptUrl(), userEmail)
+                    .orElseThrow(() -> new IllegalArgumentException("Receipt must be uploaded by the paying user"));
+            receipts.delete(receipt);
+        }
         payments.save(p);
         return toDto(p);
     }
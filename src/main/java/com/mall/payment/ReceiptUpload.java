@@ -0,0 +1,27 @@
+package com.mall.payment;
+
+import com.mall.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A receipt a customer has uploaded but not yet attached to a payment. It holds the upload's
+ * reference on the stored file and records who uploaded it, so a payment can only claim receipts
+ * its own payer uploaded.
+ */
+@Entity
+@Table(name = "receipt_uploads", indexes = {
+        @Index(name = "idx_receipt_upload_url_user", columnList = "url,userEmail")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReceiptUpload extends BaseEntity {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 500)
+    private String url;
+
+    @Column(nullable = false, length = 255)
+    private String userEmail;
+}
@@ -0,0 +1,23 @@
+package com.mall.payment;
+
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface ReceiptUploadRepository extends JpaRepository<ReceiptUpload, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ReceiptUpload> findFirstByUrlAndUserEmail(String url, String userEmail);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ReceiptUpload> findByCreatedAtBeforeOrderById(Instant cutoff, Limit limit);
+
+    @Query("select r.url from ReceiptUpload r")
+    Stream<String> streamUrls();
+}
@@ -0,0 +1,53 @@
+package com.mall.payment;
+
+import com.mall.storage.ContentStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Releases receipts that were uploaded but never attached to a payment within
+ * {@code payments.receipt-upload.ttl}, {@code BATCH} rows per transaction.
+ */
+@Slf4j
+@Component
+public class ReceiptUploadSweeper {
+    private static final int BATCH = 500;
+
+    private final ReceiptUploadRepository receipts;
+    private final ContentStore store;
+    private final TransactionTemplate tx;
+    private final Duration ttl;
+
+    public ReceiptUploadSweeper(ReceiptUploadRepository receipts, ContentStore store, TransactionTemplate tx,
+                                @Value("${payments.receipt-upload.ttl:P1D}") Duration ttl) {
+        this.receipts = receipts;
+        this.store = store;
+        this.tx = tx;
+        this.ttl = ttl;
+    }
+
+    @Scheduled(initialDelayString = "${payments.receipt-upload.sweep-ms:3600000}", fixedDelayString = "${payments.receipt-upload.sweep-ms:3600000}")
+    public int sweep() {
+        Instant cutoff = Instant.now().minus(ttl);
+        int released = 0;
+        Integer done;
+        do {
+            done = tx.execute(status -> {
+                var abandoned = receipts.findByCreatedAtBeforeOrderById(cutoff, Limit.of(BATCH));
+                abandoned.forEach(r -> store.release(r.getUrl()));
+                receipts.deleteAllInBatch(abandoned);
+                return abandoned.size();
+            });
+            released += done;
+        } while (done == BATCH);
+        if (released > 0) log.info("Released {} receipts never attached to a payment", released);
+        return released;
+    }
+}
@@ -12,7 +12,12 @@ import java.util.List;
 
 @Entity
 
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_product_price_id", columnList = "price, id"),
+        @Index(name = "idx_product_created_id", columnList = "createdAt, id"),
+        @Index(name = "idx_product_name", columnList = "name"),
+        @Index(name = "idx_product_category", columnList = "categoryId, id")
+})
 
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 
@@ -50,6 +55,9 @@ public class Product extends BaseEntity {
     @Column(length=500)
     private String imageUrl;
 
+    // Category by id, like Category.parentId
+    private Long categoryId;
+
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Review> reviews = new ArrayList<>();
 
@@ -0,0 +1,248 @@
+package com.mall.product;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of {@link ProductView}s keyed by id and SKU.
+ * <p>
+ * Readers see an immutable snapshot and never lock. Writers (cache fills and committed product
+ * changes) copy the snapshot, apply their change and publish the copy. When the snapshot grows
+ * past {@code catalog.cache.max-entries}, the least recently read entries are dropped. A fill is
+ * discarded when a change to one of its products committed while it was loading; changes are counted
+ * per slot of {@code CHANGE_SLOTS}, so unrelated writes do not throw away fills.
+ */
+@Component
+public class ProductCatalogCache implements MeterBinder {
+
+    private record Snapshot(Map<Long, Entry> byId, Map<String, Long> idBySku) {}
+
+    private static final class Entry {
+        final ProductView view;
+        volatile long lastRead;
+        Entry(ProductView view) { this(view, System.nanoTime()); }
+        Entry(ProductView view, long lastRead) {
+            this.view = view;
+            this.lastRead = lastRead;
+        }
+    }
+
+    private static final int CHANGE_SLOTS = 1024;
+
+    private final ProductRepository repo;
+    private final int maxEntries;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of());
+    // committed changes per slot of product ids, and clears; a fill that saw either move is discarded
+    private final AtomicLongArray changes = new AtomicLongArray(CHANGE_SLOTS);
+    private final AtomicLong totalChanges = new AtomicLong();
+    private final AtomicLong clears = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ProductCatalogCache(ProductRepository repo,
+                               @Value("${catalog.cache.max-entries:10000}") int maxEntries) {
+        this.repo = repo;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    public Optional<ProductView> get(Long id) {
+        var e = snapshot.byId().get(id);
+        if (e != null) {
+            hits.increment();
+            e.lastRead = System.nanoTime();
+            return Optional.of(e.view);
+        }
+        misses.increment();
+        long cleared = clears.get(), changed = changes(id);
+        var loaded = repo.findViewById(id);
+        loaded.ifPresent(v -> fill(v, cleared, changed));
+        return loaded;
+    }
+
+    /** The views of those {@code ids} that exist; cache misses are loaded together in one query. */
+    public Map<Long, ProductView> getAll(Collection<Long> ids) {
+        var s = snapshot;
+        var found = new HashMap<Long, ProductView>();
+        var missing = new ArrayList<Long>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            var e = s.byId().get(id);
+            if (e != null) {
+                hits.increment();
+                e.lastRead = System.nanoTime();
+                found.put(id, e.view);
+            } else {
+                misses.increment();
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long cleared = clears.get();
+            var changed = new HashMap<Long, Long>();
+            missing.forEach(id -> changed.put(id, changes(id)));
+            var loaded = repo.findViewsByIdIn(missing);
+            loaded.forEach(v -> found.put(v.id(), v));
+            fill(loaded, cleared, changed);
+        }
+        return found;
+    }
+
+    public Optional<ProductView> getBySku(String sku) {
+        var s = snapshot;
+        var id = s.idBySku().get(sku);
+        if (id != null) {
+            var e = s.byId().get(id);
+            if (e != null) {
+                hits.increment();
+                e.lastRead = System.nanoTime();
+                return Optional.of(e.view);
+            }
+        }
+        misses.increment();
+        // the id is unknown until loaded, so any change committed meanwhile discards the fill
+        long cleared = clears.get(), changed = totalChanges();
+        var loaded = repo.findViewBySku(sku);
+        loaded.ifPresent(v -> {
+            long slotSeen = changes(v.id());
+            if (totalChanges() == changed) fill(v, cleared, slotSeen);
+        });
+        return loaded;
+    }
+
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (this) {
+            changed(event.id());
+            if (event.deleted()) {
+                publish(event.id(), null);
+            } else if (snapshot.byId().containsKey(event.id())) {
+                // only refresh what is already hot; cold products are loaded on first read
+                publish(event.id(), ProductView.of(event.product()));
+            }
+        }
+    }
+
+    /** Patches the stock of the cached products in the batch, publishing one snapshot for all of them. */
+    @TransactionalEventListener
+    public synchronized void onStockChanged(StockChangedEvent event) {
+        var s = snapshot;
+        Map<Long, Entry> byId = null;
+        for (var level : event.levels()) {
+            changed(level.id());
+            var e = s.byId().get(level.id());
+            if (e == null) continue;
+            if (byId == null) byId = new HashMap<>(s.byId());
+            var v = e.view;
+            byId.put(v.id(), new Entry(new ProductView(v.id(), v.sku(), v.name(), v.description(), v.price(), level.stock(),
+                    v.active(), v.imageUrl(), v.categoryId(), v.createdAt(), level.updatedAt()), e.lastRead));
+        }
+        if (byId == null) return;
+        snapshot = new Snapshot(Map.copyOf(byId), s.idBySku());
+        rebuilds.increment();
+    }
+
+    @EventListener
+    public void onBulkChange(ProductsBulkChangedEvent event) { clear(); }
+
+    public synchronized void clear() {
+        clears.incrementAndGet();
+        snapshot = new Snapshot(Map.of(), Map.of());
+        rebuilds.increment();
+    }
+
+    public int size() { return snapshot.byId().size(); }
+
+    private synchronized void fill(ProductView view, long seenClears, long seenChanges) {
+        if (clears.get() != seenClears || changes(view.id()) != seenChanges) return;
+        publish(view.id(), view);
+    }
+
+    private synchronized void fill(List<ProductView> views, long seenClears, Map<Long, Long> seenChanges) {
+        if (clears.get() != seenClears) return;
+        var unchanged = views.stream().filter(v -> changes(v.id()) == seenChanges.get(v.id())).toList();
+        if (unchanged.isEmpty()) return;
+        var byId = new HashMap<>(snapshot.byId());
+        var idBySku = new HashMap<>(snapshot.idBySku());
+        unchanged.forEach(v -> replace(byId, idBySku, v.id(), v));
+        publish(byId, idBySku);
+    }
+
+    private static int slot(Long id) { return Long.hashCode(id) & (CHANGE_SLOTS - 1); }
+
+    private long changes(Long id) { return changes.get(slot(id)); }
+
+    private void changed(Long id) {
+        changes.incrementAndGet(slot(id));
+        totalChanges.incrementAndGet();
+    }
+
+    private long totalChanges() { return totalChanges.get(); }
+
+    /** Copy-on-write: replaces (or removes, when {@code view} is null) one entry. Caller holds the lock. */
+    private void publish(Long id, ProductView view) {
+        var byId = new HashMap<>(snapshot.byId());
+        var idBySku = new HashMap<>(snapshot.idBySku());
+        replace(byId, idBySku, id, view);
+        publish(byId, idBySku);
+    }
+
+    private void publish(Map<Long, Entry> byId, Map<String, Long> idBySku) {
+        if (byId.size() > maxEntries) evictColdest(byId, idBySku);
+        snapshot = new Snapshot(Map.copyOf(byId), Map.copyOf(idBySku));
+        rebuilds.increment();
+    }
+
+    private static void replace(Map<Long, Entry> byId, Map<String, Long> idBySku, Long id, ProductView view) {
+        var old = byId.remove(id);
+        if (old != null) idBySku.remove(old.view.sku());
+        if (view != null) {
+            byId.put(id, new Entry(view));
+            idBySku.put(view.sku(), id);
+        }
+    }
+
+    /** Trims to 90% of the bound so eviction is amortised over many fills. */
+    private void evictColdest(Map<Long, Entry> byId, Map<String, Long> idBySku) {
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        var coldest = byId.entrySet().stream()
+                .sorted(Comparator.comparingLong(en -> en.getValue().lastRead))
+                .limit(byId.size() - target)
+                .toList();
+        for (var en : coldest) {
+            byId.remove(en.getKey());
+            idBySku.remove(en.getValue().view.sku());
+        }
+        evictions.add(coldest.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("catalog.cache.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("catalog.cache.misses", misses, LongAdder::sum).register(registry);
+        FunctionCounter.builder("catalog.cache.rebuilds", rebuilds, LongAdder::sum)
+                .description("Snapshot publications").register(registry);
+        FunctionCounter.builder("catalog.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("catalog.cache.size", this, ProductCatalogCache::size).register(registry);
+    }
+}
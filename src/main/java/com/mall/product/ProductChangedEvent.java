@@ -0,0 +1,15 @@
+package com.mall.product;
+
+import com.mall.common.CatalogChange;
+import com.mall.common.CatalogHttpCache;
+
+/**
+ * Published by {@link ProductService} on every product write. {@code product} is null when the
+ * product was deleted. Listeners that care about committed state should use
+ * {@code @TransactionalEventListener}.
+ */
+public record ProductChangedEvent(Long id, Product product) implements CatalogChange {
+    @Override public String collection() { return CatalogHttpCache.PRODUCTS; }
+
+    public boolean deleted() { return product == null; }
+}
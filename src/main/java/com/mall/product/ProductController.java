@@ -1,30 +1,91 @@
 package com.mall.product;
 
+import com.mall.common.CatalogHttpCache;
+import com.mall.product.search.SearchHit;
+import com.mall.product.search.Suggestion;
+import com.mall.service.ImageVariant;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
 
 // ✨ Updated DTO with imageUrl
-record ProductDto(Long id, String sku, String name, String description, Double price, Integer stock, Boolean active, String imageUrl) {}
+record ProductDto(Long id, String sku, String name, String description, Double price, Integer stock, Boolean active, String imageUrl,
+                  String thumbnailUrl, String mediumUrl, Long categoryId) {}
+record ProductPageDto(List<ProductDto> items, String nextCursor) {}
+record ProductSearchDto(long total, int page, int size, List<ProductDto> items) {}
 
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
     private final ProductService service;
+    private final CatalogHttpCache httpCache;
 
-    public ProductController(ProductService s) { this.service = s; }
+    public ProductController(ProductService s, CatalogHttpCache httpCache) {
+        this.service = s;
+        this.httpCache = httpCache;
+    }
 
     @GetMapping
-    public List<ProductDto> list() {
-        return service.findAll().stream().map(ProductController::toDto).toList();
+    public ResponseEntity<ProductPageDto> list(@RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "" + ProductQuery.DEFAULT_LIMIT) int limit,
+                                               @RequestParam(required = false) String sort,
+                                               @RequestParam(required = false) Boolean active,
+                                               @RequestParam(required = false) Double minPrice,
+                                               @RequestParam(required = false) Double maxPrice,
+                                               @RequestParam(required = false) Integer maxStock,
+                                               @RequestParam(required = false) String name,
+                                               @RequestParam(required = false) Long category,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var query = new ProductQuery(active, minPrice, maxPrice, maxStock, name, category, ProductSort.from(sort), cursor, limit);
+        return httpCache.conditional(ifNoneMatch, listTag(category), () -> {
+            var page = service.page(query);
+            return new ProductPageDto(page.items().stream().map(ProductController::toDto).toList(), page.nextCursor());
+        });
+    }
+
+    /** Takes the listing's filters; for totals, which the listing leaves out to stay a single keyset query. */
+    @GetMapping("/count")
+    public ResponseEntity<Map<String, Long>> count(@RequestParam(required = false) Boolean active,
+                                                   @RequestParam(required = false) Double minPrice,
+                                                   @RequestParam(required = false) Double maxPrice,
+                                                   @RequestParam(required = false) Integer maxStock,
+                                                   @RequestParam(required = false) String name,
+                                                   @RequestParam(required = false) Long category,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var query = new ProductQuery(active, minPrice, maxPrice, maxStock, name, category, null, null, 0);
+        return httpCache.conditional(ifNoneMatch, listTag(category), () -> Map.of("count", service.count(query)));
+    }
+
+    /** A category filter also depends on the category tree's shape. */
+    private String listTag(Long category) {
+        return category == null
+                ? httpCache.collectionTag(CatalogHttpCache.PRODUCTS)
+                : httpCache.collectionTag(CatalogHttpCache.PRODUCTS, CatalogHttpCache.CATEGORIES);
+    }
+
+    @GetMapping("/search")
+    public ProductSearchDto search(@RequestParam String q,
+                                   @RequestParam(defaultValue = "0") int page,
+                                   @RequestParam(defaultValue = "" + ProductQuery.DEFAULT_LIMIT) int size) {
+        var result = service.search(q, page, size);
+        return new ProductSearchDto(result.total(), page, size, result.items().stream().map(ProductController::toDto).toList());
+    }
+
+    @GetMapping("/suggest")
+    public List<Suggestion> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return service.suggest(prefix, limit);
     }
 
     @GetMapping("/{id}")
-    public ProductDto get(@PathVariable Long id) {
-        return toDto(service.findById(id));
+    public ResponseEntity<ProductDto> get(@PathVariable Long id,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var view = service.view(id);
+        return httpCache.conditional(ifNoneMatch, httpCache.entityTag(CatalogHttpCache.PRODUCTS, view.id(), view.updatedAt()), () -> toDto(view));
     }
 
     @PostMapping
@@ -66,10 +127,24 @@ public class ProductController {
                 p.getPrice(),
                 p.getStock(),
                 p.getActive(),
-                p.getImageUrl()  // ✨ NEW: Include imageUrl
+                p.getImageUrl(),  // ✨ NEW: Include imageUrl
+                ImageVariant.THUMBNAIL.urlOf(p.getImageUrl()),
+                ImageVariant.MEDIUM.urlOf(p.getImageUrl()),
+                p.getCategoryId()
         );
     }
 
+    /** Search results carry no description. */
+    private static ProductDto toDto(SearchHit h) {
+        return new ProductDto(h.id(), h.sku(), h.name(), null, h.price(), h.stock(), true, h.imageUrl(),
+                ImageVariant.THUMBNAIL.urlOf(h.imageUrl()), ImageVariant.MEDIUM.urlOf(h.imageUrl()), h.categoryId());
+    }
+
+    private static ProductDto toDto(ProductView v) {
+        return new ProductDto(v.id(), v.sku(), v.name(), v.description(), v.price(), v.stock(), v.active(), v.imageUrl(),
+                ImageVariant.THUMBNAIL.urlOf(v.imageUrl()), ImageVariant.MEDIUM.urlOf(v.imageUrl()), v.categoryId());
+    }
+
     private static Product fromDto(ProductDto d) {
         return Product.builder()
                 .id(d.id())
@@ -80,6 +155,7 @@ public class ProductController {
                 .stock(d.stock())
                 .active(d.active() == null ? true : d.active())
                 .imageUrl(d.imageUrl())  // ✨ NEW: Include imageUrl
+                .categoryId(d.categoryId())
                 .build();
     }
 
@@ -0,0 +1,53 @@
+package com.mall.product;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position for the product listing. The token carries the sort key and
+ * the values of the last row returned, so the next page seeks past it instead of
+ * skipping rows with an OFFSET.
+ */
+record ProductCursor(ProductSort sort, Double price, Instant createdAt, Long id) {
+
+    static ProductCursor after(ProductSort sort, ProductView last) {
+        return new ProductCursor(sort, last.price(), last.createdAt(), last.id());
+    }
+
+    String encode() {
+        String key = switch (sort) {
+            case ID -> "";
+            case PRICE -> String.valueOf(price);
+            case CREATED_AT -> createdAt.toString();
+        };
+        String raw = sort.name() + "|" + key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ProductCursor decode(String token, ProductSort expected) {
+        String[] parts;
+        ProductSort sort;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+            sort = parts.length == 3 ? ProductSort.valueOf(parts[0]) : null;
+        } catch (IllegalArgumentException e) {
+            sort = null;
+            parts = null;
+        }
+        if (sort == null) throw new IllegalArgumentException("Invalid cursor");
+        if (sort != expected) throw new IllegalArgumentException("Cursor does not match sort order");
+
+        try {
+            long id = Long.parseLong(parts[2]);
+            return switch (sort) {
+                case ID -> new ProductCursor(sort, null, null, id);
+                case PRICE -> new ProductCursor(sort, Double.valueOf(parts[1]), null, id);
+                case CREATED_AT -> new ProductCursor(sort, null, Instant.parse(parts[1]), id);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.mall.product;
+
+import java.util.List;
+
+/** One page of products; {@code nextCursor} is null on the last page. */
+public record ProductPage(List<ProductView> items, String nextCursor) {}
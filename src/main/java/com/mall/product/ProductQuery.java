@@ -0,0 +1,20 @@
+package com.mall.product;
+
+/**
+ * Filters and keyset position for one page of the product listing. {@code categoryId} matches
+ * products in that category and all of its subcategories; {@code maxStock} those with at most that
+ * much stock left.
+ */
+public record ProductQuery(Boolean active, Double minPrice, Double maxPrice, Integer maxStock, String namePrefix,
+                           Long categoryId, ProductSort sort, String cursor, int limit) {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    public ProductQuery {
+        if (sort == null) sort = ProductSort.ID;
+        if (limit < 1) limit = DEFAULT_LIMIT;
+        if (limit > MAX_LIMIT) limit = MAX_LIMIT;
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice)
+            throw new IllegalArgumentException("minPrice must not exceed maxPrice");
+    }
+}
@@ -1,10 +1,53 @@
 package com.mall.product;
 
+import com.mall.product.search.SuggestSource;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductRepositoryCustom {
+    // Read paths select into ProductView so they never materialise Product entities (or their reviews)
+    String VIEW = "select new com.mall.product.ProductView(p.id, p.sku, p.name, p.description, p.price, " +
+                  "p.stock, p.active, p.imageUrl, p.categoryId, p.createdAt, p.updatedAt) from Product p ";
+
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
     boolean existsBySku(String sku);
+
+    /** For edits, so the stock they replace is the stock they read and no stock update lands in between. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Product p where p.id = :id")
+    Optional<Product> lockById(@Param("id") Long id);
+    boolean existsByCategoryId(Long categoryId);
+
+    @Query("select p.sku from Product p where p.sku in :skus")
+    Set<String> findExistingSkus(@Param("skus") Collection<String> skus);
     Optional<Product> findBySku(String sku);
+    @Query(VIEW + "where p.id = :id")
+    Optional<ProductView> findViewById(@Param("id") Long id);
+
+    @Query(VIEW + "where p.id in :ids")
+    List<ProductView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(VIEW + "where p.sku = :sku")
+    Optional<ProductView> findViewBySku(@Param("sku") String sku);
+
+    @Query(VIEW + "where p.id > :after order by p.id")
+    List<ProductView> findViewsAfter(@Param("after") Long after, Limit limit);
+
+    @Query("select new com.mall.product.search.SuggestSource(p.id, p.sku, p.name, p.stock, p.active) " +
+           "from Product p where p.id > :after order by p.id")
+    List<SuggestSource> findSuggestSources(@Param("after") Long after, Limit limit);
+
+    @Query("select p.imageUrl from Product p where p.imageUrl is not null")
+    Stream<String> streamImageUrls();
 }
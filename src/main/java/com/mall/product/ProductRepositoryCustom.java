@@ -0,0 +1,11 @@
+package com.mall.product;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+    /** Like {@code findAll(spec, sort)} but selects straight into {@link ProductView}s, never managing entities. */
+    List<ProductView> findViews(Specification<Product> spec, Sort sort, int limit);
+}
@@ -0,0 +1,29 @@
+package com.mall.product;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<ProductView> findViews(Specification<Product> spec, Sort sort, int limit) {
+        var cb = em.getCriteriaBuilder();
+        var q = cb.createQuery(ProductView.class);
+        var p = q.from(Product.class);
+        q.select(cb.construct(ProductView.class,
+                p.get("id"), p.get("sku"), p.get("name"), p.get("description"), p.get("price"),
+                p.get("stock"), p.get("active"), p.get("imageUrl"), p.get("categoryId"), p.get("createdAt"), p.get("updatedAt")));
+        var where = spec.toPredicate(p, q, cb);
+        if (where != null) q.where(where);
+        q.orderBy(QueryUtils.toOrders(sort, p, cb));
+        return em.createQuery(q).setMaxResults(limit).getResultList();
+    }
+}
@@ -1,45 +1,101 @@
 package com.mall.product;
 
+import com.mall.category.CategoryRepository;
+import com.mall.category.CategoryTree;
+import com.mall.product.search.ProductSearchIndex;
+import com.mall.product.search.ProductSuggester;
+import com.mall.product.search.SearchResult;
+import com.mall.product.search.Suggestion;
+import com.mall.storage.ContentStore;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository repo;
+    private final CategoryRepository categories;
+    private final CategoryTree categoryTree;
+    private final ProductCatalogCache catalog;
+    private final ApplicationEventPublisher events;
+    private final ProductSearchIndex searchIndex;
+    private final ProductSuggester suggester;
+    private final ContentStore store;
 
-    @Value("${file.upload.directory:uploads}")
-    private String uploadDirectory;
+    private static final int MAX_SEARCH_OFFSET = 10_000;
 
     public List<Product> findAll() { return repo.findAll(); }
 
+    public ProductPage page(ProductQuery q) {
+        var spec = filter(q);
+        if (q.cursor() != null && !q.cursor().isBlank())
+            spec = spec.and(ProductSpecs.after(ProductCursor.decode(q.cursor(), q.sort())));
+
+        // fetch one extra row to know whether another page exists, without a COUNT query
+        List<ProductView> rows = repo.findViews(spec, q.sort().toSort(), q.limit() + 1);
+        if (rows.size() <= q.limit()) return new ProductPage(rows, null);
+
+        var items = rows.subList(0, q.limit());
+        return new ProductPage(items, ProductCursor.after(q.sort(), items.get(items.size() - 1)).encode());
+    }
+
+    /** How many products match {@code q}'s filters, over all pages. */
+    public long count(ProductQuery q) {
+        return repo.count(filter(q));
+    }
+
+    private Specification<Product> filter(ProductQuery q) {
+        var spec = ProductSpecs.matching(q);
+        if (q.categoryId() != null) {
+            var category = categoryTree.byId(q.categoryId()).orElseThrow(() -> new IllegalArgumentException("Category not found"));
+            spec = spec.and(ProductSpecs.inSubtree(category));
+        }
+        return spec;
+    }
+
+    public SearchResult search(String query, int page, int size) {
+        if (query == null || query.isBlank()) throw new IllegalArgumentException("Query is required");
+        if (page < 0 || size < 1 || size > ProductQuery.MAX_LIMIT) throw new IllegalArgumentException("Invalid page or size");
+        if ((long) page * size > MAX_SEARCH_OFFSET) throw new IllegalArgumentException("Page too deep, refine the query");
+        return searchIndex.search(query, page, size);
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit < 1 || limit > ProductSuggester.MAX_LIMIT) throw new IllegalArgumentException("Invalid limit");
+        return suggester.suggest(prefix, limit);
+    }
+
     public Product findById(Long id) {
         return repo.findById(id).orElseThrow(() ->
                 new IllegalArgumentException("Product not found"));
     }
 
+    /** Cached read for display and pricing; use {@link #findById} when the entity will be modified. */
+    public ProductView view(Long id) {
+        return catalog.get(id).orElseThrow(() -> new IllegalArgumentException("Product not found"));
+    }
+
     @Transactional
     public Product create(Product p) {
         if (repo.existsBySku(p.getSku()))
             throw new IllegalArgumentException("SKU already exists");
-        return repo.save(p);
+        validateCategory(p.getCategoryId());
+        if (p.getImageUrl() != null) store.retain(p.getImageUrl());
+        return changed(repo.save(p));
     }
 
     @Transactional
     public Product update(Long id, Product changes) {
-        var p = findById(id);
+        var p = repo.lockById(id).orElseThrow(() -> new IllegalArgumentException("Product not found"));
+        Integer stockBefore = p.getStock();
         if (!p.getSku().equals(changes.getSku()) && repo.existsBySku(changes.getSku()))
             throw new IllegalArgumentException("SKU already exists");
 
@@ -49,17 +105,24 @@ public class ProductService {
         p.setPrice(changes.getPrice());
         p.setStock(changes.getStock());
         p.setActive(changes.getActive());
+        validateCategory(changes.getCategoryId());
+        p.setCategoryId(changes.getCategoryId());
 
         // ✨ Update imageUrl if provided
-        if (changes.getImageUrl() != null) {
+        if (changes.getImageUrl() != null && !changes.getImageUrl().equals(p.getImageUrl())) {
+            store.retain(changes.getImageUrl());
+            if (p.getImageUrl() != null) store.release(p.getImageUrl());
             p.setImageUrl(changes.getImageUrl());
         }
 
-        return repo.save(p);
+        var saved = changed(repo.save(p));
+        if (stockBefore != null && saved.getStock() != null && !stockBefore.equals(saved.getStock()))
+            events.publishEvent(new StockEditedEvent(id, stockBefore, saved.getStock()));
+        return saved;
     }
 
     // ✨ NEW: Upload product image
-    @Transactional
+    @Transactional(rollbackFor = IOException.class)
     public Product uploadProductImage(Long productId, MultipartFile file) throws IOException {
         Product product = findById(productId);
 
@@ -74,46 +137,31 @@ public class ProductService {
             throw new IllegalArgumentException("Only image files are allowed");
         }
 
-        // Create uploads directory if it doesn't exist
-        Path uploadPath = Paths.get(uploadDirectory);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = originalFilename != null && originalFilename.contains(".")
-                ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                : ".jpg";
-        String newFilename = "product_" + productId + "_" + UUID.randomUUID() + fileExtension;
-
-        // Save file
-        Path filePath = uploadPath.resolve(newFilename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        // identical images uploaded for many products share one stored file
+        String previous = product.getImageUrl();
+        product.setImageUrl(store.store(file));
+        if (previous != null) store.release(previous);
 
-        // Update product with image URL
-        String imageUrl = "/" + uploadDirectory + "/" + newFilename;
-        product.setImageUrl(imageUrl);
-
-        return repo.save(product);
+        return changed(repo.save(product));
     }
 
     @Transactional
     public void delete(Long id) {
         Product product = findById(id);
 
-        // ✨ Delete image file if exists
-        if (product.getImageUrl() != null) {
-            try {
-                Path imagePath = Paths.get(uploadDirectory).resolve(
-                        product.getImageUrl().substring(product.getImageUrl().lastIndexOf("/") + 1)
-                );
-                Files.deleteIfExists(imagePath);
-            } catch (IOException e) {
-                // Log error but continue with deletion
-            }
-        }
+        if (product.getImageUrl() != null) store.release(product.getImageUrl());
 
         repo.deleteById(id);
+        events.publishEvent(new ProductChangedEvent(id, null));
+    }
+
+    private void validateCategory(Long categoryId) {
+        if (categoryId != null && !categories.existsById(categoryId))
+            throw new IllegalArgumentException("Category not found");
+    }
+
+    private Product changed(Product p) {
+        events.publishEvent(new ProductChangedEvent(p.getId(), p));
+        return p;
     }
 }
@@ -0,0 +1,26 @@
+package com.mall.product;
+
+import org.springframework.data.domain.Sort;
+
+/** Keyset orderings supported by the product listing; every one ends with {@code id} as tie-breaker. */
+public enum ProductSort {
+    ID(Sort.by("id")),
+    PRICE(Sort.by("price", "id")),
+    CREATED_AT(Sort.by("createdAt", "id"));
+
+    private final Sort sort;
+
+    ProductSort(Sort sort) { this.sort = sort; }
+
+    Sort toSort() { return sort; }
+
+    public static ProductSort from(String value) {
+        if (value == null || value.isBlank()) return ID;
+        return switch (value.trim()) {
+            case "id" -> ID;
+            case "price" -> PRICE;
+            case "createdAt" -> CREATED_AT;
+            default -> throw new IllegalArgumentException("Unsupported sort: " + value);
+        };
+    }
+}
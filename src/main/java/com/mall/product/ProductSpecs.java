@@ -0,0 +1,52 @@
+package com.mall.product;
+
+import com.mall.category.Category;
+import com.mall.category.CategoryTree;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+
+final class ProductSpecs {
+    private ProductSpecs() {}
+
+    static Specification<Product> matching(ProductQuery q) {
+        var specs = new ArrayList<Specification<Product>>();
+        if (q.active() != null) specs.add((root, cq, cb) -> cb.equal(root.get("active"), q.active()));
+        if (q.minPrice() != null) specs.add((root, cq, cb) -> cb.ge(root.get("price"), q.minPrice()));
+        if (q.maxPrice() != null) specs.add((root, cq, cb) -> cb.le(root.get("price"), q.maxPrice()));
+        if (q.maxStock() != null) specs.add((root, cq, cb) -> cb.le(root.get("stock"), q.maxStock()));
+        if (q.namePrefix() != null && !q.namePrefix().isBlank()) {
+            String pattern = escapeLike(q.namePrefix().trim()) + "%";
+            specs.add((root, cq, cb) -> cb.like(root.get("name"), pattern, '\\'));
+        }
+        return Specification.allOf(specs);
+    }
+
+    /** Products whose category lies in the nested-set interval {@code [lft, rgt]}: one index range scan. */
+    static Specification<Product> inSubtree(CategoryTree.Node c) {
+        return (root, cq, cb) -> {
+            var sq = cq.subquery(Long.class);
+            var cat = sq.from(Category.class);
+            sq.select(cat.get("id")).where(cb.between(cat.get("lft"), c.lft(), c.rgt()));
+            return root.get("categoryId").in(sq);
+        };
+    }
+
+    /** Rows strictly after the cursor in (key, id) order. */
+    static Specification<Product> after(ProductCursor c) {
+        return switch (c.sort()) {
+            case ID -> (root, cq, cb) -> cb.gt(root.get("id"), c.id());
+            case PRICE -> (root, cq, cb) -> cb.or(
+                    cb.gt(root.get("price"), c.price()),
+                    cb.and(cb.equal(root.get("price"), c.price()), cb.gt(root.get("id"), c.id())));
+            case CREATED_AT -> (root, cq, cb) -> cb.or(
+                    cb.greaterThan(root.<Instant>get("createdAt"), c.createdAt()),
+                    cb.and(cb.equal(root.get("createdAt"), c.createdAt()), cb.gt(root.get("id"), c.id())));
+        };
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
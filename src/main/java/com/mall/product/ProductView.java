@@ -0,0 +1,13 @@
+package com.mall.product;
+
+import java.time.Instant;
+
+/** Immutable read-side projection of a product, safe to share between threads and cache. */
+public record ProductView(Long id, String sku, String name, String description, Double price,
+                          Integer stock, Boolean active, String imageUrl, Long categoryId, Instant createdAt, Instant updatedAt) {
+
+    public static ProductView of(Product p) {
+        return new ProductView(p.getId(), p.getSku(), p.getName(), p.getDescription(), p.getPrice(),
+                p.getStock(), p.getActive(), p.getImageUrl(), p.getCategoryId(), p.getCreatedAt(), p.getUpdatedAt());
+    }
+}
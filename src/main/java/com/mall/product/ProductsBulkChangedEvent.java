@@ -0,0 +1,12 @@
+package com.mall.product;
+
+import com.mall.common.CatalogChange;
+import com.mall.common.CatalogHttpCache;
+
+/**
+ * Published after products were written in bulk outside JPA, e.g. by an import. Listeners
+ * holding product state should reload it rather than patch individual entries.
+ */
+public record ProductsBulkChangedEvent() implements CatalogChange {
+    @Override public String collection() { return CatalogHttpCache.PRODUCTS; }
+}
@@ -0,0 +1,18 @@
+package com.mall.product;
+
+import com.mall.common.CatalogChange;
+import com.mall.common.CatalogHttpCache;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Published by the inventories once per batch of stock updates, carrying the new stock of each
+ * product touched as read back in the writing transaction. Nothing else about the products
+ * changed, so listeners can patch what they hold instead of reloading or reindexing it.
+ */
+public record StockChangedEvent(List<Level> levels) implements CatalogChange {
+    public record Level(Long id, int stock, Instant updatedAt) {}
+
+    @Override public String collection() { return CatalogHttpCache.PRODUCTS; }
+}
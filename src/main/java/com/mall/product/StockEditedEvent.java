@@ -0,0 +1,7 @@
+package com.mall.product;
+
+/**
+ * Published by {@link ProductService} when a product's stock is set by hand, with the value it
+ * replaced. Inventories that hold stock outside {@code products.stock} apply the difference.
+ */
+public record StockEditedEvent(Long id, int from, int to) {}
@@ -0,0 +1,73 @@
+package com.mall.product.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: quoted fields may contain commas, doubled quotes and line
+ * breaks. Only the current record is held in memory. A quoted field left open runs to the end of
+ * the input, so it is rejected with an {@link IllegalArgumentException} rather than skipped.
+ */
+final class CsvReader {
+    private final Reader in;
+    private int peeked = -2;
+
+    CsvReader(Reader in) { this.in = in; }
+
+    /** Next record, or null at end of input. Blank lines are skipped. */
+    List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) return null;
+            if (c == '\r' || c == '\n') continue;
+            unread(c);
+            return record();
+        }
+    }
+
+    private List<String> record() throws IOException {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) throw new IllegalArgumentException("Unterminated quoted field");
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') field.append('"');
+                    else {
+                        quoted = false;
+                        unread(n);
+                    }
+                } else field.append((char) c);
+                continue;
+            }
+            if (c == '"' && field.isEmpty()) quoted = true;
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int n = read();
+                    if (n != '\n') unread(n);
+                }
+                fields.add(field.toString());
+                return fields;
+            } else field.append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c) { peeked = c; }
+}
@@ -0,0 +1,11 @@
+package com.mall.product.bulk;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. {@code errors} lists failed rows by their position in the file and
+ * is capped; {@code failed} always counts every failure.
+ */
+public record ImportReport(long inserted, long updated, long failed, List<RowError> errors, boolean errorsTruncated) {
+    public record RowError(long row, String sku, String message) {}
+}
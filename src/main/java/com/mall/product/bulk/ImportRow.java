@@ -0,0 +1,5 @@
+package com.mall.product.bulk;
+
+/** One product as it appears in an import file (CSV columns or NDJSON fields). */
+public record ImportRow(String sku, String name, String description, Double price, Integer stock,
+                        Boolean active, Long categoryId) {}
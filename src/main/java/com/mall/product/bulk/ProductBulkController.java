@@ -0,0 +1,54 @@
+package com.mall.product.bulk;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/products")
+@RequiredArgsConstructor
+public class ProductBulkController {
+    static final String NDJSON = "application/x-ndjson";
+
+    private final ProductImportService importer;
+    private final ProductExportService exporter;
+
+    // Body is read as a stream: CSV with a header row, or one JSON object per line
+    @PostMapping(value = "/import", consumes = {"text/csv", NDJSON})
+    @PreAuthorize("hasAnyRole('ADMIN','VENDOR')")
+    public ImportReport importProducts(HttpServletRequest request,
+                                       @RequestParam(defaultValue = "false") boolean upsert) throws IOException {
+        var type = MediaType.parseMediaType(request.getContentType());
+        return type.isCompatibleWith(MediaType.parseMediaType(NDJSON))
+                ? importer.importNdjson(request.getInputStream(), upsert)
+                : importer.importCsv(request.getInputStream(), upsert);
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('ADMIN','VENDOR')")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") String format) {
+        return switch (format) {
+            case "csv" -> ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", java.nio.charset.StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products.csv")
+                    .body(exporter::writeCsv);
+            case "ndjson" -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(NDJSON))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products.ndjson")
+                    .body(exporter::writeNdjson);
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        };
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class})
+    public ResponseEntity<java.util.Map<String, String>> badRequest(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body(java.util.Map.of("message", ex.getMessage()));
+    }
+}
@@ -0,0 +1,103 @@
+package com.mall.product.bulk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes the catalog straight from JDBC rows to the response, one keyset page of
+ * {@value #PAGE} rows at a time, so memory use does not grow with the catalog.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+    static final int PAGE = 1000;
+    private static final String SELECT = "SELECT id, sku, name, description, price, stock, active, category_id " +
+            "FROM products WHERE id > ? ORDER BY id LIMIT " + PAGE;
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+
+    public void writeCsv(OutputStream out) throws IOException {
+        var w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        w.write("sku,name,description,price,stock,active,categoryId\n");
+        stream(rs -> {
+            w.write(csv(rs.getString("sku")));
+            w.write(',');
+            w.write(csv(rs.getString("name")));
+            w.write(',');
+            w.write(csv(rs.getString("description")));
+            w.write(',');
+            w.write(String.valueOf(rs.getDouble("price")));
+            w.write(',');
+            w.write(String.valueOf(rs.getInt("stock")));
+            w.write(',');
+            w.write(String.valueOf(rs.getBoolean("active")));
+            w.write(',');
+            long category = rs.getLong("category_id");
+            if (!rs.wasNull()) w.write(String.valueOf(category));
+            w.write('\n');
+        });
+        w.flush();
+    }
+
+    public void writeNdjson(OutputStream out) throws IOException {
+        try (JsonGenerator g = mapper.getFactory().createGenerator(out)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            g.setRootValueSeparator(null);
+            stream(rs -> {
+                g.writeStartObject();
+                g.writeStringField("sku", rs.getString("sku"));
+                g.writeStringField("name", rs.getString("name"));
+                g.writeStringField("description", rs.getString("description"));
+                g.writeNumberField("price", rs.getDouble("price"));
+                g.writeNumberField("stock", rs.getInt("stock"));
+                g.writeBooleanField("active", rs.getBoolean("active"));
+                long category = rs.getLong("category_id");
+                if (rs.wasNull()) g.writeNullField("categoryId");
+                else g.writeNumberField("categoryId", category);
+                g.writeEndObject();
+                g.writeRaw('\n');
+            });
+        }
+    }
+
+    private void stream(RowWriter writer) throws IOException {
+        long[] after = {0};
+        int[] count = new int[1];
+        do {
+            count[0] = 0;
+            try {
+                jdbc.query(SELECT, rs -> {
+                    try {
+                        writer.write(rs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    after[0] = rs.getLong("id");
+                    count[0]++;
+                }, after[0]);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } while (count[0] == PAGE);
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
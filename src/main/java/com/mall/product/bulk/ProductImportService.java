@@ -0,0 +1,249 @@
+package com.mall.product.bulk;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mall.category.CategoryRepository;
+import com.mall.product.ProductRepository;
+import com.mall.product.ProductsBulkChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Streams CSV or NDJSON product files into the catalog. Rows are parsed one at a time and
+ * written in chunks of {@code catalog.import.batch-size}: one SKU lookup per chunk, then JDBC
+ * batch INSERTs for new SKUs and batch UPDATEs for existing ones, each chunk in its own
+ * transaction. Bad rows are reported and skipped; only a CSV quoted field left open, which swallows
+ * the rest of the file, stops the import, after the chunks before it were written.
+ */
+@Service
+public class ProductImportService {
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final List<String> CSV_COLUMNS = List.of("sku", "name", "description", "price", "stock", "active", "categoryId");
+
+    private static final String INSERT = "INSERT INTO products (sku, name, description, price, stock, active, category_id, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE products SET name = ?, description = ?, price = ?, stock = ?, active = ?, category_id = ?, updated_at = ? " +
+            "WHERE sku = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ProductRepository products;
+    private final CategoryRepository categories;
+    private final ObjectReader ndjsonReader;
+    private final ApplicationEventPublisher events;
+    private final int batchSize;
+
+    public ProductImportService(JdbcTemplate jdbc, TransactionTemplate tx, ProductRepository products,
+                                CategoryRepository categories, ObjectMapper mapper, ApplicationEventPublisher events,
+                                @Value("${catalog.import.batch-size:500}") int batchSize) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.products = products;
+        this.categories = categories;
+        this.ndjsonReader = mapper.readerFor(ImportRow.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.events = events;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /** A parsed row, or the reason the line could not be parsed. */
+    private record Parsed(long row, ImportRow data, String error) {}
+
+    private interface RowSource {
+        Parsed next() throws IOException;
+    }
+
+    public ImportReport importCsv(InputStream body, boolean upsert) throws IOException {
+        var csv = new CsvReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+        var header = csv.next();
+        if (header == null) throw new IllegalArgumentException("CSV file is empty");
+        var index = new HashMap<String, Integer>();
+        for (int i = 0; i < header.size(); i++) index.put(header.get(i).trim(), i);
+        if (!index.containsKey("sku") || !index.containsKey("name") || !index.containsKey("price") || !index.containsKey("stock"))
+            throw new IllegalArgumentException("CSV header must include sku, name, price and stock; optional: " + CSV_COLUMNS);
+
+        long[] row = {0};
+        return run(() -> {
+            List<String> fields;
+            try {
+                fields = csv.next();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(e.getMessage() + " in row " + (row[0] + 1), e);
+            }
+            if (fields == null) return null;
+            row[0]++;
+            try {
+                return new Parsed(row[0], new ImportRow(
+                        field(fields, index, "sku"),
+                        field(fields, index, "name"),
+                        field(fields, index, "description"),
+                        parse(field(fields, index, "price"), Double::valueOf),
+                        parse(field(fields, index, "stock"), Integer::valueOf),
+                        parse(field(fields, index, "active"), Boolean::valueOf),
+                        parse(field(fields, index, "categoryId"), Long::valueOf)), null);
+            } catch (NumberFormatException e) {
+                return new Parsed(row[0], null, "Invalid number: " + e.getMessage());
+            }
+        }, upsert);
+    }
+
+    public ImportReport importNdjson(InputStream body, boolean upsert) throws IOException {
+        var lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long[] row = {0};
+        return run(() -> {
+            String line;
+            do {
+                line = lines.readLine();
+                if (line == null) return null;
+                row[0]++;
+            } while (line.isBlank());
+            try {
+                return new Parsed(row[0], ndjsonReader.readValue(line), null);
+            } catch (IOException e) {
+                return new Parsed(row[0], null, "Malformed JSON");
+            }
+        }, upsert);
+    }
+
+    private ImportReport run(RowSource source, boolean upsert) throws IOException {
+        var tally = new Tally();
+        try {
+            var chunk = new ArrayList<Parsed>(batchSize);
+            for (var p = source.next(); p != null; p = source.next()) {
+                if (p.error() != null) {
+                    tally.fail(p.row(), null, p.error());
+                    continue;
+                }
+                chunk.add(p);
+                if (chunk.size() == batchSize) {
+                    write(chunk, upsert, tally);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) write(chunk, upsert, tally);
+        } finally {
+            // JDBC writes bypass the entity listeners, so caches and indexes reload wholesale
+            if (tally.inserted + tally.updated > 0) events.publishEvent(new ProductsBulkChangedEvent());
+        }
+        return tally.report();
+    }
+
+    private void write(List<Parsed> chunk, boolean upsert, Tally tally) {
+        var valid = new ArrayList<Parsed>(chunk.size());
+        for (var p : chunk) {
+            var error = validate(p.data());
+            if (error != null) tally.fail(p.row(), p.data().sku(), error);
+            else valid.add(p);
+        }
+        if (valid.isEmpty()) return;
+
+        var skus = new HashSet<String>();
+        var categoryIds = new HashSet<Long>();
+        for (var p : valid) {
+            skus.add(p.data().sku().trim());
+            if (p.data().categoryId() != null) categoryIds.add(p.data().categoryId());
+        }
+        var existing = products.findExistingSkus(skus);
+        var knownCategories = new HashSet<Long>();
+        categories.findAllById(categoryIds).forEach(c -> knownCategories.add(c.getId()));
+
+        var inserts = new ArrayList<Parsed>();
+        var updates = new ArrayList<Parsed>();
+        var seen = new HashSet<String>();
+        for (var p : valid) {
+            var sku = p.data().sku().trim();
+            if (!seen.add(sku)) tally.fail(p.row(), sku, "Duplicate SKU in file");
+            else if (p.data().categoryId() != null && !knownCategories.contains(p.data().categoryId()))
+                tally.fail(p.row(), sku, "Category not found");
+            else if (!existing.contains(sku)) inserts.add(p);
+            else if (upsert) updates.add(p);
+            else tally.fail(p.row(), sku, "SKU already exists");
+        }
+        if (inserts.isEmpty() && updates.isEmpty()) return;
+
+        var now = Timestamp.from(Instant.now());
+        try {
+            tx.executeWithoutResult(s -> {
+                jdbc.batchUpdate(INSERT, inserts, batchSize, (ps, p) -> {
+                    var r = p.data();
+                    ps.setString(1, r.sku().trim());
+                    ps.setString(2, r.name().trim());
+                    ps.setString(3, r.description());
+                    ps.setDouble(4, r.price());
+                    ps.setInt(5, r.stock());
+                    ps.setBoolean(6, r.active() == null || r.active());
+                    ps.setObject(7, r.categoryId(), Types.BIGINT);
+                    ps.setTimestamp(8, now);
+                    ps.setTimestamp(9, now);
+                });
+                jdbc.batchUpdate(UPDATE, updates, batchSize, (ps, p) -> {
+                    var r = p.data();
+                    ps.setString(1, r.name().trim());
+                    ps.setString(2, r.description());
+                    ps.setDouble(3, r.price());
+                    ps.setInt(4, r.stock());
+                    ps.setBoolean(5, r.active() == null || r.active());
+                    ps.setObject(6, r.categoryId(), Types.BIGINT);
+                    ps.setTimestamp(7, now);
+                    ps.setString(8, r.sku().trim());
+                });
+            });
+            tally.inserted += inserts.size();
+            tally.updated += updates.size();
+        } catch (DataAccessException e) {
+            // e.g. a concurrent writer took one of the SKUs; the chunk rolled back as a whole
+            for (var p : inserts) tally.fail(p.row(), p.data().sku(), "Chunk rejected by database");
+            for (var p : updates) tally.fail(p.row(), p.data().sku(), "Chunk rejected by database");
+        }
+    }
+
+    private static String validate(ImportRow r) {
+        if (r.sku() == null || r.sku().isBlank()) return "SKU is required";
+        if (r.sku().trim().length() > 64) return "SKU is longer than 64 characters";
+        if (r.name() == null || r.name().isBlank()) return "Name is required";
+        if (r.name().trim().length() > 255) return "Name is longer than 255 characters";
+        if (r.price() == null || r.price() < 0) return "Price must be zero or more";
+        if (!Double.isFinite(r.price())) return "Price must be a finite number";
+        if (r.stock() == null || r.stock() < 0) return "Stock must be zero or more";
+        return null;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> index, String column) {
+        Integer i = index.get(column);
+        if (i == null || i >= fields.size()) return null;
+        var v = fields.get(i);
+        return v.isEmpty() ? null : v;
+    }
+
+    private static <T> T parse(String value, java.util.function.Function<String, T> parser) {
+        return value == null ? null : parser.apply(value.trim());
+    }
+
+    private static final class Tally {
+        long inserted, updated, failed;
+        final List<ImportReport.RowError> errors = new ArrayList<>();
+
+        void fail(long row, String sku, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new ImportReport.RowError(row, sku, message));
+        }
+
+        ImportReport report() {
+            return new ImportReport(inserted, updated, failed, List.copyOf(errors), failed > errors.size());
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.mall.product.search;
+
+import com.mall.product.ProductChangedEvent;
+import com.mall.product.ProductRepository;
+import com.mall.product.ProductView;
+import com.mall.product.ProductsBulkChangedEvent;
+import com.mall.product.StockChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory inverted index over the name, SKU and description of active products. Only a
+ * {@link SearchHit} is kept per product; the description is tokenized and dropped.
+ * <p>
+ * Every product gets an ordinal when indexed; postings are ordinal-sorted int arrays so queries
+ * intersect them with galloping search and only score documents that match every term. Updates
+ * append a new ordinal and tombstone the old one; the index is compacted once tombstones pile up.
+ * Stock changes touch no indexed text, so they only swap the stored hits in place.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+    static final float SKU_WEIGHT = 8f;
+    static final float NAME_WEIGHT = 3f;
+    static final float DESCRIPTION_WEIGHT = 1f;
+    private static final int BUILD_BATCH = 1000;
+
+    private final ProductRepository repo;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildMonitor = new Object();
+
+    private Index index = new Index();
+    // changes committed while a rebuild is reading the table; replayed onto the new index
+    private List<Consumer<Index>> pending;
+
+    public ProductSearchIndex(ProductRepository repo) { this.repo = repo; }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("product-search-build").start(this::rebuild);
+    }
+
+    @EventListener
+    public void onBulkChange(ProductsBulkChangedEvent event) {
+        Thread.ofVirtual().name("product-search-rebuild").start(this::rebuild);
+    }
+
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            long started = System.nanoTime();
+            withWriteLock(() -> pending = new ArrayList<>());
+
+            var fresh = new Index();
+            long after = 0;
+            List<ProductView> batch;
+            do {
+                batch = repo.findViewsAfter(after, Limit.of(BUILD_BATCH));
+                for (var v : batch) fresh.put(v);
+                if (!batch.isEmpty()) after = batch.get(batch.size() - 1).id();
+            } while (batch.size() == BUILD_BATCH);
+
+            withWriteLock(() -> {
+                pending.forEach(change -> change.accept(fresh));
+                pending = null;
+                index = fresh;
+            });
+            log.info("Product search index built: {} products in {} ms", fresh.live(), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        withWriteLock(() -> {
+            apply(index, event);
+            if (pending != null) pending.add(target -> apply(target, event));
+            if (index.needsCompaction()) index = index.compact();
+        });
+    }
+
+    @TransactionalEventListener
+    public void onStockChanged(StockChangedEvent event) {
+        withWriteLock(() -> {
+            event.levels().forEach(l -> index.setStock(l.id(), l.stock()));
+            if (pending != null) pending.add(target -> event.levels().forEach(l -> target.setStock(l.id(), l.stock())));
+        });
+    }
+
+    /** Products matching every query term, best first; {@code page} is zero-based. */
+    public SearchResult search(String query, int page, int size) {
+        var terms = Tokenizer.tokens(query);
+        if (terms.isEmpty()) return new SearchResult(0, List.of());
+
+        lock.readLock().lock();
+        try {
+            return index.search(terms, page * size, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.live();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void apply(Index target, ProductChangedEvent e) {
+        if (e.deleted()) target.remove(e.id());
+        else target.put(ProductView.of(e.product()));
+    }
+
+    private void withWriteLock(Runnable r) {
+        lock.writeLock().lock();
+        try {
+            r.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Postings {
+        int[] docs = new int[2];
+        float[] weights = new float[2];
+        int size;
+
+        void add(int doc, float weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    private record Hit(int doc, float score, long productId) {}
+
+    private static final Comparator<Hit> WORST_FIRST =
+            Comparator.comparingDouble(Hit::score).thenComparing(Hit::productId, Comparator.reverseOrder());
+
+    static final class Index {
+        private final Map<String, Postings> terms = new HashMap<>();
+        private final ArrayList<SearchHit> docs = new ArrayList<>();
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private int removed;
+
+        /** Indexes {@code v}, replacing any earlier version; an inactive product is only removed. */
+        void put(ProductView v) {
+            remove(v.id());
+            if (!Boolean.TRUE.equals(v.active())) return;
+            int doc = docs.size();
+            docs.add(SearchHit.of(v));
+            ordinals.put(v.id(), doc);
+
+            // each field counts once per term so repeated words in a description do not dominate
+            var weights = new HashMap<String, Float>();
+            for (var t : Tokenizer.skuTokens(v.sku())) weights.merge(t, SKU_WEIGHT, Float::sum);
+            for (var t : Tokenizer.tokens(v.name())) weights.merge(t, NAME_WEIGHT, Float::sum);
+            for (var t : Tokenizer.tokens(v.description())) weights.merge(t, DESCRIPTION_WEIGHT, Float::sum);
+            weights.forEach((t, w) -> terms.computeIfAbsent(t, k -> new Postings()).add(doc, w));
+        }
+
+        void remove(Long id) {
+            Integer doc = ordinals.remove(id);
+            if (doc != null) {
+                docs.set(doc, null);
+                removed++;
+            }
+        }
+
+        /** Replaces the stored hit of an indexed product; its postings stay as they are. */
+        void setStock(Long id, int stock) {
+            Integer doc = ordinals.get(id);
+            if (doc == null) return;
+            var h = docs.get(doc);
+            docs.set(doc, new SearchHit(h.id(), h.sku(), h.name(), h.price(), stock, h.imageUrl(), h.categoryId()));
+        }
+
+        int live() { return ordinals.size(); }
+
+        boolean needsCompaction() { return removed > 1024 && removed > docs.size() / 4; }
+
+        /** Drops tombstoned documents, renumbering the rest in order so postings stay sorted. */
+        Index compact() {
+            var fresh = new Index();
+            var renumbered = new int[docs.size()];
+            for (int doc = 0; doc < docs.size(); doc++) {
+                var hit = docs.get(doc);
+                if (hit == null) {
+                    renumbered[doc] = -1;
+                    continue;
+                }
+                renumbered[doc] = fresh.docs.size();
+                fresh.ordinals.put(hit.id(), fresh.docs.size());
+                fresh.docs.add(hit);
+            }
+            terms.forEach((term, p) -> {
+                var kept = new Postings();
+                for (int i = 0; i < p.size; i++) {
+                    if (renumbered[p.docs[i]] >= 0) kept.add(renumbered[p.docs[i]], p.weights[i]);
+                }
+                if (kept.size > 0) fresh.terms.put(term, kept);
+            });
+            return fresh;
+        }
+
+        SearchResult search(Set<String> queryTerms, int offset, int size) {
+            int n = queryTerms.size();
+            var lists = new Postings[n];
+            var idf = new float[n];
+            int i = 0;
+            for (var t : queryTerms) {
+                var p = terms.get(t);
+                if (p == null) return new SearchResult(0, List.of());
+                lists[i++] = p;
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+            for (i = 0; i < n; i++) idf[i] = (float) Math.log(1 + (double) docs.size() / lists[i].size);
+
+            int k = offset + size;
+            var top = new PriorityQueue<Hit>(Math.max(1, k), WORST_FIRST);
+            var cursor = new int[n];
+            long total = 0;
+
+            var lead = lists[0];
+            outer:
+            for (int c = 0; c < lead.size; c++) {
+                int doc = lead.docs[c];
+                var v = docs.get(doc);
+                if (v == null) continue;
+                float score = lead.weights[c] * idf[0];
+                for (int j = 1; j < n; j++) {
+                    var other = lists[j];
+                    int pos = seek(other.docs, cursor[j], other.size, doc);
+                    cursor[j] = pos;
+                    if (pos == other.size) break outer;
+                    if (other.docs[pos] != doc) continue outer;
+                    score += other.weights[pos] * idf[j];
+                }
+                total++;
+                if (k == 0) continue;
+                var hit = new Hit(doc, score, v.id());
+                if (top.size() < k) top.add(hit);
+                else if (WORST_FIRST.compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+
+            var ranked = new ArrayList<>(top);
+            ranked.sort(WORST_FIRST.reversed());
+            var items = new ArrayList<SearchHit>(size);
+            for (int r = offset; r < ranked.size(); r++) items.add(docs.get(ranked.get(r).doc()));
+            return new SearchResult(total, items);
+        }
+
+        /** First index in {@code a[from, to)} whose value is {@code >= key}, by galloping then binary search. */
+        private static int seek(int[] a, int from, int to, int key) {
+            int step = 1, lo = from, hi = from;
+            while (hi < to && a[hi] < key) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            if (hi > to) hi = to;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (a[mid] < key) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.mall.product.search;
+
+import com.mall.common.TextFolding;
+import com.mall.product.ProductChangedEvent;
+import com.mall.product.ProductRepository;
+import com.mall.product.ProductsBulkChangedEvent;
+import com.mall.product.StockChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Search-as-you-type suggestions over product names and SKUs.
+ * <p>
+ * Keys are folded and packed into one sorted {@code char[]}, so a prefix maps to a contiguous
+ * range found by two binary searches. A max-weight segment tree over that range yields the top-k
+ * entries in O(k log n) without scanning it. The whole dictionary is immutable and replaced by a
+ * background rebuild, so readers never wait on writers.
+ */
+@Slf4j
+@Component
+public class ProductSuggester {
+    public static final int MAX_LIMIT = 20;
+    private static final int BUILD_BATCH = 5000;
+
+    private final ProductRepository repo;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile Dictionary dictionary = Dictionary.build(List.of());
+
+    public ProductSuggester(ProductRepository repo) { this.repo = repo; }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("product-suggest-build").start(this::rebuild);
+    }
+
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) { dirty.set(true); }
+
+    @EventListener
+    public void onBulkChange(ProductsBulkChangedEvent event) { dirty.set(true); }
+
+    /** Stock only moves the ranking when a product changes weight, e.g. sells out. */
+    @TransactionalEventListener
+    public void onStockChanged(StockChangedEvent event) {
+        var d = dictionary;
+        if (event.levels().stream().anyMatch(l -> {
+            int built = d.weightOf(l.id());
+            return built >= 0 && built != weight(l.stock());
+        })) dirty.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.suggest.refresh-ms:30000}")
+    public void rebuildIfDirty() {
+        if (dirty.getAndSet(false)) rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        var rows = new ArrayList<SuggestSource>();
+        long after = 0;
+        List<SuggestSource> batch;
+        do {
+            batch = repo.findSuggestSources(after, Limit.of(BUILD_BATCH));
+            rows.addAll(batch);
+            if (!batch.isEmpty()) after = batch.get(batch.size() - 1).id();
+        } while (batch.size() == BUILD_BATCH);
+        dictionary = Dictionary.build(rows);
+        log.info("Product suggestions built: {} keys in {} ms", dictionary.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        var key = normalize(prefix);
+        if (key.isEmpty() || limit < 1) return List.of();
+        return dictionary.top(key, Math.min(limit, MAX_LIMIT));
+    }
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        return TextFolding.fold(s).replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    /** In-stock products first, then by stock on a log scale. */
+    static int weight(SuggestSource s) {
+        return weight(s.stock() == null ? 0 : s.stock());
+    }
+
+    private static int weight(int stock) {
+        return stock <= 0 ? 0 : 1 + (32 - Integer.numberOfLeadingZeros(stock));
+    }
+
+    static final class Dictionary {
+        // per product
+        private final long[] ids;
+        private final String[] names;
+        private final String[] skus;
+        private final int[] weights;
+        // per key, sorted by key
+        private final char[] chars;
+        private final int[] keyStart;
+        private final int[] keyProduct;
+        // tree[m + i] = i; inner nodes hold the better of their children
+        private final int[] tree;
+        private final int m;
+
+        private Dictionary(long[] ids, String[] names, String[] skus, int[] weights,
+                           char[] chars, int[] keyStart, int[] keyProduct) {
+            this.ids = ids;
+            this.names = names;
+            this.skus = skus;
+            this.weights = weights;
+            this.chars = chars;
+            this.keyStart = keyStart;
+            this.keyProduct = keyProduct;
+            this.m = keyProduct.length;
+            this.tree = new int[2 * Math.max(1, m)];
+            for (int i = 0; i < m; i++) tree[m + i] = i;
+            for (int i = m - 1; i > 0; i--) tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        static Dictionary build(List<SuggestSource> rows) {
+            var active = rows.stream().filter(r -> Boolean.TRUE.equals(r.active())).toList();
+            int n = active.size();
+            var ids = new long[n];
+            var names = new String[n];
+            var skus = new String[n];
+            var weights = new int[n];
+
+            record Key(String text, int product) {}
+            var keys = new ArrayList<Key>(n * 3);
+            for (int p = 0; p < n; p++) {
+                var r = active.get(p);
+                ids[p] = r.id();
+                names[p] = r.name();
+                skus[p] = r.sku();
+                weights[p] = weight(r);
+                var name = normalize(r.name());
+                // the full name plus every later word, so "lamp" finds "Desk Lamp"
+                for (int at = 0; at >= 0 && at < name.length(); ) {
+                    keys.add(new Key(name.substring(at), p));
+                    int space = name.indexOf(' ', at);
+                    at = space < 0 ? -1 : space + 1;
+                }
+                var sku = normalize(r.sku());
+                if (!sku.isEmpty() && !sku.equals(name)) keys.add(new Key(sku, p));
+            }
+            keys.removeIf(k -> k.text().isEmpty());
+            keys.sort((a, b) -> a.text().compareTo(b.text()));
+
+            int total = 0;
+            for (var k : keys) total += k.text().length();
+            var chars = new char[total];
+            var keyStart = new int[keys.size() + 1];
+            var keyProduct = new int[keys.size()];
+            int at = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                var text = keys.get(i).text();
+                text.getChars(0, text.length(), chars, at);
+                keyStart[i] = at;
+                keyProduct[i] = keys.get(i).product();
+                at += text.length();
+            }
+            keyStart[keys.size()] = at;
+            return new Dictionary(ids, names, skus, weights, chars, keyStart, keyProduct);
+        }
+
+        int size() { return m; }
+
+        /** The weight a product was built with, -1 if it is not suggested; ids are in ascending order. */
+        int weightOf(long id) {
+            int p = Arrays.binarySearch(ids, id);
+            return p < 0 ? -1 : weights[p];
+        }
+
+        List<Suggestion> top(String prefix, int k) {
+            int lo = lowerBound(prefix, false);
+            int hi = lowerBound(prefix, true);
+            if (lo >= hi) return List.of();
+
+            // max-heap of [l, r) ranges ordered by their best entry
+            int cap = 2 * k + 2;
+            var hl = new int[cap];
+            var hr = new int[cap];
+            var hb = new int[cap];
+            hl[0] = lo; hr[0] = hi; hb[0] = argmax(lo, hi);
+            int heap = 1;
+
+            var out = new ArrayList<Suggestion>(k);
+            var seen = new int[k];
+            while (heap > 0 && out.size() < k) {
+                int l = hl[0], r = hr[0], b = hb[0];
+                heap--;
+                hl[0] = hl[heap]; hr[0] = hr[heap]; hb[0] = hb[heap];
+                siftDown(hl, hr, hb, heap);
+
+                int p = keyProduct[b];
+                if (!contains(seen, out.size(), p)) {
+                    seen[out.size()] = p;
+                    out.add(new Suggestion(ids[p], names[p], skus[p]));
+                }
+                if (heap + 2 > hl.length) {
+                    hl = Arrays.copyOf(hl, hl.length * 2);
+                    hr = Arrays.copyOf(hr, hr.length * 2);
+                    hb = Arrays.copyOf(hb, hb.length * 2);
+                }
+                if (l < b) heap = push(hl, hr, hb, heap, l, b, argmax(l, b));
+                if (b + 1 < r) heap = push(hl, hr, hb, heap, b + 1, r, argmax(b + 1, r));
+            }
+            return out;
+        }
+
+        private static boolean contains(int[] a, int n, int v) {
+            for (int i = 0; i < n; i++) if (a[i] == v) return true;
+            return false;
+        }
+
+        private int push(int[] hl, int[] hr, int[] hb, int heap, int l, int r, int b) {
+            int i = heap++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (better(b, hb[parent]) != b) break;
+                hl[i] = hl[parent]; hr[i] = hr[parent]; hb[i] = hb[parent];
+                i = parent;
+            }
+            hl[i] = l; hr[i] = r; hb[i] = b;
+            return heap;
+        }
+
+        private void siftDown(int[] hl, int[] hr, int[] hb, int heap) {
+            if (heap == 0) return;
+            int l = hl[0], r = hr[0], b = hb[0];
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= heap) break;
+                if (c + 1 < heap && better(hb[c + 1], hb[c]) == hb[c + 1]) c++;
+                if (better(hb[c], b) != hb[c]) break;
+                hl[i] = hl[c]; hr[i] = hr[c]; hb[i] = hb[c];
+                i = c;
+            }
+            hl[i] = l; hr[i] = r; hb[i] = b;
+        }
+
+        /** Higher weight wins; ties go to the lexicographically smaller (usually shorter) key. */
+        private int better(int a, int b) {
+            int wa = weights[keyProduct[a]], wb = weights[keyProduct[b]];
+            if (wa != wb) return wa > wb ? a : b;
+            return a < b ? a : b;
+        }
+
+        private int argmax(int l, int r) {
+            int best = -1;
+            for (l += m, r += m; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) best = best < 0 ? tree[l++] : better(best, tree[l++]);
+                if ((r & 1) == 1) best = best < 0 ? tree[--r] : better(best, tree[--r]);
+            }
+            return best;
+        }
+
+        /** First key {@code >= prefix}, or with {@code past} set, first key that sorts after every key starting with it. */
+        private int lowerBound(String prefix, boolean past) {
+            int lo = 0, hi = m;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = comparePrefix(mid, prefix);
+                if (c < 0 || (past && c == 0)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /** Compares key {@code i}, truncated to the prefix length, against the prefix. */
+        private int comparePrefix(int i, String prefix) {
+            int from = keyStart[i], len = keyStart[i + 1] - from;
+            int n = Math.min(len, prefix.length());
+            for (int j = 0; j < n; j++) {
+                int d = chars[from + j] - prefix.charAt(j);
+                if (d != 0) return d;
+            }
+            return len < prefix.length() ? -1 : 0;
+        }
+    }
+}
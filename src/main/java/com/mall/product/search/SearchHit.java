@@ -0,0 +1,11 @@
+package com.mall.product.search;
+
+import com.mall.product.ProductView;
+
+/** What the search index keeps of a product to answer with: enough for a result list, no description. */
+public record SearchHit(Long id, String sku, String name, Double price, Integer stock, String imageUrl, Long categoryId) {
+
+    static SearchHit of(ProductView v) {
+        return new SearchHit(v.id(), v.sku(), v.name(), v.price(), v.stock(), v.imageUrl(), v.categoryId());
+    }
+}
@@ -0,0 +1,5 @@
+package com.mall.product.search;
+
+import java.util.List;
+
+public record SearchResult(long total, List<SearchHit> items) {}
@@ -0,0 +1,4 @@
+package com.mall.product.search;
+
+/** The columns the suggester needs, selected without the description. */
+public record SuggestSource(Long id, String sku, String name, Integer stock, Boolean active) {}
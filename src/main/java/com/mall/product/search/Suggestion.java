@@ -0,0 +1,3 @@
+package com.mall.product.search;
+
+public record Suggestion(Long productId, String name, String sku) {}
@@ -0,0 +1,27 @@
+package com.mall.product.search;
+
+import com.mall.common.TextFolding;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/** Splits text into folded alphanumeric tokens, shared by indexing and querying. */
+public final class Tokenizer {
+    private Tokenizer() {}
+
+    public static Set<String> tokens(String text) {
+        var out = new LinkedHashSet<String>();
+        if (text == null || text.isBlank()) return out;
+        for (String t : TextFolding.fold(text).split("[^a-z0-9]+")) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    /** SKU tokens plus the SKU with separators removed, so "AB-12" matches both "ab 12" and "ab12". */
+    public static Set<String> skuTokens(String sku) {
+        var out = tokens(sku);
+        if (out.size() > 1) out.add(String.join("", out));
+        return out;
+    }
+}
@@ -0,0 +1,178 @@
+package com.mall.service;
+
+import jakarta.annotation.PreDestroy;
+import com.mall.storage.StorageBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders {@link ImageVariant}s of uploaded images on a small bounded pool, so the upload request
+ * returns as soon as the original is stored. When the queue is full the uploading thread renders
+ * its own variants, which throttles bursts instead of queueing without limit.
+ */
+@Slf4j
+@Service
+public class ImageDerivativeService {
+    private static final Set<String> OPAQUE_FORMATS = Set.of("jpg", "jpeg", "bmp");
+
+    private final StorageBackend storage;
+    private final ThreadPoolExecutor pool;
+
+    public ImageDerivativeService(StorageBackend storage,
+                                  @Value("${image.derivatives.threads:2}") int threads,
+                                  @Value("${image.derivatives.queue:64}") int queue) {
+        this.storage = storage;
+        var seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+                r -> {
+                    var t = new Thread(r, "image-derivatives-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() { pool.shutdown(); }
+
+    /** Renders every variant of the stored {@code key}; failures are logged, the original keeps serving. */
+    public CompletableFuture<Void> submit(String key) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                render(key);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not render variants of {}: {}", key, e.getMessage());
+            }
+        }, pool);
+    }
+
+    /** Deletes the rendered variants of {@code key}, if any. */
+    public void deleteVariants(String key) {
+        for (ImageVariant v : ImageVariant.values()) {
+            try {
+                storage.delete(v.urlOf(key));
+            } catch (IOException e) {
+                log.warn("Could not delete {} variant of {}: {}", v, key, e.getMessage());
+            }
+        }
+    }
+
+    void render(String key) throws IOException {
+        String format = key.substring(key.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        var writers = ImageIO.getImageWritersBySuffix(format);
+        if (!writers.hasNext()) return;
+        var stored = storage.stat(key);
+        if (stored.isEmpty()) return;
+        ImageWriter writer = writers.next();
+
+        // decode once, subsampled to no more than twice the largest variant, so a 5 MB camera
+        // JPEG never expands into a full-resolution raster
+        BufferedImage source;
+        try (InputStream in = storage.open(key, 0, stored.get().size())) {
+            source = read(in, 2 * ImageVariant.MEDIUM.maxSide());
+        }
+        if (source == null) return;
+        try {
+            for (ImageVariant v : ImageVariant.values()) {
+                BufferedImage scaled = scale(source, v.maxSide(), OPAQUE_FORMATS.contains(format));
+                String target = v.urlOf(key);
+                Path tmp = storage.tempFile();
+                try {
+                    write(writer, scaled, tmp, format.startsWith("jp"));
+                    storage.put(target, tmp, MediaTypeFactory.getMediaType(target).map(Object::toString).orElse(null));
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage read(InputStream source, int minSide) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            if (in == null) return null;
+            var readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int side = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, side / minSide);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Fits {@code src} into a {@code maxSide} square, halving repeatedly so bilinear steps stay sharp. */
+    static BufferedImage scale(BufferedImage src, int maxSide, boolean opaque) {
+        int w = src.getWidth(), h = src.getHeight();
+        double ratio = Math.min(1.0, (double) maxSide / Math.max(w, h));
+        int targetW = Math.max(1, (int) Math.round(w * ratio)), targetH = Math.max(1, (int) Math.round(h * ratio));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = src;
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            var next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                if (opaque) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private static void write(ImageWriter writer, BufferedImage image, Path target, boolean jpeg) throws IOException {
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0.82f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+    }
+}
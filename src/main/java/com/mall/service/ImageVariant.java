@@ -0,0 +1,43 @@
+package com.mall.service;
+
+/**
+ * Resized copies of an uploaded image, stored next to the original as {@code name.<suffix>.ext}.
+ * Variant URLs are derived from the original's URL, so they need no columns of their own; until
+ * a variant has been rendered its URL serves the original.
+ */
+public enum ImageVariant {
+    THUMBNAIL("thumb", 200),
+    MEDIUM("medium", 640);
+
+    private final String suffix;
+    private final int maxSide;
+
+    ImageVariant(String suffix, int maxSide) {
+        this.suffix = suffix;
+        this.maxSide = maxSide;
+    }
+
+    public int maxSide() { return maxSide; }
+
+    /** {@code /uploads/a.png} becomes {@code /uploads/a.thumb.png}; null stays null. */
+    public String urlOf(String original) {
+        if (original == null) return null;
+        int slash = original.lastIndexOf('/');
+        int dot = original.lastIndexOf('.');
+        if (dot <= slash) return original + "." + suffix;
+        return original.substring(0, dot) + "." + suffix + original.substring(dot);
+    }
+
+    /** The original a variant path was derived from, or null when {@code path} is not a variant. */
+    public static String originalOf(String path) {
+        for (ImageVariant v : values()) {
+            String marker = "." + v.suffix;
+            int slash = path.lastIndexOf('/');
+            int dot = path.lastIndexOf('.');
+            int at = dot > slash ? path.lastIndexOf(marker, dot) : -1;
+            if (at > slash && at + marker.length() == dot) return path.substring(0, at) + path.substring(dot);
+            if (path.endsWith(marker) && path.length() - marker.length() > slash + 1) return path.substring(0, path.length() - marker.length());
+        }
+        return null;
+    }
+}
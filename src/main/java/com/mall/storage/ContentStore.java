@@ -0,0 +1,180 @@
+package com.mall.storage;
+
+import com.mall.service.ImageDerivativeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed upload storage. Each upload is hashed while it streams to a temp file and then
+ * put into the {@link StorageBackend} as {@code cas/<h0h1>/<h2h3>/<sha256>.<ext>}, so identical
+ * uploads share one object. A {@link StoredBlob} row counts the references; releasing the last one
+ * only marks the blob, and {@link #reclaim()} deletes it after a grace period.
+ *
+ * <p>A reference is always taken, and committed, before the object is written, and reclaim deletes an
+ * object while holding the blob's row lock, so an upload racing a reclaim either keeps the old object
+ * or writes a fresh one; it never ends up pointing at a deleted object. The reference commits on its
+ * own, so the backend write holds no database transaction open; if the caller's transaction then
+ * rolls back, the reference is left over until {@link OrphanedUploadCollector} repairs the count.
+ */
+@Slf4j
+@Service
+public class ContentStore {
+    public static final String URL_PREFIX = "/uploads/";
+    static final String ROOT = "cas";
+    private static final Pattern HASH_FILE = Pattern.compile("[0-9a-f]{64}(\\..*)?");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+    private static final int RECLAIM_BATCH = 200;
+    private static final int REFERENCE_ATTEMPTS = 3;
+
+    private final StoredBlobRepository blobs;
+    private final ImageDerivativeService derivatives;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate referenceTx;
+    private final StorageBackend backend;
+    private final Duration grace;
+
+    public ContentStore(StoredBlobRepository blobs, ImageDerivativeService derivatives, TransactionTemplate tx,
+                        StorageBackend backend, @Value("${storage.reclaim-grace:PT1H}") Duration grace) {
+        this.blobs = blobs;
+        this.derivatives = derivatives;
+        this.tx = tx;
+        this.referenceTx = new TransactionTemplate(tx.getTransactionManager());
+        this.referenceTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.backend = backend;
+        this.grace = grace;
+    }
+
+    /** Stores {@code file} (or references an identical stored file) and returns its URL. */
+    public String store(MultipartFile file) throws IOException {
+        Path tmp = backend.tempFile();
+        try {
+            var sha256 = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+                size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(sha256.digest());
+
+            StoredBlob blob = reference(hash, pathFor(hash, file.getOriginalFilename()), size);
+            try {
+                if (backend.stat(blob.getPath()).isEmpty()) {
+                    backend.put(blob.getPath(), tmp, file.getContentType());
+                    if (file.getContentType() != null && file.getContentType().startsWith("image/")) derivatives.submit(blob.getPath());
+                }
+            } catch (IOException | RuntimeException e) {
+                referenceTx.executeWithoutResult(status -> blobs.release(hash, Instant.now()));
+                throw e;
+            }
+            return URL_PREFIX + blob.getPath();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Takes a reference on the blob, creating its row if there is none, in a transaction of its own. Two
+     * uploads of the same new content both find no row; the second insert fails on the key and takes
+     * a reference on the row the first one created.
+     */
+    private StoredBlob reference(String hash, String path, long size) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return referenceTx.execute(status -> {
+                    Instant now = Instant.now();
+                    return blobs.retain(hash, now) > 0
+                            ? blobs.findById(hash).orElseThrow()
+                            : blobs.insert(StoredBlob.builder().hash(hash).path(path).size(size).refCount(1).retainedAt(now).build());
+                });
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == REFERENCE_ATTEMPTS) throw e;
+            }
+        }
+    }
+
+    /** Adds a reference to an already stored URL, e.g. when a client copies an image URL onto another product. */
+    @Transactional
+    public void retain(String url) {
+        hashOf(url).ifPresent(hash -> {
+            if (blobs.retain(hash, Instant.now()) == 0) throw new IllegalArgumentException("Image not found");
+        });
+    }
+
+    /** Drops one reference to the blob behind {@code url}; URLs from before this store are ignored. */
+    @Transactional
+    public void release(String url) {
+        hashOf(url).ifPresent(hash -> blobs.release(hash, Instant.now()));
+    }
+
+    @Scheduled(initialDelayString = "${storage.reclaim-ms:600000}", fixedDelayString = "${storage.reclaim-ms:600000}")
+    public int reclaim() {
+        int reclaimed = 0;
+        for (String hash : blobs.findReclaimable(Instant.now().minus(grace), Limit.of(RECLAIM_BATCH))) {
+            Boolean deleted = tx.execute(status -> blobs.lockByHash(hash)
+                    .filter(b -> b.getRefCount() == 0)
+                    .map(b -> {
+                        deleteObjects(b.getPath());
+                        blobs.delete(b);
+                        return true;
+                    })
+                    .orElse(false));
+            if (Boolean.TRUE.equals(deleted)) reclaimed++;
+        }
+        if (reclaimed > 0) log.info("Reclaimed {} unreferenced uploads", reclaimed);
+        return reclaimed;
+    }
+
+    static Optional<String> hashOf(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX + ROOT + "/")) return Optional.empty();
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        return HASH_FILE.matcher(name).matches() ? Optional.of(name.substring(0, 64)) : Optional.empty();
+    }
+
+    private static String pathFor(String hash, String originalFilename) {
+        String ext = "";
+        if (originalFilename != null && originalFilename.lastIndexOf('.') >= 0) {
+            String candidate = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (EXTENSION.matcher(candidate).matches()) ext = "." + candidate;
+        }
+        return ROOT + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ext;
+    }
+
+    private void deleteObjects(String key) {
+        try {
+            backend.delete(key);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not delete " + key, e);
+        }
+        derivatives.deleteVariants(key);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
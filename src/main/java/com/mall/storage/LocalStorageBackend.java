@@ -0,0 +1,96 @@
+package com.mall.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+
+/** Stores uploads under {@code file.upload.directory} on the local disk. */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+    static final String TMP_DIR = "tmp";
+    static final String QUARANTINE_DIR = "quarantine";
+
+    private final Path baseDir;
+    private final OpenFileCache openFiles;
+
+    public LocalStorageBackend(@Value("${file.upload.directory:uploads}") String uploadDir, OpenFileCache openFiles) {
+        this.baseDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.openFiles = openFiles;
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        openFiles.evict(target);
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        try {
+            var attrs = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            return attrs.isRegularFile()
+                    ? Optional.of(new StoredObject(attrs.size(), attrs.lastModifiedTime().toMillis()))
+                    : Optional.empty();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long start, long end) throws IOException {
+        return RangeInputStream.of(resolve(key), start, end);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path file = resolve(key);
+        Files.deleteIfExists(file);
+        openFiles.evict(file);
+    }
+
+    /** Same file system as the objects, so {@link #put} is an atomic rename. */
+    @Override
+    public Path tempFile() throws IOException {
+        return Files.createTempFile(Files.createDirectories(baseDir.resolve(TMP_DIR)), "upload-", ".tmp");
+    }
+
+    /** Moves an object out of the served tree; its modification time restarts the retention clock. */
+    void quarantine(String key) throws IOException {
+        Path file = resolve(key);
+        Path target = resolve(QUARANTINE_DIR + "/" + key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        openFiles.evict(file);
+    }
+
+    Path baseDir() {
+        return baseDir;
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        return Optional.of(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        Path file = baseDir.resolve(key).normalize();
+        if (!file.startsWith(baseDir) || file.equals(baseDir)) throw new IllegalArgumentException("Invalid storage key");
+        return file;
+    }
+}
@@ -0,0 +1,110 @@
+package com.mall.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently served uploads open, together with their size and modification time, so a hot
+ * image costs neither an open() nor a stat() per request. Handles are leased: an evicted handle is
+ * closed once the last request using it has finished. Anything that deletes or replaces an upload
+ * must {@link #evict} it, or the old bytes keep being served from the open handle.
+ */
+@Component
+public class OpenFileCache {
+
+    /** An open upload. Callers must {@link #close()} it when done. */
+    public static final class Handle implements AutoCloseable {
+        private final FileChannel channel;
+        private final long size;
+        private final long lastModified;
+        private int leases = 1; // the cache's own lease
+
+        private Handle(FileChannel channel, long size, long lastModified) {
+            this.channel = channel;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public FileChannel channel() { return channel; }
+        public long size() { return size; }
+        public long lastModified() { return lastModified; }
+
+        private synchronized boolean acquire() {
+            if (leases == 0) return false;
+            leases++;
+            return true;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (--leases == 0) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // read-only channel; nothing to flush
+                }
+            }
+        }
+    }
+
+    private final Map<Path, Handle> handles;
+
+    public OpenFileCache(@Value("${uploads.serve.open-files:256}") int maxOpen) {
+        this.handles = new LinkedHashMap<>(maxOpen * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Handle> eldest) {
+                if (size() <= maxOpen) return false;
+                eldest.getValue().close();
+                return true;
+            }
+        };
+    }
+
+    /** Opens {@code file} or leases its cached handle; throws {@code NoSuchFileException} when absent. */
+    public Handle open(Path file) throws IOException {
+        synchronized (handles) {
+            Handle cached = handles.get(file);
+            if (cached != null && cached.acquire()) return cached;
+        }
+        var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) throw new NoSuchFileException(file.toString());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        Handle opened = new Handle(channel, attrs.size(), attrs.lastModifiedTime().toMillis());
+        opened.acquire();
+        synchronized (handles) {
+            Handle previous = handles.put(file, opened);
+            if (previous != null) previous.close();
+        }
+        return opened;
+    }
+
+    public void evict(Path file) {
+        Handle h;
+        synchronized (handles) {
+            h = handles.remove(file);
+        }
+        if (h != null) h.close();
+    }
+
+    @PreDestroy
+    void closeAll() {
+        ArrayList<Handle> all;
+        synchronized (handles) {
+            all = new ArrayList<>(handles.values());
+            handles.clear();
+        }
+        all.forEach(Handle::close);
+    }
+}
@@ -0,0 +1,241 @@
+package com.mall.storage;
+
+import com.mall.payment.PaymentRepository;
+import com.mall.payment.ReceiptUploadRepository;
+import com.mall.product.ProductRepository;
+import com.mall.service.ImageVariant;
+import com.mall.user.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Mark-and-sweep over the local upload tree. The mark phase streams every URL stored in
+ * {@code products.imageUrl}, {@code users.profilePictureUrl}, {@code payments.receiptUrl} and
+ * {@code receipt_uploads.url} (receipts not yet attached to a payment); the sweep walks the tree and deals with whatever files nothing points at once they are older than
+ * {@code storage.gc.grace}:
+ * <ul>
+ *   <li>legacy files are moved under {@code quarantine/} (or deleted outright), and purged from there
+ *       after {@code storage.gc.quarantine-retention};</li>
+ *   <li>content-addressed files are handed back to {@link ContentStore}: a missing blob row is
+ *       recreated as released, a reference count nobody holds is zeroed, and a referenced blob whose
+ *       count dropped to zero gets its reference back. {@link ContentStore#reclaim()} does the
+ *       deleting, under the blob's row lock;</li>
+ *   <li>staging files left in {@code tmp/} by interrupted uploads are deleted.</li>
+ * </ul>
+ * The walk is paced to {@code storage.gc.files-per-second} and stops after
+ * {@code storage.gc.max-removals} removals; the next run carries on.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class OrphanedUploadCollector {
+
+    public record Report(int files, int removed, int adopted, int repaired) {}
+
+    private final ProductRepository products;
+    private final UserRepository users;
+    private final PaymentRepository payments;
+    private final ReceiptUploadRepository receipts;
+    private final StoredBlobRepository blobs;
+    private final LocalStorageBackend storage;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readTx;
+    private final Duration grace;
+    private final boolean quarantine;
+    private final Duration quarantineRetention;
+    private final int filesPerSecond;
+    private final int maxRemovals;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("upload-gc").daemon().factory());
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public OrphanedUploadCollector(ProductRepository products, UserRepository users, PaymentRepository payments,
+                                   ReceiptUploadRepository receipts, StoredBlobRepository blobs, LocalStorageBackend storage, TransactionTemplate tx,
+                                   @Value("${storage.gc.grace:PT24H}") Duration grace,
+                                   @Value("${storage.gc.quarantine:true}") boolean quarantine,
+                                   @Value("${storage.gc.quarantine-retention:P7D}") Duration quarantineRetention,
+                                   @Value("${storage.gc.files-per-second:500}") int filesPerSecond,
+                                   @Value("${storage.gc.max-removals:1000}") int maxRemovals) {
+        this.products = products;
+        this.users = users;
+        this.payments = payments;
+        this.receipts = receipts;
+        this.blobs = blobs;
+        this.storage = storage;
+        this.tx = tx;
+        this.readTx = new TransactionTemplate(tx.getTransactionManager());
+        this.readTx.setReadOnly(true);
+        this.grace = grace;
+        this.quarantine = quarantine;
+        this.quarantineRetention = quarantineRetention;
+        this.filesPerSecond = filesPerSecond;
+        this.maxRemovals = maxRemovals;
+    }
+
+    /**
+     * Hands a run to the collector's own thread. A paced walk of a large tree takes minutes, and on
+     * the shared scheduler thread it would hold up the cart flush and the other frequent jobs.
+     */
+    @Scheduled(initialDelayString = "${storage.gc.interval-ms:21600000}", fixedDelayString = "${storage.gc.interval-ms:21600000}")
+    void scheduleCollection() {
+        if (!running.compareAndSet(false, true)) return;
+        worker.execute(() -> {
+            try {
+                collect();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Upload sweep failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public Report collect() throws IOException {
+        Instant markedAt = Instant.now();
+        var sweep = new Sweep(mark(), markedAt.minus(grace), markedAt.minus(quarantineRetention));
+        if (Files.isDirectory(storage.baseDir())) Files.walkFileTree(storage.baseDir(), sweep);
+
+        var report = new Report(sweep.files, sweep.removed, sweep.adopted, sweep.repaired);
+        if (report.removed() + report.adopted() + report.repaired() > 0) {
+            log.info("Upload sweep: {} files, {} removed, {} blobs adopted, {} reference counts repaired",
+                    report.files(), report.removed(), report.adopted(), report.repaired());
+        }
+        return report;
+    }
+
+    /** Storage keys of every upload the database refers to. */
+    private Set<String> mark() {
+        Set<String> live = new HashSet<>();
+        readTx.executeWithoutResult(status -> {
+            try (Stream<String> urls = products.streamImageUrls()) { urls.forEach(url -> mark(live, url)); }
+            try (Stream<String> urls = users.streamProfilePictureUrls()) { urls.forEach(url -> mark(live, url)); }
+            try (Stream<String> urls = payments.streamReceiptUrls()) { urls.forEach(url -> mark(live, url)); }
+            try (Stream<String> urls = receipts.streamUrls()) { urls.forEach(url -> mark(live, url)); }
+        });
+        return live;
+    }
+
+    private static void mark(Set<String> live, String url) {
+        String path = url;
+        if (url.contains("://")) {
+            try {
+                path = URI.create(url).getRawPath();
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+        }
+        String key = path == null ? null : UploadController.keyOf(path);
+        if (key != null) live.add(key);
+    }
+
+    private class Sweep extends SimpleFileVisitor<Path> {
+        private final Set<String> live;
+        private final Instant cutoff;
+        private final Instant purgeBefore;
+        private final Set<String> seenHashes = new HashSet<>();
+        private final long started = System.nanoTime();
+        int files, removed, adopted, repaired;
+
+        Sweep(Set<String> live, Instant cutoff, Instant purgeBefore) {
+            this.live = live;
+            this.cutoff = cutoff;
+            this.purgeBefore = purgeBefore;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (Thread.currentThread().isInterrupted()) return FileVisitResult.TERMINATE;
+            if (!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+            throttle();
+            files++;
+            String key = storage.baseDir().relativize(file).toString().replace(File.separatorChar, '/');
+            Instant modified = attrs.lastModifiedTime().toInstant();
+            try {
+                if (key.startsWith(LocalStorageBackend.QUARANTINE_DIR + "/")) {
+                    if (modified.isBefore(purgeBefore)) delete(key);
+                } else if (modified.isBefore(cutoff)) {
+                    if (key.startsWith(LocalStorageBackend.TMP_DIR + "/")) delete(key);
+                    else sweep(key, attrs.size());
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not sweep upload {}", key, e);
+            }
+            return removed >= maxRemovals ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+            log.debug("Skipping {} in upload sweep: {}", file, e.toString());
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void sweep(String key, long size) throws IOException {
+            String original = Optional.ofNullable(ImageVariant.originalOf(key)).orElse(key);
+            Optional<String> hash = ContentStore.hashOf(ContentStore.URL_PREFIX + original);
+            if (hash.isEmpty()) {
+                if (live.contains(original)) return;
+                if (quarantine) {
+                    storage.quarantine(key);
+                    removed++;
+                } else {
+                    delete(key);
+                }
+                return;
+            }
+            if (!seenHashes.add(hash.get())) return;
+
+            boolean referenced = live.contains(original);
+            Instant now = Instant.now();
+            tx.executeWithoutResult(status -> {
+                if (!blobs.existsById(hash.get())) {
+                    blobs.saveAndFlush(StoredBlob.builder().hash(hash.get()).path(original).size(size)
+                            .refCount(referenced ? 1 : 0).releasedAt(referenced ? null : now).retainedAt(now).build());
+                    adopted++;
+                } else if (referenced) {
+                    repaired += blobs.rescue(hash.get(), cutoff, now);
+                } else {
+                    repaired += blobs.dropLeakedReferences(hash.get(), cutoff, now);
+                }
+            });
+        }
+
+        private void delete(String key) throws IOException {
+            storage.delete(key);
+            removed++;
+        }
+
+        private void throttle() {
+            if (filesPerSecond <= 0) return;
+            long wait = started + files * 1_000_000_000L / filesPerSecond - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+    }
+}
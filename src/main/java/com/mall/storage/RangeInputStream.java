@@ -0,0 +1,52 @@
+package com.mall.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Reads bytes {@code [start, end)} of a file without loading them. */
+final class RangeInputStream extends FilterInputStream {
+    private long remaining;
+
+    private RangeInputStream(InputStream in, long length) {
+        super(in);
+        this.remaining = length;
+    }
+
+    static InputStream of(Path file, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ).position(start);
+        return new RangeInputStream(Channels.newInputStream(channel), end - start);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) return -1;
+        int b = super.read();
+        if (b >= 0) remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        if (remaining <= 0) return -1;
+        int n = super.read(buf, off, (int) Math.min(len, remaining));
+        if (n > 0) remaining -= n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), remaining);
+    }
+}
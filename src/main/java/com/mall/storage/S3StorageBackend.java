@@ -0,0 +1,239 @@
+package com.mall.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Stores uploads in an S3-compatible bucket (AWS, MinIO, Ceph…) with path-style requests signed by
+ * {@link SigV4}. Objects larger than {@code storage.s3.part-size} go up as a multipart upload whose
+ * parts stream from the staged file, so no upload is ever held in memory whole.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final String endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final long partSize;
+
+    public S3StorageBackend(@Value("${storage.s3.endpoint}") String endpoint,
+                            @Value("${storage.s3.bucket}") String bucket,
+                            @Value("${storage.s3.region:us-east-1}") String region,
+                            @Value("${storage.s3.access-key}") String accessKey,
+                            @Value("${storage.s3.secret-key}") String secretKey,
+                            @Value("${storage.s3.part-size:8388608}") long partSize) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        long size = Files.size(file);
+        if (size <= partSize) {
+            var headers = contentType == null ? Map.<String, String>of() : Map.of("content-type", contentType);
+            expect(send("PUT", key, null, headers, HttpRequest.BodyPublishers.ofFile(file), HttpResponse.BodyHandlers.ofString()), 200);
+            return;
+        }
+
+        var initiated = send("POST", key, "uploads=", contentType == null ? Map.of() : Map.of("content-type", contentType),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        expect(initiated, 200);
+        var m = UPLOAD_ID.matcher(initiated.body());
+        if (!m.find()) throw new IOException("S3 did not return an upload id for " + key);
+        String uploadId = m.group(1);
+        String idParam = "uploadId=" + SigV4.encode(uploadId, false);
+        try {
+            List<String> etags = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                long from = offset, to = Math.min(size, offset + partSize);
+                var body = HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> {
+                            try {
+                                return RangeInputStream.of(file, from, to);
+                            } catch (IOException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }), to - from);
+                var part = send("PUT", key, "partNumber=" + (etags.size() + 1) + "&" + idParam, Map.of(), body,
+                        HttpResponse.BodyHandlers.ofString());
+                expect(part, 200);
+                etags.add(part.headers().firstValue("etag").orElseThrow(() -> new IOException("S3 part without ETag")));
+            }
+
+            var xml = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            xml.append("</CompleteMultipartUpload>");
+            var completed = send("POST", key, idParam, Map.of("content-type", "application/xml"),
+                    HttpRequest.BodyPublishers.ofString(xml.toString()), HttpResponse.BodyHandlers.ofString());
+            // S3 may report a failed completion in a 200 response body
+            if (completed.statusCode() != 200 || completed.body().contains("<Error>"))
+                throw new IOException("S3 multipart completion failed for " + key + ": " + completed.statusCode());
+        } catch (IOException | RuntimeException e) {
+            try {
+                send("DELETE", key, idParam, Map.of(), HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+            } catch (IOException abortFailed) {
+                e.addSuppressed(abortFailed);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        var response = send("HEAD", key, null, Map.of(), HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) return Optional.empty();
+        expect(response, 200);
+        long size = response.headers().firstValueAsLong("content-length").orElse(0);
+        long modified = response.headers().firstValue("last-modified")
+                .map(v -> ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return Optional.of(new StoredObject(size, modified));
+    }
+
+    @Override
+    public InputStream open(String key, long start, long end) throws IOException {
+        if (end <= start) return InputStream.nullInputStream();
+        var response = send("GET", key, null, Map.of("range", "bytes=" + start + "-" + (end - 1)),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            throw new NoSuchFileException(key);
+        }
+        if (response.statusCode() == 206) return response.body();
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("S3 GET " + key + " failed: " + response.statusCode());
+        }
+        // a store that ignores Range sends the whole object; cut the requested slice out of it
+        var whole = response.body();
+        try {
+            whole.skipNBytes(start);
+        } catch (IOException e) {
+            whole.close();
+            throw e;
+        }
+        return new Slice(whole, end - start);
+    }
+
+    /** The first {@code remaining} bytes of {@code in}. */
+    private static final class Slice extends FilterInputStream {
+        private long remaining;
+
+        Slice(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        var response = send("DELETE", key, null, Map.of(), HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 404) expect(response, 204);
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, String rawQuery, Map<String, String> extraHeaders,
+                                     HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler) throws IOException {
+        String rawPath = "/" + bucket + "/" + SigV4.encode(key, true);
+        URI uri = URI.create(endpoint + rawPath + (rawQuery == null ? "" : "?" + rawQuery));
+        String amzDate = AMZ_DATE.format(Instant.now());
+
+        var headers = new TreeMap<String, String>(extraHeaders);
+        headers.put("host", hostHeader(uri));
+        headers.put("x-amz-content-sha256", SigV4.UNSIGNED_PAYLOAD);
+        headers.put("x-amz-date", amzDate);
+        String canonical = SigV4.canonicalRequest(method, rawPath, rawQuery, headers, SigV4.UNSIGNED_PAYLOAD);
+
+        var request = HttpRequest.newBuilder(uri).method(method, body).timeout(Duration.ofMinutes(5))
+                .header("authorization", SigV4.authorization(accessKey, secretKey, region, amzDate, headers, canonical));
+        headers.forEach((name, value) -> {
+            if (!name.equals("host")) request.header(name, value);
+        });
+        try {
+            return http.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted talking to S3", e);
+        }
+    }
+
+    /** What the HTTP client puts in the Host header, which it does not let us set ourselves. */
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (port == 80 && "http".equals(uri.getScheme())) || (port == 443 && "https".equals(uri.getScheme()));
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private static void expect(HttpResponse<?> response, int status) throws IOException {
+        if (response.statusCode() != status)
+            throw new IOException("S3 " + response.request().method() + " " + response.uri().getPath() + " failed: " + response.statusCode());
+    }
+}
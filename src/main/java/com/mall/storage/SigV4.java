@@ -0,0 +1,79 @@
+package com.mall.storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+
+/** AWS Signature Version 4 for the handful of S3 calls {@link S3StorageBackend} makes. */
+final class SigV4 {
+    static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    private SigV4() {}
+
+    /** {@code headers} must hold lower-case names; all of them are signed. */
+    static String canonicalRequest(String method, String rawPath, String rawQuery,
+                                   SortedMap<String, String> headers, String payloadHash) {
+        String canonicalQuery = rawQuery == null || rawQuery.isEmpty() ? "" : Arrays.stream(rawQuery.split("&"))
+                .map(p -> p.contains("=") ? p : p + "=")
+                .sorted()
+                .collect(Collectors.joining("&"));
+        String canonicalHeaders = headers.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue().trim() + "\n")
+                .collect(Collectors.joining());
+        return method + "\n" + rawPath + "\n" + canonicalQuery + "\n" + canonicalHeaders + "\n"
+                + signedHeaders(headers) + "\n" + payloadHash;
+    }
+
+    static String signedHeaders(Map<String, String> headers) {
+        return String.join(";", headers.keySet());
+    }
+
+    static String authorization(String accessKey, String secretKey, String region, String amzDate,
+                                SortedMap<String, String> headers, String canonicalRequest) {
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String toSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaders(headers)
+                + ", Signature=" + hex(hmac(key, toSign));
+    }
+
+    /** S3's URI encoding: every byte except unreserved characters, and '/' when {@code path}. */
+    static String encode(String s, boolean path) {
+        String encoded = URLEncoder.encode(s, StandardCharsets.UTF_8)
+                .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+        return path ? encoded.replace("%2F", "/") : encoded;
+    }
+
+    private static byte[] sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) { return HexFormat.of().formatHex(bytes); }
+}
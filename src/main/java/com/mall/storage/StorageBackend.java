@@ -0,0 +1,37 @@
+package com.mall.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where upload bytes live. Keys are relative, slash-separated paths such as
+ * {@code cas/ab/cd/<sha256>.png} or {@code profile-pictures/old.png}.
+ */
+public interface StorageBackend {
+
+    record StoredObject(long size, long lastModified) {}
+
+    /** Stores {@code file} under {@code key}, replacing any object there. {@code file} may be moved away. */
+    void put(String key, Path file, String contentType) throws IOException;
+
+    Optional<StoredObject> stat(String key) throws IOException;
+
+    /** Bytes {@code [start, end)} of the object; fails with {@code NoSuchFileException} when it is absent. */
+    InputStream open(String key, long start, long end) throws IOException;
+
+    /** Deleting an absent key is not an error. */
+    void delete(String key) throws IOException;
+
+    /** A scratch file to stage uploads in before {@link #put}. */
+    default Path tempFile() throws IOException {
+        return Files.createTempFile("upload-", ".tmp");
+    }
+
+    /** The file behind {@code key} when objects live on this node's disk, so it can be served zero-copy. */
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+}
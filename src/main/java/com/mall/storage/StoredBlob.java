@@ -0,0 +1,33 @@
+package com.mall.storage;
+
+import com.mall.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/** One stored file, keyed by the SHA-256 of its bytes and shared by every upload with that content. */
+@Entity
+@Table(name = "stored_blobs", indexes = {
+        @Index(name = "idx_blob_released", columnList = "refCount,releasedAt")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class StoredBlob extends BaseEntity {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    /** Relative to the upload directory, e.g. {@code cas/ab/cd/abcd….png}. */
+    @Column(nullable = false, length = 200)
+    private String path;
+
+    private long size;
+
+    private int refCount;
+
+    /** When the last reference went away; reclaimed after a grace period. */
+    private Instant releasedAt;
+
+    /** When a reference was last taken, so reference repair can leave in-flight uploads alone. */
+    private Instant retainedAt;
+}
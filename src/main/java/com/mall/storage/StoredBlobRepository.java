@@ -0,0 +1,45 @@
+package com.mall.storage;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String>, StoredBlobRepositoryCustom {
+
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = b.refCount + 1, b.releasedAt = null, b.retainedAt = :now where b.hash = :hash")
+    int retain(@Param("hash") String hash, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = b.refCount - 1, " +
+           "b.releasedAt = case when b.refCount = 1 then :now else b.releasedAt end " +
+           "where b.hash = :hash and b.refCount > 0")
+    int release(@Param("hash") String hash, @Param("now") Instant now);
+
+    @Query("select b.hash from StoredBlob b where b.refCount = 0 and b.releasedAt < :before order by b.releasedAt")
+    List<String> findReclaimable(@Param("before") Instant before, Limit limit);
+
+    /** Zeroes the count of a blob nothing points at any more, unless a reference was taken since {@code before}. */
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = 0, b.releasedAt = :now " +
+           "where b.hash = :hash and b.refCount > 0 and (b.retainedAt is null or b.retainedAt < :before)")
+    int dropLeakedReferences(@Param("hash") String hash, @Param("before") Instant before, @Param("now") Instant now);
+
+    /** Gives a referenced but uncounted blob its reference back, unless it was released since {@code before}. */
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = 1, b.releasedAt = null, b.retainedAt = :now " +
+           "where b.hash = :hash and b.refCount = 0 and b.releasedAt < :before")
+    int rescue(@Param("hash") String hash, @Param("before") Instant before, @Param("now") Instant now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StoredBlob b where b.hash = :hash")
+    Optional<StoredBlob> lockByHash(@Param("hash") String hash);
+}
@@ -0,0 +1,9 @@
+package com.mall.storage;
+
+public interface StoredBlobRepositoryCustom {
+    /**
+     * Inserts a new blob row and flushes it. Unlike {@code save}, never merges into a row another
+     * upload created meanwhile; that fails on the key instead.
+     */
+    StoredBlob insert(StoredBlob blob);
+}
@@ -0,0 +1,17 @@
+package com.mall.storage;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+class StoredBlobRepositoryImpl implements StoredBlobRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public StoredBlob insert(StoredBlob blob) {
+        em.persist(blob);
+        em.flush();
+        return blob;
+    }
+}
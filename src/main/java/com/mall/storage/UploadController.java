@@ -0,0 +1,220 @@
+package com.mall.storage;
+
+import com.mall.service.ImageVariant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Serves uploaded files. From local storage, large files go out through the container's sendfile
+ * support when it offers it and everything else through {@code FileChannel.transferTo} from a cached
+ * open handle; objects in a remote store are streamed through. Single
+ * byte ranges and {@code If-Modified-Since} are honoured. Content-addressed files never change, so
+ * they are cacheable for a year; a variant that is not rendered yet answers with its original and
+ * must not be cached at all.
+ */
+@RestController
+public class UploadController {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue();
+    private static final String MUTABLE = CacheControl.maxAge(Duration.ofHours(1)).cachePublic().getHeaderValue();
+    private static final String NO_STORE = CacheControl.noStore().getHeaderValue();
+
+    private static final Map<String, String> KEY_PREFIXES = Map.of(
+            "/uploads/", "",
+            "/profile-pictures/", "profile-pictures/",
+            "/receipts/", "receipts/");
+
+    /** What a request resolved to: a cached local handle, or just the metadata of a remote object. */
+    private record Source(String key, long size, long lastModified, OpenFileCache.Handle handle, Path file)
+            implements AutoCloseable {
+        @Override
+        public void close() {
+            if (handle != null) handle.close();
+        }
+    }
+
+    private final StorageBackend storage;
+    private final OpenFileCache files;
+    private final long sendfileMinBytes;
+
+    public UploadController(StorageBackend storage, OpenFileCache files,
+                            @Value("${uploads.serve.sendfile-min-bytes:49152}") long sendfileMinBytes) {
+        this.storage = storage;
+        this.files = files;
+        this.sendfileMinBytes = sendfileMinBytes;
+    }
+
+    @GetMapping({"/uploads/**", "/profile-pictures/**", "/receipts/**"})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        String key = keyOf(uri);
+        String cacheControl = key != null && key.startsWith(ContentStore.ROOT + "/") ? IMMUTABLE : MUTABLE;
+        Source source = find(key);
+        if (source == null) {
+            String original = ImageVariant.originalOf(uri);
+            source = find(original == null ? null : keyOf(original));
+            cacheControl = NO_STORE;
+        }
+        if (source == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try (var s = source) {
+            write(request, response, s, cacheControl);
+        }
+    }
+
+    private Source find(String key) throws IOException {
+        if (key == null) return null;
+        var local = storage.localFile(key);
+        if (local.isPresent()) {
+            try {
+                var handle = files.open(local.get());
+                return new Source(key, handle.size(), handle.lastModified(), handle, local.get());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+        return storage.stat(key).map(o -> new Source(key, o.size(), o.lastModified(), null, null)).orElse(null);
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, Source source,
+                       String cacheControl) throws IOException {
+        long size = source.size();
+        long lastModified = source.lastModified() / 1000 * 1000; // HTTP dates have second precision
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        long since = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        if (since >= 0 && lastModified <= since) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(source.key())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0, end = size; // end is exclusive
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeApplies(request, lastModified)) {
+            long[] r = parseRange(range, size);
+            if (r == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+        }
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod()) || end == start) return;
+
+        if (source.handle() == null) {
+            try (InputStream in = storage.open(source.key(), start, end)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (end - start >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, source.file().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = start;
+        while (position < end) {
+            long sent = source.handle().channel().transferTo(position, end - position, target);
+            if (sent <= 0) break;
+            position += sent;
+        }
+        out.flush();
+    }
+
+    /** Maps a request path onto a storage key, refusing anything that could escape the upload area. */
+    static String keyOf(String uri) {
+        for (var prefix : KEY_PREFIXES.entrySet()) {
+            if (!uri.startsWith(prefix.getKey())) continue;
+            String relative = UriUtils.decode(uri.substring(prefix.getKey().length()), StandardCharsets.UTF_8);
+            if (relative.isEmpty() || relative.indexOf('\0') >= 0 || relative.indexOf('\\') >= 0) return null;
+            for (String segment : relative.split("/", -1)) {
+                if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) return null;
+            }
+            String key = prefix.getValue() + relative;
+            boolean internal = key.startsWith(LocalStorageBackend.TMP_DIR + "/") || key.startsWith(LocalStorageBackend.QUARANTINE_DIR + "/");
+            return internal ? null : key;
+        }
+        return null;
+    }
+
+    /** A stale If-Range means the client's partial copy is outdated, so it gets the whole file. */
+    private static boolean rangeApplies(HttpServletRequest request, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && date == lastModified;
+    }
+
+    /**
+     * {@code [start, end)} for a single satisfiable range, an empty array for a header we choose to
+     * ignore (multiple ranges, bad syntax) and null when the range is unsatisfiable.
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return new long[0];
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        try {
+            String first = spec.substring(0, dash).trim(), last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                if (last.isEmpty()) return new long[0];
+                long suffix = Long.parseLong(last);
+                if (suffix == 0 || size == 0) return null;
+                return new long[]{Math.max(0, size - suffix), size};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size : Math.min(size, Long.parseLong(last) + 1);
+            if (start >= size) return null;
+            if (end <= start) return new long[0];
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
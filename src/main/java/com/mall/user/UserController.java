@@ -1,6 +1,7 @@
 package com.mall.user;
 
 import com.mall.service.FileStorageService;
+import com.mall.service.ImageVariant;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -8,7 +9,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-record UserDto(Long id, String email, String fullName, String profilePictureUrl, Role role, boolean active) {}
+record UserDto(Long id, String email, String fullName, String profilePictureUrl, String profilePictureThumbnailUrl, Role role, boolean active) {}
 record UpdateProfileDto(@NotBlank String fullName) {}
 
 @RestController
@@ -25,8 +26,7 @@ public class UserController {
     @GetMapping("/me")
     public ResponseEntity<UserDto> me(@AuthenticationPrincipal UserDetails principal) {
         var u = users.findByEmail(principal.getUsername()).orElseThrow();
-        return ResponseEntity.ok(new UserDto(u.getId(), u.getEmail(), u.getFullName(),
-                u.getProfilePictureUrl(), u.getRole(), u.isActive()));
+        return ResponseEntity.ok(toDto(u));
     }
 
     @PutMapping("/me")
@@ -35,8 +35,7 @@ public class UserController {
         var u = users.findByEmail(principal.getUsername()).orElseThrow();
         u.setFullName(dto.fullName());
         users.save(u);
-        return ResponseEntity.ok(new UserDto(u.getId(), u.getEmail(), u.getFullName(),
-                u.getProfilePictureUrl(), u.getRole(), u.isActive()));
+        return ResponseEntity.ok(toDto(u));
     }
 
     // NEW: Upload Profile Picture
@@ -53,12 +52,11 @@ public class UserController {
         }
 
         // Upload new picture
-        String fileUrl = fileStorageService.uploadFile(file, "profile-pictures");
+        String fileUrl = fileStorageService.uploadFile(file);
         u.setProfilePictureUrl(fileUrl);
         users.save(u);
 
-        return ResponseEntity.ok(new UserDto(u.getId(), u.getEmail(), u.getFullName(),
-                u.getProfilePictureUrl(), u.getRole(), u.isActive()));
+        return ResponseEntity.ok(toDto(u));
     }
 
     // NEW: Delete Profile Picture
@@ -91,6 +89,11 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    private static UserDto toDto(User u) {
+        return new UserDto(u.getId(), u.getEmail(), u.getFullName(), u.getProfilePictureUrl(),
+                ImageVariant.THUMBNAIL.urlOf(u.getProfilePictureUrl()), u.getRole(), u.isActive());
+    }
+
     @ExceptionHandler({IllegalArgumentException.class, RuntimeException.class})
     public ResponseEntity<java.util.Map<String, String>> handleBadRequest(Exception ex) {
         return ResponseEntity.badRequest().body(java.util.Map.of("message", ex.getMessage()));
@@ -1,9 +1,14 @@
 package com.mall.user;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    @Query("select u.profilePictureUrl from User u where u.profilePictureUrl is not null")
+    Stream<String> streamProfilePictureUrls();
 }
@@ -0,0 +1,104 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.AddItemRequest;
+import com.mall.cart.dto.BatchItemsRequest;
+import com.mall.product.Product;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Many requests on one cart at once; every add must be counted exactly once. */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CartService.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartConcurrencyTest {
+    private static final String EMAIL = "u@mall.local";
+    private static final int THREADS = 8, ROUNDS = 40;
+
+    @Autowired CartService carts;
+    @Autowired CartRepository cartRepo;
+    @Autowired CartItemRepository items;
+    @Autowired ProductRepository products;
+    @Autowired JdbcTemplate jdbc;
+
+    private Long lamp, desk;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        lamp = products.save(Product.builder().sku("LAMP").name("Desk Lamp").price(20.0).stock(5).active(true).build()).getId();
+        desk = products.save(Product.builder().sku("DESK").name("Desk").price(150.0).stock(2).active(true).build()).getId();
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        items.deleteAllInBatch();
+        cartRepo.deleteAllInBatch();
+        products.deleteAllInBatch();
+    }
+
+    /** Starts {@code task} on every thread at once and waits for all of them. */
+    private void hammer(Runnable task) throws Exception {
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ROUNDS; i++) task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (var f : futures) f.get(60, TimeUnit.SECONDS);
+    }
+
+    private Map<Long, Integer> storedQuantities() {
+        var out = new TreeMap<Long, Integer>();
+        jdbc.query("select product_id, quantity from cart_items", rs -> { out.put(rs.getLong(1), rs.getInt(2)); });
+        return out;
+    }
+
+    @Test
+    void concurrentAddsOnAFreshCartAreAllCounted() throws Exception {
+        hammer(() -> carts.addItem(EMAIL, new AddItemRequest(lamp, 1)));
+
+        assertThat(cartRepo.count()).isEqualTo(1);
+        assertThat(storedQuantities()).containsExactly(Map.entry(lamp, THREADS * ROUNDS));
+        assertThat(carts.getCart(EMAIL).total()).isEqualTo(THREADS * ROUNDS * 20.0);
+    }
+
+    @Test
+    void singleAndBatchAddsDoNotLoseEachOthersUpdates() throws Exception {
+        var batch = new BatchItemsRequest(List.of(new AddItemRequest(lamp, 1), new AddItemRequest(desk, 2)));
+        hammer(() -> {
+            carts.addItem(EMAIL, new AddItemRequest(lamp, 1));
+            carts.addItems(EMAIL, batch);
+        });
+
+        assertThat(storedQuantities()).containsExactly(
+                Map.entry(lamp, 2 * THREADS * ROUNDS),
+                Map.entry(desk, 2 * THREADS * ROUNDS));
+    }
+}
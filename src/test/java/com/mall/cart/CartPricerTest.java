@@ -0,0 +1,132 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.AddItemRequest;
+import com.mall.cart.dto.CartDto;
+import com.mall.cart.dto.CartItemDto;
+import com.mall.cart.dto.LineStatus;
+import com.mall.inventory.DatabaseInventory;
+import com.mall.order.OrderService;
+import com.mall.order.dto.CheckoutRequest;
+import com.mall.product.Product;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartService.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class, OrderService.class, DatabaseInventory.class})
+class CartPricerTest {
+    private static final String EMAIL = "u@mall.local";
+
+    @Autowired TestEntityManager em;
+    @Autowired CartService carts;
+    @Autowired CartPricer pricer;
+    @Autowired ProductCatalogCache catalog;
+    @Autowired ProductRepository products;
+    @Autowired OrderService orders;
+
+    private Product product(String sku, double price, int stock) {
+        return em.persist(Product.builder().sku(sku).name(sku).price(price).stock(stock).active(true).build());
+    }
+
+    @Test
+    void linesAreRepricedAndFlaggedAgainstTheCatalog() {
+        var lamp = product("LAMP", 20.0, 5);
+        var desk = product("DESK", 150.0, 5);
+        var chair = product("CHAIR", 40.0, 5);
+        var rug = product("RUG", 90.0, 5);
+        var vase = product("VASE", 15.0, 5);
+        for (var p : new Product[]{lamp, desk, chair, rug, vase}) carts.addItem(EMAIL, new AddItemRequest(p.getId(), 2));
+
+        lamp.setPrice(25.0);
+        desk.setActive(false);
+        chair.setStock(1);
+        em.remove(rug);
+        em.flush();
+        catalog.clear();
+
+        var cart = carts.getCart(EMAIL);
+        assertThat(cart.items()).extracting(CartItemDto::status).containsExactly(
+                LineStatus.PRICE_CHANGED, LineStatus.INACTIVE, LineStatus.OUT_OF_STOCK, LineStatus.UNAVAILABLE, LineStatus.OK);
+        assertThat(cart.items().get(0).price()).isEqualTo(25.0);
+        assertThat(cart.items().get(0).addedPrice()).isEqualTo(20.0);
+        assertThat(cart.total()).isEqualTo(2 * (25.0 + 150.0 + 40.0 + 90.0 + 15.0));
+
+        assertThatThrownBy(() -> orders.checkout(EMAIL, new CheckoutRequest("Somewhere")))
+                .hasMessage("Some items can no longer be ordered: DESK (INACTIVE), CHAIR (OUT_OF_STOCK), RUG (UNAVAILABLE)");
+
+        for (int i = 1; i <= 3; i++) carts.removeItem(EMAIL, cart.items().get(i).id());
+        em.flush();
+        em.clear();
+        var order = orders.checkout(EMAIL, new CheckoutRequest("Somewhere"));
+        assertThat(order.total()).isEqualTo(2 * 25.0 + 2 * 15.0);
+        assertThat(order.items()).extracting(i -> i.price()).containsExactly(25.0, 15.0);
+    }
+
+    @Test
+    void largeCartsArePricedWithOneQuery() {
+        var cart = largeCart(150);
+        var stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        catalog.clear();
+        stats.clear();
+        var priced = pricer.price(cart);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(priced.items()).allSatisfy(i -> assertThat(i.status()).isEqualTo(LineStatus.OK));
+
+        stats.clear();
+        pricer.price(cart);
+        assertThat(stats.getPrepareStatementCount()).isZero();
+    }
+
+    /** Logs the cost of pricing a large cart against per-line lookups. */
+    @Test
+    @Tag("benchmark")
+    void largeCartPricingCost() {
+        int lines = 150, rounds = 200;
+        var cart = largeCart(lines);
+
+        catalog.clear();
+        long start = System.nanoTime();
+        for (var line : cart.items()) catalog.get(line.productId());
+        long perLine = System.nanoTime() - start;
+
+        catalog.clear();
+        start = System.nanoTime();
+        pricer.price(cart);
+        long cold = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) pricer.price(cart);
+        long warm = (System.nanoTime() - start) / rounds;
+
+        log.info(String.format("%d-line cart: per-line lookups %.2f ms, pricer cold %.2f ms, pricer warm %.1f us",
+                lines, perLine / 1e6, cold / 1e6, warm / 1e3));
+    }
+
+    private CartDto largeCart(int lines) {
+        var items = new ArrayList<CartItemDto>();
+        for (int i = 0; i < lines; i++) {
+            var p = product("SKU-" + i, 10.0 + i, 100);
+            items.add(new CartItemDto((long) i, p.getId(), p.getSku(), p.getName(), p.getPrice(), 1, p.getPrice()));
+        }
+        em.flush();
+        em.clear();
+        return new CartDto(1L, EMAIL, items, null);
+    }
+}
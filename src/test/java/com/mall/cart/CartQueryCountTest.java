@@ -0,0 +1,117 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.AddItemRequest;
+import com.mall.cart.dto.BatchItemsRequest;
+import com.mall.cart.dto.BatchLineResult.Status;
+import com.mall.cart.dto.UpdateItemRequest;
+import com.mall.product.Product;
+import com.mall.product.ProductCatalogCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Each cart request is one fetch-join for the cart and its items, plus the writes it makes. */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartService.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+class CartQueryCountTest {
+    private static final String EMAIL = "u@mall.local";
+
+    @Autowired TestEntityManager em;
+    @Autowired CartService carts;
+    @Autowired ProductCatalogCache catalog;
+
+    private Statistics stats;
+    private Long lamp, desk;
+
+    @BeforeEach
+    void seed() {
+        lamp = em.persist(Product.builder().sku("LAMP").name("Desk Lamp").price(20.0).stock(5).active(true).build()).getId();
+        desk = em.persist(Product.builder().sku("DESK").name("Desk").price(150.0).stock(2).active(true).build()).getId();
+        em.persist(Cart.builder().userEmail(EMAIL).build());
+        em.flush();
+        em.clear();
+        catalog.get(lamp);
+        catalog.get(desk);
+        stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /** Statements issued by {@code request}, flushing as its commit would. */
+    private long statements(Runnable request) {
+        em.clear();
+        stats.clear();
+        request.run();
+        em.flush();
+        return stats.getPrepareStatementCount();
+    }
+
+    @Test
+    void mutationsAnswerFromTheStateTheyChanged() {
+        var added = carts.addItem(EMAIL, new AddItemRequest(lamp, 1));
+        assertThat(added.items()).singleElement().satisfies(i -> assertThat(i.id()).isNotNull());
+        Long lampItem = added.items().get(0).id();
+
+        // a new line first tries the increment, then reads the cart and inserts
+        assertThat(statements(() -> carts.addItem(EMAIL, new AddItemRequest(desk, 1)))).isEqualTo(3);
+        assertThat(statements(() -> carts.addItem(EMAIL, new AddItemRequest(lamp, 2)))).isEqualTo(2);
+        assertThat(statements(() -> carts.updateItem(EMAIL, lampItem, new UpdateItemRequest(4)))).isEqualTo(2);
+        assertThat(statements(() -> carts.getCart(EMAIL))).isEqualTo(1);
+
+        em.clear();
+        var cart = carts.getCart(EMAIL);
+        assertThat(cart.items()).extracting(i -> i.quantity()).containsExactly(4, 1);
+        assertThat(cart.total()).isEqualTo(4 * 20.0 + 150.0);
+
+        assertThat(statements(() -> carts.removeItem(EMAIL, lampItem))).isEqualTo(2);
+        assertThat(statements(() -> assertThat(carts.clear(EMAIL).items()).isEmpty())).isEqualTo(2);
+        em.clear();
+        assertThat(carts.getCart(EMAIL).items()).isEmpty();
+    }
+
+    @Test
+    void foreignAndMissingItemsAreStillToldApart() {
+        var other = carts.addItem("other@mall.local", new AddItemRequest(lamp, 1)).items().get(0).id();
+
+        assertThatThrownBy(() -> carts.removeItem(EMAIL, other)).hasMessage("Item does not belong to cart");
+        assertThatThrownBy(() -> carts.removeItem(EMAIL, -1L)).hasMessage("Cart item not found");
+    }
+
+    @Test
+    void batchesAreOneCartReadWithPerLineResults() {
+        var lines = List.of(new AddItemRequest(lamp, 2), new AddItemRequest(-1L, 1), new AddItemRequest(desk, 1), new AddItemRequest(lamp, 1));
+
+        // one lookup for the product the catalog has not cached, one for the cart; the line
+        // writes are JDBC batches, which Hibernate does not count
+        assertThat(statements(() -> {
+            var res = carts.addItems(EMAIL, new BatchItemsRequest(lines));
+            assertThat(res.results()).extracting(r -> r.status())
+                    .containsExactly(Status.ADDED, Status.REJECTED, Status.ADDED, Status.UPDATED);
+            assertThat(res.results().get(1).message()).isEqualTo("Product not found");
+            assertThat(res.cart().items()).extracting(i -> i.quantity()).containsExactly(3, 1);
+            assertThat(res.cart().items()).allSatisfy(i -> assertThat(i.id()).isNotNull());
+        })).isEqualTo(2);
+
+        em.clear();
+        var set = carts.setItems(EMAIL, new BatchItemsRequest(List.of(new AddItemRequest(lamp, 0), new AddItemRequest(desk, 4))));
+        assertThat(set.results()).extracting(r -> r.status()).containsExactly(Status.REMOVED, Status.UPDATED);
+
+        em.clear();
+        var cart = carts.getCart(EMAIL);
+        assertThat(cart.items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(4));
+        assertThat(cart.total()).isEqualTo(4 * 150.0);
+
+        assertThatThrownBy(() -> carts.addItems(EMAIL, new BatchItemsRequest(List.of()))).hasMessage("No items in batch");
+    }
+}
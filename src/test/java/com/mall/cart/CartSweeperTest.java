@@ -0,0 +1,98 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.AddItemRequest;
+import com.mall.product.Product;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "cart.sweep.ttl=P30D",
+        "cart.sweep.chunk=2"
+})
+@Import({CartSweeper.class, CartService.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartSweeperTest {
+    @Autowired CartSweeper sweeper;
+    @Autowired CartService carts;
+    @Autowired CartRepository cartRepo;
+    @Autowired CartItemRepository items;
+    @Autowired ProductRepository products;
+    @Autowired JdbcTemplate jdbc;
+
+    @AfterEach
+    void tearDown() {
+        items.deleteAllInBatch();
+        cartRepo.deleteAllInBatch();
+        products.deleteAllInBatch();
+    }
+
+    private void age(String table, String column, Object id, Duration by) {
+        jdbc.update("update " + table + " set updated_at = ? where " + column + " = ?", Timestamp.from(Instant.now().minus(by)), id);
+    }
+
+    @Test
+    void readingACartDoesNotCreateOne() {
+        var cart = carts.getCart("browsing@mall.local");
+
+        assertThat(cart.id()).isNull();
+        assertThat(cart.items()).isEmpty();
+        assertThat(cartRepo.count()).isZero();
+    }
+
+    @Test
+    void idleCartsAreDeletedInChunksWithTheirItems() {
+        var lamp = products.save(Product.builder().sku("LAMP").name("Desk Lamp").price(20.0).stock(50).active(true).build()).getId();
+        Duration old = Duration.ofDays(40);
+        for (int i = 0; i < 5; i++) {
+            String email = "idle" + i + "@mall.local";
+            carts.addItem(email, new AddItemRequest(lamp, 1));
+            age("carts", "user_email", email, old);
+            age("cart_items", "cart_id", cartRepo.findByUserEmail(email).orElseThrow().getId(), old);
+        }
+        // an old cart with a recently changed line, and a fresh cart
+        carts.addItem("busy@mall.local", new AddItemRequest(lamp, 1));
+        age("carts", "user_email", "busy@mall.local", old);
+        carts.addItem("fresh@mall.local", new AddItemRequest(lamp, 1));
+
+        var report = sweeper.sweep();
+
+        assertThat(report).isEqualTo(new CartSweeper.Report(5, 5));
+        assertThat(cartRepo.findAll()).extracting(Cart::getUserEmail).containsExactlyInAnyOrder("busy@mall.local", "fresh@mall.local");
+        assertThat(items.count()).isEqualTo(2);
+        assertThat(sweeper.sweep()).isEqualTo(new CartSweeper.Report(0, 0));
+
+        // a swept user starts over with a new cart
+        assertThat(carts.addItem("idle0@mall.local", new AddItemRequest(lamp, 2)).items())
+                .singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(2));
+    }
+
+    @Test
+    void aCartOnlyEverIncrementedIsNotIdle() {
+        var lamp = products.save(Product.builder().sku("LAMP").name("Desk Lamp").price(20.0).stock(50).active(true).build()).getId();
+        Duration old = Duration.ofDays(40);
+        carts.addItem("regular@mall.local", new AddItemRequest(lamp, 1));
+        age("carts", "user_email", "regular@mall.local", old);
+        age("cart_items", "cart_id", cartRepo.findByUserEmail("regular@mall.local").orElseThrow().getId(), old);
+
+        // adding a product already in the cart is a bulk increment
+        carts.addItem("regular@mall.local", new AddItemRequest(lamp, 1));
+
+        assertThat(sweeper.sweep()).isEqualTo(new CartSweeper.Report(0, 0));
+        assertThat(carts.getCart("regular@mall.local").items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(2));
+    }
+}
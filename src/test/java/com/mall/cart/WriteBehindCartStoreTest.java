@@ -0,0 +1,205 @@
+package com.mall.cart;
+
+import com.mall.cart.dto.BatchLineResult.Status;
+import com.mall.cart.dto.CartDto;
+import com.mall.product.Product;
+import com.mall.product.ProductRepository;
+import com.mall.product.ProductView;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WriteBehindCartStoreTest {
+    private static final String EMAIL = "u@mall.local";
+
+    @TempDir Path wal;
+    @Autowired CartRepository carts;
+    @Autowired CartItemRepository items;
+    @Autowired ProductRepository products;
+    @Autowired JdbcTemplate jdbc;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired EntityManagerFactory emf;
+
+    private WriteBehindCartStore store;
+    private ProductView lamp, desk;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lamp = ProductView.of(products.save(Product.builder().sku("LAMP").name("Desk Lamp").price(20.0).stock(5).active(true).build()));
+        desk = ProductView.of(products.save(Product.builder().sku("DESK").name("Desk").price(150.0).stock(2).active(true).build()));
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        items.deleteAllInBatch();
+        carts.deleteAllInBatch();
+        products.deleteAllInBatch();
+    }
+
+    private WriteBehindCartStore open() throws Exception {
+        var s = new WriteBehindCartStore(carts, items, new CartItemWriter(jdbc), transactionManager, wal.toString(), false, 1000, Duration.ofMinutes(30));
+        s.recover();
+        return s;
+    }
+
+    private Map<Long, Integer> storedQuantities() {
+        var out = new TreeMap<Long, Integer>();
+        jdbc.query("select product_id, quantity from cart_items", rs -> { out.put(rs.getLong(1), rs.getInt(2)); });
+        return out;
+    }
+
+    @Test
+    void bumpsAreServedFromMemoryAndWrittenCoalesced() {
+        Long itemId = store.add(EMAIL, lamp, 1).items().get(0).id();
+        var stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        for (int i = 0; i < 10; i++) store.add(EMAIL, lamp, 1);
+        var cart = store.update(EMAIL, itemId, 12);
+
+        assertThat(cart.items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(12));
+        assertThat(stats.getPrepareStatementCount()).isZero();
+        assertThat(storedQuantities()).containsEntry(lamp.id(), 1);
+
+        assertThat(store.flush()).isEqualTo(1);
+        assertThat(storedQuantities()).containsEntry(lamp.id(), 12);
+        assertThat(store.flush()).isZero();
+    }
+
+    @Test
+    void acceptedChangesSurviveACrashThroughTheLog() throws Exception {
+        var cart = store.add(EMAIL, lamp, 1);
+        store.add(EMAIL, desk, 1);
+        store.update(EMAIL, cart.items().get(0).id(), 7);
+        store.remove(EMAIL, store.get(EMAIL).items().get(1).id());
+        assertThat(storedQuantities()).hasSize(2);
+
+        // a new instance over the same log, as after a restart without a final flush
+        var restarted = open();
+
+        assertThat(storedQuantities()).containsExactly(Map.entry(lamp.id(), 7));
+        assertThat(restarted.get(EMAIL).items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(7));
+    }
+
+    @Test
+    void aRecordCutShortByACrashIsSkippedOnRecovery() throws Exception {
+        Long itemId = store.add(EMAIL, lamp, 1).items().get(0).id();
+        store.update(EMAIL, itemId, 7);
+        Path newest;
+        try (Stream<Path> segments = Files.list(wal)) {
+            newest = segments.max(Comparator.naturalOrder()).orElseThrow();
+        }
+        Files.writeString(newest, "U " + itemId + " 9", StandardOpenOption.APPEND);
+
+        var restarted = open();
+
+        assertThat(storedQuantities()).containsExactly(Map.entry(lamp.id(), 7));
+        assertThat(restarted.get(EMAIL).items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(7));
+    }
+
+    @Test
+    void checkoutFlushWritesTheCartAndForgetsIt() {
+        Long itemId = store.add(EMAIL, lamp, 1).items().get(0).id();
+        store.update(EMAIL, itemId, 3);
+
+        store.flush(EMAIL);
+
+        assertThat(storedQuantities()).containsEntry(lamp.id(), 3);
+        assertThat(store.activeCarts()).isZero();
+        assertThat(store.get(EMAIL).items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(3));
+    }
+
+    @Test
+    void aCartFlushedForCheckoutIsNotReloadedBeforeTheCheckoutCommits() throws Exception {
+        store.add(EMAIL, lamp, 2);
+        var reloaded = new CompletableFuture<CartDto>();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            store.flush(EMAIL);
+            Thread.ofPlatform().start(() -> reloaded.complete(store.get(EMAIL)));
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertThat(reloaded).isNotDone();
+            items.deleteAllInBatch();
+        });
+
+        assertThat(reloaded.get(10, TimeUnit.SECONDS).items()).isEmpty();
+    }
+
+    @Test
+    void onlyCartsWithUnwrittenChangesAreVisitedAndIdleOnesEvicted() throws Exception {
+        store.add(EMAIL, lamp, 1);
+        store.get("other@mall.local");
+        assertThat(store.flush()).isZero();
+        assertThat(store.evict()).isZero();
+        assertThat(store.activeCarts()).isEqualTo(2);
+
+        var eager = new WriteBehindCartStore(carts, items, new CartItemWriter(jdbc), transactionManager, wal.toString(), false, 1000, Duration.ZERO);
+        eager.get(EMAIL);
+        assertThat(eager.evict()).isEqualTo(1);
+        assertThat(eager.activeCarts()).isZero();
+    }
+
+    @Test
+    void reAddingARemovedProductBeforeItsDeleteIsWrittenKeepsOneRow() {
+        Long first = store.add(EMAIL, lamp, 2).items().get(0).id();
+        store.remove(EMAIL, first);
+
+        var cart = store.add(EMAIL, lamp, 5);
+        store.flush();
+
+        assertThat(cart.items()).singleElement().satisfies(i -> assertThat(i.id()).isNotEqualTo(first));
+        assertThat(storedQuantities()).containsExactly(Map.entry(lamp.id(), 5));
+        assertThatThrownBy(() -> store.update(EMAIL, first, 1)).hasMessage("Cart item not found");
+    }
+
+    @Test
+    void batchesInsertNewLinesAtOnceAndQueueTheRest() {
+        store.add(EMAIL, lamp, 1);
+
+        var added = store.apply(EMAIL, List.of(new CartStore.LineChange(lamp, 2), new CartStore.LineChange(desk, 1)), false);
+        assertThat(added.statuses()).containsExactly(Status.UPDATED, Status.ADDED);
+        assertThat(storedQuantities()).containsExactly(Map.entry(lamp.id(), 1), Map.entry(desk.id(), 1));
+
+        var set = store.apply(EMAIL, List.of(new CartStore.LineChange(lamp, 0), new CartStore.LineChange(desk, 2)), true);
+        assertThat(set.statuses()).containsExactly(Status.REMOVED, Status.UPDATED);
+        assertThat(set.cart().items()).singleElement().satisfies(i -> assertThat(i.quantity()).isEqualTo(2));
+
+        store.flush();
+        assertThat(storedQuantities()).containsExactly(Map.entry(desk.id(), 2));
+    }
+}
@@ -0,0 +1,131 @@
+package com.mall.category;
+
+import com.mall.common.CatalogVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Writes shift only the intervals they touch; the result must match what the parent pointers say. */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CategoryService.class, CategoryTree.class, CatalogVersions.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CategoryServiceTest {
+
+    @Autowired CategoryService service;
+    @Autowired CategoryRepository repo;
+    @Autowired CategoryTree tree;
+
+    @BeforeEach
+    void setUp() {
+        service.numberExistingTree();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.deleteAllInBatch();
+    }
+
+    private Long create(String slug, Long parentId) {
+        return service.create(slug, slug, parentId, true).getId();
+    }
+
+    @Test
+    void createsMovesAndDeletesKeepTheIntervalsConsistent() {
+        Long a = create("a", null), b = create("b", null);
+        Long a1 = create("a1", a), a2 = create("a2", a), a11 = create("a11", a1);
+        Long b1 = create("b1", b);
+        assertConsistent();
+
+        service.update(a1, "a1", "a1", b1, true);
+        assertConsistent();
+        assertThat(repo.findById(a11).orElseThrow().getDepth()).isEqualTo(3);
+
+        service.update(b1, "b1", "b1", null, true);
+        assertConsistent();
+
+        assertThatThrownBy(() -> service.update(b1, "b1", "b1", a11, true)).hasMessage("Category cannot be its own ancestor");
+        assertConsistent();
+
+        service.delete(a1);
+        assertConsistent();
+        assertThat(repo.findById(a11).orElseThrow().getParentId()).isEqualTo(b1);
+
+        service.update(a2, "a2", "a2", a11, true);
+        service.delete(a);
+        assertConsistent();
+    }
+
+    @Test
+    void numberingALegacyTreeRefreshesTheCachedTree() {
+        Long legacy = repo.save(Category.builder().name("legacy").slug("legacy").active(true).build()).getId();
+        tree.onCategoryChanged(new CategoryChangedEvent(legacy));
+        assertThat(tree.byId(legacy)).map(CategoryTree.Node::lft).isEmpty();
+
+        service.numberExistingTree();
+
+        assertThat(tree.byId(legacy)).map(CategoryTree.Node::lft).isPresent();
+    }
+
+    @Test
+    void concurrentCreatesUnderOneParentTakeTurns() throws Exception {
+        Long root = create("root", null);
+        int threads = 8;
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<?>>();
+        try (var pool = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    Long parent = create("t" + thread, root);
+                    IntStream.range(0, 5).forEach(i -> create("t" + thread + "-" + i, parent));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (var f : futures) f.get(60, TimeUnit.SECONDS);
+        }
+        assertThat(repo.count()).isEqualTo(1 + threads * 6);
+        assertConsistent();
+    }
+
+    /** Every interval holds exactly the category's subtree, at the right depth, with no gaps. */
+    private void assertConsistent() {
+        var all = repo.findAll();
+        var byId = new HashMap<Long, Category>();
+        all.forEach(c -> byId.put(c.getId(), c));
+
+        var bounds = new HashSet<Integer>();
+        for (var c : all) {
+            bounds.add(c.getLft());
+            bounds.add(c.getRgt());
+            int depth = 0;
+            for (var p = c.getParentId(); p != null; p = byId.get(p).getParentId()) {
+                var ancestor = byId.get(p);
+                assertThat(c.getLft()).as("%s inside %s", c.getSlug(), ancestor.getSlug()).isBetween(ancestor.getLft(), ancestor.getRgt());
+                depth++;
+            }
+            assertThat(c.getDepth()).as("depth of %s", c.getSlug()).isEqualTo(depth);
+            long inside = all.stream().filter(o -> o.getLft() > c.getLft() && o.getLft() < c.getRgt()).count();
+            assertThat(c.getRgt() - c.getLft() - 1).as("width of %s", c.getSlug()).isEqualTo(inside * 2);
+        }
+        assertThat(bounds).hasSize(all.size() * 2).allSatisfy(b -> assertThat(b).isBetween(1, all.size() * 2));
+    }
+}
@@ -0,0 +1,70 @@
+package com.mall.category;
+
+import com.mall.common.CatalogVersions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class CategoryTreeTest {
+
+    private static Category cat(long id, String slug, Long parent) {
+        return Category.builder().id(id).name(slug).slug(slug).parentId(parent).active(true).build();
+    }
+
+    private final CategoryRepository repo = mock(CategoryRepository.class);
+    private final CatalogVersions versions = mock(CatalogVersions.class);
+    private final CategoryTree tree = new CategoryTree(repo, versions);
+
+    {
+        when(versions.version(any())).thenReturn("v");
+        when(versions.current(any())).thenReturn("v");
+    }
+
+    @Test
+    void resolvesBreadcrumbsAndDescendantsWithoutFurtherQueries() {
+        when(repo.findAll()).thenReturn(List.of(
+                cat(1, "electronics", null), cat(2, "phones", 1L), cat(3, "android", 2L),
+                cat(4, "laptops", 1L), cat(5, "books", null)));
+
+        var android = tree.bySlug("android").orElseThrow();
+        assertThat(tree.breadcrumb(android)).extracting(CategoryTree.Node::slug)
+                .containsExactly("electronics", "phones", "android");
+        assertThat(tree.descendants(tree.byId(1L).orElseThrow())).extracting(CategoryTree.Node::slug)
+                .containsExactly("phones", "android", "laptops");
+        assertThat(tree.descendants(tree.byId(5L).orElseThrow())).isEmpty();
+
+        var roots = tree.roots();
+        assertThat(roots).extracting(CategoryTreeDto::slug).containsExactly("electronics", "books");
+        assertThat(roots.get(0).children()).extracting(CategoryTreeDto::slug).containsExactly("phones", "laptops");
+
+        verify(repo, times(1)).findAll();
+    }
+
+    @Test
+    void reloadsWhenTheTableMovedOnWithoutAnEvent() {
+        when(versions.version(any())).thenReturn("v1").thenReturn("v2");
+        when(versions.current(any())).thenReturn("v1").thenReturn("v2");
+        when(repo.findAll()).thenReturn(List.of(cat(1, "a", null)))
+                .thenReturn(List.of(cat(1, "a", null), cat(2, "b", 1L)));
+
+        assertThat(tree.all()).hasSize(1);
+        assertThat(tree.all()).hasSize(1);
+        assertThat(tree.all()).hasSize(2);
+        assertThat(tree.version()).isEqualTo("v2");
+    }
+
+    @Test
+    void swapsInANewTreeOnChange() {
+        when(repo.findAll()).thenReturn(List.of(cat(1, "a", null)))
+                .thenReturn(List.of(cat(1, "a", null), cat(2, "b", 1L)));
+        assertThat(tree.all()).hasSize(1);
+
+        tree.onCategoryChanged(new CategoryChangedEvent(2L));
+
+        assertThat(tree.all()).hasSize(2);
+        assertThat(tree.bySlug("b")).map(CategoryTree.Node::depth).contains(1);
+    }
+}
@@ -0,0 +1,77 @@
+package com.mall.common;
+
+import com.mall.product.ProductsBulkChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogHttpCacheTest {
+
+    private final Map<String, String> tables = new HashMap<>(Map.of(
+            CatalogHttpCache.PRODUCTS, "1", CatalogHttpCache.CATEGORIES, "1", CatalogHttpCache.DISCOUNTS, "1"));
+    private final AtomicInteger reads = new AtomicInteger();
+    private final CatalogVersions versions = new CatalogVersions(collection -> {
+        reads.incrementAndGet();
+        return tables.get(collection);
+    }, Duration.ofHours(1));
+    private final CatalogHttpCache cache = new CatalogHttpCache(versions, Duration.ZERO);
+
+    @Test
+    void matchingTagAnswers304WithoutBuildingTheBody() {
+        var built = new AtomicInteger();
+        String etag = cache.collectionTag(CatalogHttpCache.PRODUCTS);
+
+        var fresh = cache.conditional(null, etag, () -> "body" + built.incrementAndGet());
+        var revalidated = cache.conditional("W/\"other\", " + etag, etag, () -> "body" + built.incrementAndGet());
+
+        assertThat(fresh.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(fresh.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(fresh.getHeaders().getCacheControl()).contains("must-revalidate");
+        assertThat(revalidated.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(revalidated.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(revalidated.getBody()).isNull();
+        assertThat(built).hasValue(1);
+    }
+
+    @Test
+    void committedChangeInvalidatesOnlyItsCollection() {
+        String products = cache.collectionTag(CatalogHttpCache.PRODUCTS);
+        String discounts = cache.collectionTag(CatalogHttpCache.DISCOUNTS);
+
+        tables.put(CatalogHttpCache.PRODUCTS, "2");
+        tables.put(CatalogHttpCache.DISCOUNTS, "2");
+        versions.onCatalogChange(new ProductsBulkChangedEvent());
+
+        assertThat(cache.collectionTag(CatalogHttpCache.PRODUCTS)).isNotEqualTo(products);
+        assertThat(cache.collectionTag(CatalogHttpCache.PRODUCTS, CatalogHttpCache.CATEGORIES)).isNotEqualTo(products);
+        assertThat(cache.collectionTag(CatalogHttpCache.DISCOUNTS)).isEqualTo(discounts);
+    }
+
+    @Test
+    void tagsComeFromTheTablesSoEveryInstanceAgrees() {
+        var elsewhere = new CatalogHttpCache(new CatalogVersions(tables::get, Duration.ZERO), Duration.ZERO);
+        assertThat(elsewhere.collectionTag(CatalogHttpCache.PRODUCTS)).isEqualTo(cache.collectionTag(CatalogHttpCache.PRODUCTS));
+
+        // written by another instance: no event here, seen once the recheck interval has passed
+        tables.put(CatalogHttpCache.PRODUCTS, "2");
+        assertThat(elsewhere.collectionTag(CatalogHttpCache.PRODUCTS)).isNotEqualTo(cache.collectionTag(CatalogHttpCache.PRODUCTS));
+        assertThat(reads).hasValue(1);
+    }
+
+    @Test
+    void entityTagFollowsUpdatedAt() {
+        var t = Instant.parse("2026-01-01T00:00:00.123456Z");
+
+        assertThat(cache.entityTag("products", 7L, t)).isEqualTo(cache.entityTag("products", 7L, t));
+        assertThat(cache.entityTag("products", 7L, t.plusNanos(1000))).isNotEqualTo(cache.entityTag("products", 7L, t));
+        assertThat(CatalogHttpCache.matches("*", cache.entityTag("products", 7L, t))).isTrue();
+        assertThat(CatalogHttpCache.matches("\"products-7\"", cache.entityTag("products", 7L, t))).isFalse();
+    }
+}
@@ -0,0 +1,40 @@
+package com.mall.common;
+
+import com.mall.category.Category;
+import com.mall.category.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "catalog.http.version-recheck=PT0S"
+})
+@Import(CatalogVersions.class)
+class CatalogVersionsTest {
+
+    @Autowired CatalogVersions versions;
+    @Autowired CategoryRepository categories;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void writesThatBypassTheApplicationChangeTheVersion() {
+        var c = categories.saveAndFlush(Category.builder().name("a").slug("versions-a").active(true).build());
+        String before = versions.version(CatalogHttpCache.CATEGORIES);
+        assertThat(versions.version(CatalogHttpCache.CATEGORIES)).isEqualTo(before);
+
+        jdbc.update("update categories set name = 'b', updated_at = ? where id = ?", Timestamp.from(Instant.now().plusSeconds(60)), c.getId());
+        String updated = versions.version(CatalogHttpCache.CATEGORIES);
+        assertThat(updated).isNotEqualTo(before);
+
+        jdbc.update("delete from categories where id = ?", c.getId());
+        assertThat(versions.version(CatalogHttpCache.CATEGORIES)).isNotEqualTo(updated);
+    }
+}
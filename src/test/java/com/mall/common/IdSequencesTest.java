@@ -0,0 +1,43 @@
+package com.mall.common;
+
+import com.mall.order.Order;
+import com.mall.order.OrderRepository;
+import com.mall.order.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(IdSequences.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequencesTest {
+    @Autowired IdSequences sequences;
+    @Autowired OrderRepository orders;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void idsStartPastRowsInsertedBeforeTheSequenceExisted() {
+        jdbc.update("insert into orders (id, user_email, status, total) values (1000, 'old@mall.local', 'DELIVERED', 1.0)");
+        try {
+            sequences.alignWithExistingIds();
+
+            var a = orders.save(Order.builder().userEmail("u@mall.local").status(OrderStatus.PENDING).total(1.0).build());
+            var b = orders.save(Order.builder().userEmail("u@mall.local").status(OrderStatus.PENDING).total(1.0).build());
+            assertThat(a.getId()).isEqualTo(1001);
+            assertThat(b.getId()).isEqualTo(1002);
+
+            // running again never moves a sequence backwards
+            sequences.alignWithExistingIds();
+            assertThat(jdbc.queryForObject("select last_val from " + IdSequences.TABLE + " where name = 'orders'", Long.class))
+                    .isEqualTo(1000 + IdSequences.BLOCK);
+        } finally {
+            orders.deleteAllInBatch();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.mall.inventory;
+
+import com.mall.product.Product;
+import com.mall.product.ProductRepository;
+import com.mall.product.StockEditedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotSkuInventoryTest {
+    private static final int THREADS = 32;
+
+    @TempDir Path journal;
+    @Autowired ProductRepository products;
+    @Autowired JdbcTemplate jdbc;
+    @Autowired TransactionTemplate tx;
+    @Autowired ApplicationEventPublisher events;
+
+    @AfterEach
+    void tearDown() {
+        products.deleteAllInBatch();
+        jdbc.update("delete from inventory_checkpoints");
+    }
+
+    private long product(String sku, int stock) {
+        return products.save(Product.builder().sku(sku).name(sku).price(10.0).stock(stock).active(true).build()).getId();
+    }
+
+    private HotSkuInventory open(String... hotSkus) throws Exception {
+        return openOn("node-a", hotSkus);
+    }
+
+    private HotSkuInventory openOn(String node, String... hotSkus) throws Exception {
+        var inventory = new HotSkuInventory(jdbc, products, events, tx, List.of(hotSkus), journal.toString(), false, 16,
+                node, Duration.ofSeconds(30));
+        inventory.start();
+        return inventory;
+    }
+
+    private int stock(long productId) {
+        return jdbc.queryForObject("select stock from products where id = ?", Integer.class, productId);
+    }
+
+    private static List<Inventory.Line> line(long productId, String sku, int quantity) {
+        return List.of(new Inventory.Line(productId, sku, quantity));
+    }
+
+    @Test
+    void hotStockIsNeverOversoldAndReachesTheDatabaseOnReconcile() throws Exception {
+        long hot = product("HOT", 100);
+        var inventory = open("HOT");
+        var granted = new AtomicInteger();
+
+        var pool = Executors.newFixedThreadPool(THREADS);
+        var futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    try {
+                        tx.executeWithoutResult(s -> inventory.reserve(line(hot, "HOT", 1)));
+                        granted.incrementAndGet();
+                    } catch (IllegalArgumentException soldOut) {
+                        // expected once the 100 are gone
+                    }
+                }
+            }));
+        }
+        for (var f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(granted).hasValue(100);
+        assertThat(inventory.available(hot)).hasValue(0);
+        assertThat(stock(hot)).isEqualTo(100);
+
+        assertThat(inventory.reconcile()).isEqualTo(1);
+        assertThat(stock(hot)).isZero();
+        assertThat(inventory.reconcile()).isZero();
+    }
+
+    @Test
+    void aRolledBackCheckoutGivesHotStockBack() throws Exception {
+        long hot = product("HOT", 10), cold = product("COLD", 1);
+        var inventory = open("HOT");
+
+        assertThatThrownBy(() -> tx.executeWithoutResult(s -> inventory.reserve(List.of(
+                new Inventory.Line(hot, "HOT", 4), new Inventory.Line(cold, "COLD", 2)))))
+                .hasMessage("Not enough stock for: COLD");
+        assertThat(inventory.available(hot)).hasValue(10);
+
+        tx.executeWithoutResult(s -> inventory.reserve(List.of(new Inventory.Line(hot, "HOT", 4), new Inventory.Line(cold, "COLD", 1))));
+        inventory.release(line(hot, "HOT", 1));
+        inventory.reconcile();
+
+        assertThat(inventory.available(hot)).hasValue(7);
+        assertThat(stock(hot)).isEqualTo(7);
+        assertThat(stock(cold)).isZero();
+    }
+
+    @Test
+    void replayingTheJournalWritesEachChangeOnce() throws Exception {
+        long hot = product("HOT", 10);
+        var inventory = open("HOT");
+        tx.executeWithoutResult(s -> inventory.reserve(line(hot, "HOT", 3)));
+
+        // keep the segments as a crash between the reconcile commit and their deletion would
+        Path kept = Files.createTempDirectory("kept");
+        try (Stream<Path> files = Files.list(journal)) {
+            for (Path p : files.toList()) Files.copy(p, kept.resolve(p.getFileName()));
+        }
+        inventory.reconcile();
+        assertThat(stock(hot)).isEqualTo(7);
+        try (Stream<Path> files = Files.list(kept)) {
+            for (Path p : files.toList()) Files.move(p, journal.resolve(p.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        tx.executeWithoutResult(s -> inventory.reserve(line(hot, "HOT", 2)));
+        var restarted = open("HOT");
+
+        assertThat(stock(hot)).isEqualTo(5);
+        assertThat(restarted.available(hot)).hasValue(5);
+    }
+
+    @Test
+    void takesAreJournaledOnlyOnceTheirTransactionCommits() throws Exception {
+        long hot = product("HOT", 10);
+        var inventory = open("HOT");
+
+        tx.executeWithoutResult(s -> {
+            inventory.reserve(line(hot, "HOT", 3));
+            assertThat(inventory.available(hot)).hasValue(7);
+            assertThat(journaled()).isEmpty();
+            s.setRollbackOnly();
+        });
+        assertThat(inventory.available(hot)).hasValue(10);
+        assertThat(journaled()).isEmpty();
+
+        tx.executeWithoutResult(s -> inventory.reserve(line(hot, "HOT", 3)));
+        assertThat(journaled()).hasSize(1);
+    }
+
+    @Test
+    void aRecordCutShortByACrashIsSkippedOnRecovery() throws Exception {
+        long hot = product("HOT", 10);
+        var inventory = open("HOT");
+        tx.executeWithoutResult(s -> inventory.reserve(line(hot, "HOT", 3)));
+        Path newest;
+        try (Stream<Path> files = Files.list(journal)) {
+            newest = files.max(Comparator.naturalOrder()).orElseThrow();
+        }
+        Files.writeString(newest, "2 " + hot + " -", StandardOpenOption.APPEND);
+
+        var restarted = open("HOT");
+
+        assertThat(stock(hot)).isEqualTo(7);
+        assertThat(restarted.available(hot)).hasValue(7);
+    }
+
+    @Test
+    void aSecondInstanceIsRefusedWhileTheFirstHoldsTheLease() throws Exception {
+        product("HOT", 10);
+        var first = openOn("node-a", "HOT");
+
+        assertThatThrownBy(() -> openOn("node-b", "HOT"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("held by node-a");
+
+        first.shutdown();
+        assertThat(openOn("node-b", "HOT").available(products.findBySku("HOT").orElseThrow().getId())).hasValue(10);
+    }
+
+    @Test
+    void aStockEditMovesTheCounterByWhatItChanged() throws Exception {
+        long hot = product("HOT", 10);
+        var inventory = open("HOT");
+        tx.executeWithoutResult(s -> inventory.reserve(line(hot, "HOT", 3)));
+
+        // the edit sees 10 in the table, the journal still holds the take of 3
+        jdbc.update("update products set stock = 25 where id = ?", hot);
+        inventory.onStockEdited(new StockEditedEvent(hot, 10, 25));
+        assertThat(inventory.available(hot)).hasValue(22);
+
+        inventory.reconcile();
+        assertThat(stock(hot)).isEqualTo(22);
+
+        inventory.onStockEdited(new StockEditedEvent(hot, 22, 0));
+        assertThat(inventory.available(hot)).hasValue(0);
+    }
+
+    private List<String> journaled() {
+        try (Stream<Path> files = Files.list(journal)) {
+            var lines = new ArrayList<String>();
+            for (Path p : files.toList()) lines.addAll(Files.readAllLines(p));
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Reservations of one unit of a single product from {@value #THREADS} threads, each in its own transaction. */
+    @Test
+    @Tag("benchmark")
+    void benchmarkHotProductReservations() throws Exception {
+        int perThread = 100;
+        long viaDatabase = product("DB", THREADS * perThread);
+        long viaMemory = product("MEM", THREADS * perThread);
+        var database = new DatabaseInventory(jdbc, events);
+        var hot = open("MEM");
+
+        double dbRate = run(perThread, () -> tx.executeWithoutResult(s -> database.reserve(line(viaDatabase, "DB", 1))));
+        double hotRate = run(perThread, () -> tx.executeWithoutResult(s -> hot.reserve(line(viaMemory, "MEM", 1))));
+        hot.reconcile();
+
+        assertThat(stock(viaDatabase)).isZero();
+        assertThat(stock(viaMemory)).isZero();
+        log.info("hot product, {} threads: database {} reservations/s, hot-sku {} reservations/s",
+                THREADS, String.format("%.0f", dbRate), String.format("%.0f", hotRate));
+    }
+
+    private static double run(int perThread, Runnable reservation) throws Exception {
+        var pool = Executors.newFixedThreadPool(THREADS);
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) reservation.run();
+                return null;
+            }));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (var f : futures) f.get(120, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - began) / 1e9;
+        pool.shutdown();
+        return THREADS * perThread / seconds;
+    }
+}
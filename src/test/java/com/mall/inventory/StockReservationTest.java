@@ -0,0 +1,196 @@
+package com.mall.inventory;
+
+import com.mall.cart.Cart;
+import com.mall.cart.CartItemRepository;
+import com.mall.cart.CartItemWriter;
+import com.mall.cart.CartPricer;
+import com.mall.cart.CartRepository;
+import com.mall.cart.JpaCartStore;
+import com.mall.order.Order;
+import com.mall.order.OrderItem;
+import com.mall.order.OrderItemRepository;
+import com.mall.order.OrderRepository;
+import com.mall.order.OrderService;
+import com.mall.order.OrderStatus;
+import com.mall.order.dto.CheckoutRequest;
+import com.mall.order.dto.UpdateStatusRequest;
+import com.mall.product.Product;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({OrderService.class, DatabaseInventory.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockReservationTest {
+    private static final int THREADS = 8;
+
+    @Autowired OrderService orders;
+    @Autowired ProductCatalogCache catalog;
+    @Autowired ProductRepository products;
+    @Autowired CartRepository carts;
+    @Autowired CartItemRepository cartItems;
+    @Autowired OrderRepository orderRepo;
+    @Autowired OrderItemRepository orderItems;
+    @Autowired JdbcTemplate jdbc;
+
+    @AfterEach
+    void tearDown() {
+        orderItems.deleteAllInBatch();
+        orderRepo.deleteAllInBatch();
+        cartItems.deleteAllInBatch();
+        carts.deleteAllInBatch();
+        products.deleteAllInBatch();
+    }
+
+    private long product(String sku, int stock) {
+        return products.save(Product.builder().sku(sku).name(sku).price(10.0).stock(stock).active(true).build()).getId();
+    }
+
+    private void cart(String email, long productId, int quantity) {
+        long cartId = carts.save(Cart.builder().userEmail(email).build()).getId();
+        jdbc.update("insert into cart_items (cart_id, product_id, sku, name, price, quantity, line_total, version) " +
+                    "select ?, id, sku, name, price, ?, price * ?, 0 from products where id = ?", cartId, quantity, quantity, productId);
+    }
+
+    private int stock(long productId) {
+        return jdbc.queryForObject("select stock from products where id = ?", Integer.class, productId);
+    }
+
+    @Test
+    void aShortLineFailsTheWholeCheckoutAndCancellingGivesStockBack() {
+        long lamp = product("LAMP", 5), desk = product("DESK", 5);
+        cart("a@mall.local", lamp, 2);
+        jdbc.update("insert into cart_items (cart_id, product_id, sku, name, price, quantity, line_total, version) " +
+                    "select c.id, p.id, p.sku, p.name, p.price, 3, p.price * 3, 0 from carts c, products p where c.user_email = 'a@mall.local' and p.id = ?", desk);
+        // stock sold behind the cache's back: pricing still sees 5, the reservation finds 1
+        catalog.get(desk);
+        jdbc.update("update products set stock = 1 where id = ?", desk);
+
+        assertThatThrownBy(() -> orders.checkout("a@mall.local", new CheckoutRequest("Somewhere")))
+                .hasMessage("Not enough stock for: DESK");
+        assertThat(stock(lamp)).isEqualTo(5);
+        assertThat(cartItems.count()).isEqualTo(2);
+
+        jdbc.update("delete from cart_items where product_id = ?", desk);
+        var tagged = catalog.get(lamp).orElseThrow().updatedAt();
+        var order = orders.checkout("a@mall.local", new CheckoutRequest("Somewhere"));
+        assertThat(stock(lamp)).isEqualTo(3);
+        assertThat(catalog.get(lamp).orElseThrow().stock()).isEqualTo(3);
+        // product ETags are built from updatedAt, so it has to move with the stock
+        assertThat(catalog.get(lamp).orElseThrow().updatedAt()).isAfter(tagged);
+
+        orders.updateStatus(order.id(), new UpdateStatusRequest(OrderStatus.CANCELLED));
+        assertThat(stock(lamp)).isEqualTo(5);
+        assertThat(catalog.get(lamp).orElseThrow().stock()).isEqualTo(5);
+    }
+
+    @Test
+    void cancellingAnOrderPlacedBeforeReservationsLeavesStockAlone() {
+        long lamp = product("LAMP", 5);
+        var legacy = orderRepo.save(Order.builder().userEmail("old@mall.local").status(OrderStatus.PENDING).total(20.0).build());
+        orderItems.save(OrderItem.builder().order(legacy).productId(lamp).sku("LAMP").name("LAMP")
+                .price(10.0).quantity(2).lineTotal(20.0).build());
+
+        orders.updateStatus(legacy.getId(), new UpdateStatusRequest(OrderStatus.CANCELLED));
+
+        assertThat(stock(lamp)).isEqualTo(5);
+    }
+
+    @Test
+    void cancellingTheSameOrderTwiceAtOnceGivesStockBackOnce() throws Exception {
+        long lamp = product("LAMP", 5);
+        cart("twice@mall.local", lamp, 2);
+        var order = orders.checkout("twice@mall.local", new CheckoutRequest("Somewhere"));
+
+        var start = new CountDownLatch(1);
+        try (var pool = Executors.newFixedThreadPool(THREADS)) {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return orders.updateStatus(order.id(), new UpdateStatusRequest(OrderStatus.CANCELLED));
+                }));
+            }
+            start.countDown();
+            for (var f : futures) f.get(30, TimeUnit.SECONDS);
+        }
+
+        assertThat(stock(lamp)).isEqualTo(5);
+    }
+
+    /** Many buyers race for a hot product; exactly its stock is sold. */
+    @Test
+    void aHotProductIsNeverOversold() throws Exception {
+        race(20, 48);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void hotProductCheckoutThroughput() throws Exception {
+        int buyers = 240;
+        double seconds = race(100, buyers);
+        log.info("hot product: {} checkouts by {} threads, {} checkouts/s", buyers, THREADS, String.format("%.0f", buyers / seconds));
+    }
+
+    /** Races {@code buyers} checkouts for {@code stock} units, checks none was oversold, and returns how long it took. */
+    private double race(int stock, int buyers) throws Exception {
+        long hot = product("HOT", stock);
+        for (int i = 0; i < buyers; i++) cart("buyer" + i + "@mall.local", hot, 1);
+
+        var sold = new AtomicInteger();
+        var refused = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var next = new AtomicInteger();
+        long began;
+        try (var pool = Executors.newFixedThreadPool(THREADS)) {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = next.getAndIncrement(); i < buyers; i = next.getAndIncrement()) {
+                        try {
+                            orders.checkout("buyer" + i + "@mall.local", new CheckoutRequest("Somewhere"));
+                            sold.incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            // refused by the reservation, or earlier by pricing once the cache has seen the stock run out
+                            assertThat(e.getMessage()).isIn("Not enough stock for: HOT", "Some items can no longer be ordered: HOT (OUT_OF_STOCK)");
+                            refused.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            began = System.nanoTime();
+            start.countDown();
+            for (var f : futures) f.get(120, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+
+        assertThat(sold.get()).isEqualTo(stock);
+        assertThat(refused.get()).isEqualTo(buyers - stock);
+        assertThat(stock(hot)).isZero();
+        assertThat(orderRepo.count()).isEqualTo(stock);
+        return seconds;
+    }
+}
@@ -0,0 +1,120 @@
+package com.mall.order;
+
+import com.mall.cart.Cart;
+import com.mall.cart.CartItemWriter;
+import com.mall.cart.CartPricer;
+import com.mall.cart.CartRepository;
+import com.mall.cart.JpaCartStore;
+import com.mall.inventory.DatabaseInventory;
+import com.mall.order.dto.CheckoutRequest;
+import com.mall.product.Product;
+import com.mall.product.ProductCatalogCache;
+import com.mall.product.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks out carts of growing size. The statement count per checkout is asserted on every run; the
+ * timed rounds are tagged {@code benchmark} and run with {@code -Pbenchmark}, and their latencies
+ * against in-memory H2 understate what round trips cost on MySQL.
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderService.class, DatabaseInventory.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutBenchmarkTest {
+    private static final int[] SIZES = {10, 60, 200};
+    private static final int ROUNDS = 20;
+
+    @Autowired OrderService orders;
+    @Autowired CartRepository carts;
+    @Autowired ProductRepository products;
+    @Autowired JdbcTemplate jdbc;
+    @Autowired EntityManagerFactory emf;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void seed() {
+        ids = products.saveAll(IntStream.range(0, SIZES[SIZES.length - 1])
+                .mapToObj(i -> Product.builder().sku("SKU-" + i).name("Product " + i).price(1.0 + i).stock(1_000_000).active(true).build())
+                .toList()).stream().map(Product::getId).toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("delete from order_items");
+        jdbc.update("delete from orders");
+        jdbc.update("delete from cart_items");
+        jdbc.update("delete from carts");
+        products.deleteAllInBatch();
+    }
+
+    @Test
+    void checkoutStatementsDoNotGrowWithCartSize() {
+        var stats = emf.unwrap(SessionFactory.class).getStatistics();
+
+        for (int size : SIZES) {
+            String email = "stmts-" + size + "@mall.local";
+            fill(email, ids.subList(0, size));
+            stats.clear();
+            var order = orders.checkout(email, new CheckoutRequest("Somewhere"));
+
+            assertThat(order.items()).hasSize(size);
+            assertThat(stats.getPrepareStatementCount()).isLessThan(20);
+        }
+        assertThat(jdbc.queryForObject("select count(*) from cart_items", Integer.class)).isZero();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void checkoutLatencyByCartSize() {
+        var stats = emf.unwrap(SessionFactory.class).getStatistics();
+
+        for (int size : SIZES) {
+            var lines = ids.subList(0, size);
+            long statements = 0, nanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                String email = "bench-" + size + "-" + round + "@mall.local";
+                fill(email, lines);
+                stats.clear();
+                long start = System.nanoTime();
+                var order = orders.checkout(email, new CheckoutRequest("Somewhere"));
+                nanos += System.nanoTime() - start;
+                statements += stats.getPrepareStatementCount();
+                assertThat(order.items()).hasSize(size);
+            }
+            log.info("checkout of {} lines: {} ms, {} statements",
+                    size, String.format("%.2f", nanos / 1e6 / ROUNDS), statements / ROUNDS);
+        }
+    }
+
+    private void fill(String email, List<Long> productIds) {
+        long cartId = carts.save(Cart.builder().userEmail(email).build()).getId();
+        jdbc.batchUpdate("insert into cart_items (cart_id, product_id, sku, name, price, quantity, line_total, version, created_at, updated_at) " +
+                         "select ?, id, sku, name, price, 1, price, 0, current_timestamp, current_timestamp from products where id = ?",
+                productIds, 500, (ps, id) -> {
+                    ps.setLong(1, cartId);
+                    ps.setLong(2, id);
+                });
+    }
+}
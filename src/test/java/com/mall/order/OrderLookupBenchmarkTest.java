@@ -0,0 +1,97 @@
+package com.mall.order;
+
+import com.mall.cart.CartItemWriter;
+import com.mall.cart.CartPricer;
+import com.mall.cart.JpaCartStore;
+import com.mall.inventory.DatabaseInventory;
+import com.mall.product.ProductCatalogCache;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Looks up single orders as staff. Every run asserts one query by primary key per lookup; the timed
+ * run over a growing table is tagged {@code benchmark} and runs with {@code -Pbenchmark}.
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderService.class, DatabaseInventory.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+class OrderLookupBenchmarkTest {
+    private static final int[] SIZES = {100, 1_000, 10_000};
+    private static final int LOOKUPS = 200;
+
+    @Autowired OrderService orders;
+    @Autowired TestEntityManager em;
+
+    @Test
+    void staffLookupIsOneQuery() {
+        var stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        var ids = new ArrayList<Long>();
+        grow(ids, SIZES[0]);
+        stats.clear();
+        for (int i = 0; i < 20; i++) {
+            em.clear();
+            assertThat(orders.getOne(ids.get(i * 7919 % ids.size()), "admin@mall.local", true).items()).hasSize(3);
+        }
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(20);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void staffLookupByTableSize() {
+        var stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        var ids = new ArrayList<Long>();
+        for (int size : SIZES) {
+            grow(ids, size);
+            stats.clear();
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                em.clear();
+                var order = orders.getOne(ids.get(i * 7919 % ids.size()), "admin@mall.local", true);
+                assertThat(order.items()).hasSize(3);
+            }
+            long nanos = System.nanoTime() - start;
+            long statements = stats.getPrepareStatementCount();
+
+            // what the lookup used to do: list every order and pick one
+            em.clear();
+            long scanStart = System.nanoTime();
+            long target = ids.get(0);
+            assertThat(orders.listByStatus(null).stream().filter(o -> o.id() == target).findFirst()).isPresent();
+            long scanNanos = System.nanoTime() - scanStart;
+
+            log.info("staff order lookup with {} orders: {} ms, {} statement (listing all: {} ms)",
+                    size, String.format("%.3f", nanos / 1e6 / LOOKUPS), statements / LOOKUPS, String.format("%.2f", scanNanos / 1e6));
+        }
+    }
+
+    private void grow(List<Long> ids, int size) {
+        for (int i = ids.size(); i < size; i++) {
+            var order = em.persist(Order.builder().userEmail("buyer-" + i % 50 + "@mall.local").status(OrderStatus.PENDING).total(3.0).build());
+            for (int line = 1; line <= 3; line++) {
+                em.persist(OrderItem.builder().order(order).productId((long) line).sku("SKU-" + line).name("Item " + line)
+                        .price(1.0).quantity(1).lineTotal(1.0).build());
+            }
+            ids.add(order.getId());
+            if (i % 500 == 499) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package com.mall.order;
+
+import com.mall.cart.CartItemWriter;
+import com.mall.cart.CartPricer;
+import com.mall.cart.JpaCartStore;
+import com.mall.inventory.DatabaseInventory;
+import com.mall.order.dto.OrderDto;
+import com.mall.product.ProductCatalogCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Order listings load the orders and then all their items, two statements whatever the number of orders. */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderService.class, DatabaseInventory.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class, ProductCatalogCache.class})
+class OrderQueryCountTest {
+    private static final String ALICE = "alice@listing.local", BOB = "bob@listing.local";
+
+    @Autowired TestEntityManager em;
+    @Autowired OrderService orders;
+
+    private Statistics stats;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 30; i++) {
+            var order = em.persist(Order.builder()
+                    .userEmail(i % 2 == 0 ? ALICE : BOB)
+                    .status(i % 3 == 0 ? OrderStatus.CONFIRMED : OrderStatus.PENDING)
+                    .total(0.0)
+                    .build());
+            for (int line = 1; line <= 1 + i % 3; line++) {
+                em.persist(OrderItem.builder().order(order).productId((long) line).sku("SKU-" + line).name("Item " + line)
+                        .price(1.0).quantity(i + line).lineTotal((double) i + line).build());
+            }
+        }
+        em.flush();
+        stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private List<OrderDto> listed(Supplier<List<OrderDto>> request, long expectedStatements) {
+        em.clear();
+        stats.clear();
+        var listed = request.get();
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(expectedStatements);
+        return listed;
+    }
+
+    /** Leaves out orders other test classes committed. */
+    private static List<OrderDto> seeded(List<OrderDto> listed) {
+        return listed.stream().filter(o -> o.userEmail().endsWith("@listing.local")).toList();
+    }
+
+    @Test
+    void listingsAreTwoStatementsWithEachOrdersOwnItems() {
+        var mine = listed(() -> orders.listMy(ALICE), 2);
+        var pending = seeded(listed(() -> orders.listByStatus(OrderStatus.PENDING), 2));
+        var all = seeded(listed(() -> orders.listByStatus(null), 2));
+
+        assertThat(mine).hasSize(15).allSatisfy(o -> assertThat(o.userEmail()).isEqualTo(ALICE));
+        assertThat(pending).hasSize(20);
+        assertThat(all).hasSize(30).allSatisfy(o -> {
+            var one = orders.getOne(o.id(), o.userEmail(), false);
+            assertThat(o.items()).isEqualTo(one.items()).isNotEmpty();
+        });
+    }
+
+    @Test
+    void oneOrderIsOneStatementForStaffAndItsOwner() {
+        long id = orders.listMy(BOB).get(0).id();
+        em.clear();
+        stats.clear();
+
+        var asStaff = orders.getOne(id, "admin@mall.local", true);
+        em.clear();
+        var asOwner = orders.getOne(id, BOB, false);
+
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(asStaff).isEqualTo(asOwner);
+        assertThat(asStaff.items()).isNotEmpty();
+        assertThatThrownBy(() -> orders.getOne(id, ALICE, false)).hasMessage("Access denied");
+    }
+
+    @Test
+    void noOrdersIsOneStatement() {
+        assertThat(listed(() -> orders.listMy("nobody@mall.local"), 1)).isEmpty();
+    }
+}
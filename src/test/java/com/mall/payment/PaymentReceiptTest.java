@@ -0,0 +1,112 @@
+package com.mall.payment;
+
+import com.mall.order.Order;
+import com.mall.order.OrderRepository;
+import com.mall.order.OrderStatus;
+import com.mall.payment.dto.UploadPaymentRequest;
+import com.mall.service.ImageDerivativeService;
+import com.mall.storage.ContentStore;
+import com.mall.storage.LocalStorageBackend;
+import com.mall.storage.OpenFileCache;
+import com.mall.storage.StoredBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "payments.receipt-upload.ttl=PT0S"
+})
+@Import({PaymentService.class, ReceiptUploadSweeper.class, ContentStore.class, ImageDerivativeService.class,
+        OpenFileCache.class, LocalStorageBackend.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentReceiptTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.directory", uploads::toString);
+    }
+
+    @Autowired PaymentService service;
+    @Autowired ReceiptUploadSweeper sweeper;
+    @Autowired PaymentRepository payments;
+    @Autowired ReceiptUploadRepository receipts;
+    @Autowired OrderRepository orders;
+    @Autowired StoredBlobRepository blobs;
+
+    @AfterEach
+    void tearDown() {
+        payments.deleteAllInBatch();
+        receipts.deleteAllInBatch();
+        blobs.deleteAllInBatch();
+        orders.findAll().stream().filter(o -> o.getUserEmail().endsWith("@receipt.test")).forEach(orders::delete);
+    }
+
+    private static MockMultipartFile receipt(String content) {
+        return new MockMultipartFile("file", "receipt.pdf", "application/pdf", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Long orderFor(String email) {
+        return orders.save(Order.builder().userEmail(email).status(OrderStatus.PENDING).total(40.0).build()).getId();
+    }
+
+    private static UploadPaymentRequest payment(Long orderId, String receiptUrl) {
+        return new UploadPaymentRequest(orderId, "CASH_ON_DELIVERY", 40.0, null, receiptUrl,
+                null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    private int refCount(String url) {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        return blobs.findById(name.substring(0, name.indexOf('.'))).orElseThrow().getRefCount();
+    }
+
+    @Test
+    void aPaymentTakesOverThePayersOwnReceipt() {
+        String url = service.uploadReceipt("ann@receipt.test", receipt("ann's receipt"));
+
+        var paid = service.upload("ann@receipt.test", payment(orderFor("ann@receipt.test"), url));
+
+        assertThat(paid.receiptUrl()).isEqualTo(url);
+        assertThat(refCount(url)).isEqualTo(1);
+        assertThat(receipts.findAll()).isEmpty();
+    }
+
+    @Test
+    void aReceiptSomeoneElseUploadedIsRefused() {
+        String url = service.uploadReceipt("ann@receipt.test", receipt("ann's receipt"));
+        Long bobsOrder = orderFor("bob@receipt.test");
+
+        assertThatThrownBy(() -> service.upload("bob@receipt.test", payment(bobsOrder, url)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("uploaded by the paying user");
+        assertThatThrownBy(() -> service.upload("bob@receipt.test", payment(bobsOrder, "/uploads/cas/00/00/" + "0".repeat(64) + ".pdf")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(refCount(url)).isEqualTo(1);
+        assertThat(payments.count()).isZero();
+    }
+
+    @Test
+    void aReceiptNeverAttachedIsReleased() {
+        String url = service.uploadReceipt("ann@receipt.test", receipt("abandoned"));
+
+        assertThat(sweeper.sweep()).isEqualTo(1);
+        assertThat(refCount(url)).isZero();
+        assertThat(receipts.findAll()).isEmpty();
+    }
+}
@@ -0,0 +1,111 @@
+package com.mall.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ProductCatalogCacheTest {
+
+    private static Product product(long id, String sku, double price) {
+        return Product.builder().id(id).sku(sku).name("P" + id).price(price).stock(1).active(true).build();
+    }
+
+    @Test
+    void readsThroughOnceThenServesFromSnapshot() {
+        var repo = mock(ProductRepository.class);
+        when(repo.findViewById(1L)).thenReturn(Optional.of(ProductView.of(product(1, "A", 5))));
+        var cache = new ProductCatalogCache(repo, 10);
+
+        assertThat(cache.get(1L)).map(ProductView::price).contains(5.0);
+        assertThat(cache.get(1L)).isPresent();
+        assertThat(cache.getBySku("A")).isPresent();
+
+        verify(repo, times(1)).findViewById(1L);
+        verify(repo, never()).findViewBySku(any());
+    }
+
+    @Test
+    void committedChangesRefreshAndRemoveEntries() {
+        var repo = mock(ProductRepository.class);
+        when(repo.findViewById(1L)).thenReturn(Optional.of(ProductView.of(product(1, "A", 5))));
+        var cache = new ProductCatalogCache(repo, 10);
+        cache.get(1L);
+
+        cache.onProductChanged(new ProductChangedEvent(1L, product(1, "B", 7)));
+        assertThat(cache.get(1L)).map(ProductView::price).contains(7.0);
+        when(repo.findViewBySku("A")).thenReturn(Optional.empty());
+        assertThat(cache.getBySku("A")).isEmpty();
+
+        cache.onProductChanged(new ProductChangedEvent(1L, null));
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void stockBatchPatchesCachedEntriesInOnePublication() {
+        var repo = mock(ProductRepository.class);
+        when(repo.findViewById(anyLong())).thenAnswer(inv -> Optional.of(ProductView.of(product(inv.getArgument(0), "S" + inv.getArgument(0), 1))));
+        var cache = new ProductCatalogCache(repo, 10);
+        cache.get(1L);
+        cache.get(2L);
+        var registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        double before = registry.get("catalog.cache.rebuilds").functionCounter().count();
+
+        var at = Instant.parse("2026-01-01T00:00:00Z");
+        cache.onStockChanged(new StockChangedEvent(List.of(
+                new StockChangedEvent.Level(1L, 40, at), new StockChangedEvent.Level(2L, 0, at), new StockChangedEvent.Level(3L, 9, at))));
+
+        assertThat(cache.get(1L)).map(ProductView::stock).contains(40);
+        assertThat(cache.get(2L)).map(ProductView::updatedAt).contains(at);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(registry.get("catalog.cache.rebuilds").functionCounter().count()).isEqualTo(before + 1);
+        verify(repo, times(2)).findViewById(anyLong());
+    }
+
+    @Test
+    void aFillIsDiscardedOnlyWhenItsOwnProductChangedMeanwhile() {
+        var repo = mock(ProductRepository.class);
+        var cache = new ProductCatalogCache(repo, 10);
+        var at = Instant.now();
+        when(repo.findViewById(1L)).thenAnswer(inv -> {
+            cache.onStockChanged(new StockChangedEvent(List.of(new StockChangedEvent.Level(2L, 5, at))));
+            return Optional.of(ProductView.of(product(1, "A", 5)));
+        });
+        when(repo.findViewById(2L)).thenAnswer(inv -> {
+            cache.onStockChanged(new StockChangedEvent(List.of(new StockChangedEvent.Level(2L, 5, at))));
+            return Optional.of(ProductView.of(product(2, "B", 5)));
+        });
+
+        cache.get(1L);
+        cache.get(2L);
+
+        assertThat(cache.size()).isEqualTo(1);
+        clearInvocations(repo);
+        cache.get(1L);
+        verify(repo, never()).findViewById(1L);
+    }
+
+    @Test
+    void evictsColdEntriesPastTheBound() {
+        var repo = mock(ProductRepository.class);
+        when(repo.findViewById(anyLong())).thenAnswer(inv -> Optional.of(ProductView.of(product(inv.getArgument(0), "S" + inv.getArgument(0), 1))));
+        var cache = new ProductCatalogCache(repo, 10);
+
+        for (long id = 0; id < 10; id++) cache.get(id);
+        cache.get(0L); // keep the first entry hot
+        cache.get(10L);
+
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+        clearInvocations(repo);
+        cache.get(0L);
+        verify(repo, never()).findViewById(0L);
+    }
+}
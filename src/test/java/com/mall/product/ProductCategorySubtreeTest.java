@@ -0,0 +1,97 @@
+package com.mall.product;
+
+import com.mall.category.Category;
+import com.mall.category.CategoryRepository;
+import com.mall.category.CategoryService;
+import com.mall.category.CategoryTree;
+import com.mall.common.CatalogVersions;
+import jakarta.persistence.FlushModeType;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Subtree product listing: nested-set range vs. walking parent pointers. The timed run over a
+ * 10k-node tree runs with {@code -Pbenchmark}.
+ */
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CategoryService.class, CategoryTree.class, CatalogVersions.class})
+class ProductCategorySubtreeTest {
+
+    @Autowired CategoryRepository categories;
+    @Autowired CategoryService categoryService;
+    @Autowired ProductRepository products;
+    @Autowired CatalogVersions versions;
+    @Autowired TestEntityManager em;
+
+    @Test
+    void nestedSetMatchesRecursiveWalk() {
+        compare(500, 500);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void subtreeListingOn10kNodes() {
+        long[] nanos = compare(10_000, 5_000);
+        log.info("10k-node subtree listing: nested set {} ms, recursive walk {} ms",
+                nanos[0] / 1_000_000, nanos[1] / 1_000_000);
+    }
+
+    /** Counts the products under a few subtrees both ways and returns the time each way took. */
+    private long[] compare(int nodeCount, int productCount) {
+        var rnd = new Random(7);
+        var nodes = new ArrayList<Category>();
+        for (int i = 0; i < nodeCount; i++) {
+            Long parent = i < 10 ? null : nodes.get(rnd.nextInt(i)).getId();
+            nodes.add(categories.save(Category.builder().name("c" + i).slug("c" + i).parentId(parent).active(true).build()));
+        }
+        categoryService.numberExistingTree();
+        var tree = new CategoryTree(categories, versions);
+
+        var batch = new ArrayList<Product>();
+        for (int i = 0; i < productCount; i++) {
+            batch.add(Product.builder().sku("S" + i).name("p" + i).price(1.0).stock(1).active(true)
+                    .categoryId(nodes.get(rnd.nextInt(nodes.size())).getId()).build());
+        }
+        products.saveAll(batch);
+        em.flush();
+        em.clear();
+        // read-only from here on: skip the dirty check Hibernate would run before every walk query
+        em.getEntityManager().setFlushMode(FlushModeType.COMMIT);
+
+        long nestedNanos = 0, walkNanos = 0;
+        for (int r = 0; r < 3; r++) {
+            var root = categories.findById(nodes.get(r).getId()).orElseThrow();
+
+            long t = System.nanoTime();
+            long nested = products.count(ProductSpecs.inSubtree(tree.byId(root.getId()).orElseThrow()));
+            nestedNanos += System.nanoTime() - t;
+
+            t = System.nanoTime();
+            var ids = new ArrayList<Long>();
+            walk(root.getId(), ids);
+            long walked = products.count((p, q, cb) -> p.get("categoryId").in(ids));
+            walkNanos += System.nanoTime() - t;
+
+            assertThat(nested).isEqualTo(walked);
+            assertThat(root.getRgt() - root.getLft() + 1).isEqualTo(ids.size() * 2);
+        }
+        return new long[]{nestedNanos, walkNanos};
+    }
+
+    private void walk(Long id, List<Long> out) {
+        out.add(id);
+        for (var child : categories.findByParentId(id)) walk(child.getId(), out);
+    }
+}
@@ -0,0 +1,89 @@
+package com.mall.product;
+
+import com.mall.category.CategoryTree;
+import com.mall.common.CatalogVersions;
+import com.mall.service.ImageDerivativeService;
+import com.mall.storage.ContentStore;
+import com.mall.storage.LocalStorageBackend;
+import com.mall.storage.OpenFileCache;
+import com.mall.product.search.ProductSearchIndex;
+import com.mall.product.search.ProductSuggester;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({ProductService.class, ImageDerivativeService.class, ContentStore.class, OpenFileCache.class, LocalStorageBackend.class, ProductCatalogCache.class, CategoryTree.class, CatalogVersions.class, ProductSearchIndex.class, ProductSuggester.class})
+class ProductPagingTest {
+
+    @Autowired ProductRepository repo;
+    @Autowired ProductService service;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 25; i++) {
+            repo.save(Product.builder()
+                    .sku("SKU-" + i)
+                    .name((i % 2 == 0 ? "Lamp " : "Chair ") + i)
+                    .price((double) (i % 5))
+                    .stock(10)
+                    .active(i % 3 != 0)
+                    .build());
+        }
+    }
+
+    @Test
+    void walksEveryRowOnceInPriceOrder() {
+        List<ProductView> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            var page = service.page(new ProductQuery(null, null, null, null, null, null, ProductSort.PRICE, cursor, 7));
+            seen.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).hasSize(25);
+        assertThat(seen).extracting(ProductView::id).doesNotHaveDuplicates();
+        assertThat(seen).extracting(ProductView::price).isSorted();
+    }
+
+    @Test
+    void appliesFilters() {
+        var page = service.page(new ProductQuery(true, 1.0, 3.0, null, "Lamp", null, ProductSort.ID, null, 100));
+
+        assertThat(page.nextCursor()).isNull();
+        assertThat(page.items()).isNotEmpty().allSatisfy(p -> {
+            assertThat(p.active()).isTrue();
+            assertThat(p.price()).isBetween(1.0, 3.0);
+            assertThat(p.name()).startsWith("Lamp");
+        });
+    }
+
+    @Test
+    void countsEveryPageNotJustTheFirst() {
+        var lowStock = repo.findAll().subList(0, 3);
+        lowStock.forEach(p -> p.setStock(2));
+        repo.saveAll(lowStock);
+
+        assertThat(service.count(new ProductQuery(null, null, null, null, null, null, null, null, 0))).isEqualTo(25);
+        assertThat(service.count(new ProductQuery(null, null, null, 9, null, null, null, null, 0))).isEqualTo(3);
+        var filters = new ProductQuery(true, 1.0, 3.0, null, "Lamp", null, ProductSort.ID, null, 100);
+        assertThat(service.count(filters)).isEqualTo(service.page(filters).items().size());
+    }
+
+    @Test
+    void rejectsCursorFromAnotherSort() {
+        var first = service.page(new ProductQuery(null, null, null, null, null, null, ProductSort.ID, null, 5));
+
+        assertThatThrownBy(() -> service.page(new ProductQuery(null, null, null, null, null, null, ProductSort.PRICE, first.nextCursor(), 5)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
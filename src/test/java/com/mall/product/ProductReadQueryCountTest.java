@@ -0,0 +1,105 @@
+package com.mall.product;
+
+import com.mall.cart.CartItemWriter;
+import com.mall.cart.CartPricer;
+import com.mall.cart.CartService;
+import com.mall.cart.JpaCartStore;
+import com.mall.cart.dto.AddItemRequest;
+import com.mall.category.CategoryTree;
+import com.mall.common.CatalogVersions;
+import com.mall.service.ImageDerivativeService;
+import com.mall.storage.ContentStore;
+import com.mall.storage.LocalStorageBackend;
+import com.mall.storage.OpenFileCache;
+import com.mall.product.search.ProductSearchIndex;
+import com.mall.product.search.ProductSuggester;
+import com.mall.review.Review;
+import com.mall.user.Role;
+import com.mall.user.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Product read paths must select projections: one statement, no Product entities, no reviews. */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ProductService.class, ImageDerivativeService.class, ContentStore.class, OpenFileCache.class, LocalStorageBackend.class, ProductCatalogCache.class, CategoryTree.class, CatalogVersions.class, CartService.class, JpaCartStore.class, CartItemWriter.class, CartPricer.class})
+class ProductReadQueryCountTest {
+
+    @Autowired TestEntityManager em;
+    @Autowired ProductService products;
+    @Autowired ProductRepository repo;
+    @Autowired CartService carts;
+
+    // mocked so their startup builds cannot run concurrently with the measured calls
+    @MockitoBean ProductSearchIndex searchIndex;
+    @MockitoBean ProductSuggester suggester;
+
+    private Statistics stats;
+    private Long productId;
+
+    @BeforeEach
+    void seed() {
+        var user = em.persist(User.builder().email("u@mall.local").password("x").role(Role.CUSTOMER).active(true).build());
+        var product = em.persist(Product.builder().sku("LAMP").name("Desk Lamp").description("Bright").price(20.0).stock(5).active(true).build());
+        for (int i = 0; i < 3; i++) {
+            em.persist(Review.builder().product(product).user(user).userEmail(user.getEmail()).rating(5).comment("ok").build());
+        }
+        productId = product.getId();
+        em.flush();
+        em.clear();
+        stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+    }
+
+    private long productLoads() {
+        return stats.getEntityStatistics(Product.class.getName()).getLoadCount();
+    }
+
+    @Test
+    void listingIsOneProjectionQuery() {
+        var page = products.page(new ProductQuery(null, null, null, null, null, null, ProductSort.PRICE, null, 20));
+
+        assertThat(page.items()).hasSize(1);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(stats.getEntityLoadCount()).isZero();
+        assertThat(stats.getCollectionLoadCount()).isZero();
+    }
+
+    @Test
+    void detailIsOneProjectionQueryThenCached() {
+        products.view(productId);
+        products.view(productId);
+
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(stats.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void searchIndexBuildLoadsNoEntities() {
+        var index = new ProductSearchIndex(repo);
+        index.rebuild();
+
+        assertThat(index.search("lamp", 0, 10).items()).hasSize(1);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(stats.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void cartPricingNeverLoadsProductEntities() {
+        carts.addItem("u@mall.local", new AddItemRequest(productId, 2));
+
+        assertThat(productLoads()).isZero();
+        assertThat(stats.getCollectionStatistics(Product.class.getName() + ".reviews").getLoadCount()).isZero();
+    }
+}
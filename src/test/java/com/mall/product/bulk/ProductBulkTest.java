@@ -0,0 +1,102 @@
+package com.mall.product.bulk;
+
+import com.mall.product.Product;
+import com.mall.product.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "catalog.import.batch-size=2"
+})
+@Import({ProductImportService.class, ProductExportService.class, JacksonAutoConfiguration.class})
+class ProductBulkTest {
+
+    @Autowired ProductImportService importer;
+    @Autowired ProductExportService exporter;
+    @Autowired ProductRepository products;
+    @Autowired TestEntityManager em;
+
+    private static ByteArrayInputStream body(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importsCsvInChunksAndReportsBadRows() throws Exception {
+        products.save(Product.builder().sku("OLD").name("Old").price(1.0).stock(1).active(true).build());
+
+        var report = importer.importCsv(body("""
+                sku,name,description,price,stock
+                A-1,Lamp,"Warm, bright
+                and \"\"dimmable\"\"\",10.5,3
+                A-2,Chair,,-1,2
+                A-3,Desk,,99,1
+                A-1,Lamp again,,1,1
+                OLD,Old renamed,,2,2
+                """), false);
+
+        assertThat(report.inserted()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(3);
+        assertThat(report.errors()).extracting(ImportReport.RowError::row).containsExactly(2L, 4L, 5L);
+        em.clear();
+        assertThat(products.findBySku("A-1")).get()
+                .extracting(Product::getDescription).isEqualTo("Warm, bright\nand \"dimmable\"");
+    }
+
+    @Test
+    void rejectsNonFinitePricesAndStopsAtAnUnterminatedQuote() throws Exception {
+        var report = importer.importNdjson(body("""
+                {"sku":"NF-1","name":"Lamp","price":"NaN","stock":1}
+                {"sku":"NF-2","name":"Desk","price":"Infinity","stock":1}
+                """), false);
+        assertThat(report.inserted()).isZero();
+        assertThat(report.errors()).extracting(ImportReport.RowError::message).containsOnly("Price must be a finite number");
+
+        assertThatThrownBy(() -> importer.importCsv(body("""
+                sku,name,description,price,stock
+                Q-1,Lamp,,1,1
+                Q-2,Desk,"never closed,2,2
+                Q-3,Chair,,3,3
+                """), false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unterminated quoted field in row 2");
+    }
+
+    @Test
+    void upsertsNdjsonAndExportsItBack() throws Exception {
+        products.save(Product.builder().sku("B-1").name("Before").price(1.0).stock(1).active(true).build());
+
+        var report = importer.importNdjson(body("""
+                {"sku":"B-1","name":"After","price":2.5,"stock":4}
+                {"sku":"B-2","name":"New","price":1,"stock":0,"active":false}
+                not json
+                """), true);
+
+        assertThat(report.updated()).isEqualTo(1);
+        assertThat(report.inserted()).isEqualTo(1);
+        assertThat(report.errors()).singleElement().extracting(ImportReport.RowError::message).isEqualTo("Malformed JSON");
+
+        var out = new ByteArrayOutputStream();
+        exporter.writeNdjson(out);
+        assertThat(out.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(2)
+                .anySatisfy(l -> assertThat(l).contains("\"name\":\"After\"").contains("\"price\":2.5"));
+
+        out.reset();
+        exporter.writeCsv(out);
+        var reimported = importer.importCsv(new ByteArrayInputStream(out.toByteArray()), true);
+        assertThat(reimported.updated()).isEqualTo(2);
+        assertThat(reimported.failed()).isZero();
+    }
+}
@@ -0,0 +1,107 @@
+package com.mall.product.search;
+
+import com.mall.product.Product;
+import com.mall.product.ProductChangedEvent;
+import com.mall.product.ProductRepository;
+import com.mall.product.ProductView;
+import com.mall.product.StockChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    private static Product product(long id, String sku, String name, String description) {
+        return Product.builder().id(id).sku(sku).name(name).description(description).price(1.0).stock(1).active(true).build();
+    }
+
+    @BeforeEach
+    void build() {
+        var repo = mock(ProductRepository.class);
+        when(repo.findViewsAfter(eq(0L), any(Limit.class))).thenReturn(List.of(
+                ProductView.of(product(1, "LMP-01", "Desk Lamp", "A small lamp for the café")),
+                ProductView.of(product(2, "LMP-02", "Floor Lamp", "Tall brass lamp")),
+                ProductView.of(product(3, "CHR-01", "Office Chair", "Comes with a desk lamp clamp"))));
+        index = new ProductSearchIndex(repo);
+        index.rebuild();
+    }
+
+    @Test
+    void requiresEveryTermAndRanksNameAboveDescription() {
+        var result = index.search("desk lamp", 0, 10);
+
+        assertThat(result.total()).isEqualTo(2);
+        assertThat(result.items()).extracting(SearchHit::id).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void foldsCaseAndDiacritics() {
+        assertThat(index.search("CAFE", 0, 10).items()).extracting(SearchHit::id).containsExactly(1L);
+        assertThat(index.search("lmp02", 0, 10).items()).extracting(SearchHit::id).containsExactly(2L);
+    }
+
+    @Test
+    void pagesThroughRankedResults() {
+        var second = index.search("lamp", 1, 2);
+
+        assertThat(second.total()).isEqualTo(3);
+        assertThat(second.items()).hasSize(1);
+    }
+
+    @Test
+    void followsProductWrites() {
+        index.onProductChanged(new ProductChangedEvent(2L, product(2, "LMP-02", "Floor Light", "Tall brass light")));
+        index.onProductChanged(new ProductChangedEvent(3L, null));
+
+        assertThat(index.search("lamp", 0, 10).items()).extracting(SearchHit::id).containsExactly(1L);
+        assertThat(index.search("brass light", 0, 10).items()).extracting(SearchHit::id).containsExactly(2L);
+    }
+
+    @Test
+    void stockChangesSwapTheHitWithoutReindexing() {
+        index.onStockChanged(new StockChangedEvent(List.of(new StockChangedEvent.Level(3L, 42, Instant.now()),
+                new StockChangedEvent.Level(99L, 1, Instant.now()))));
+
+        assertThat(index.search("clamp", 0, 10).items()).singleElement()
+                .isEqualTo(new SearchHit(3L, "CHR-01", "Office Chair", 1.0, 42, null, null));
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void leavesInactiveProductsOutAndKeepsNoDescription() {
+        var hidden = product(2, "LMP-02", "Floor Lamp", "Tall brass lamp");
+        hidden.setActive(false);
+        index.onProductChanged(new ProductChangedEvent(2L, hidden));
+
+        assertThat(index.search("lamp", 0, 10).items()).extracting(SearchHit::id).containsExactly(1L, 3L);
+        assertThat(index.search("brass", 0, 10).total()).isZero();
+        assertThat(index.search("clamp", 0, 10).items()).singleElement()
+                .isEqualTo(new SearchHit(3L, "CHR-01", "Office Chair", 1.0, 1, null, null));
+    }
+
+    @Test
+    void compactionKeepsDescriptionTermsSearchable() {
+        var target = new ProductSearchIndex.Index();
+        for (long id = 1; id <= 2000; id++) target.put(ProductView.of(product(id, "S-" + id, "Item " + id, "brass fitting")));
+        for (long id = 1; id <= 1500; id++) target.remove(id);
+        assertThat(target.needsCompaction()).isTrue();
+
+        var compacted = target.compact();
+
+        assertThat(compacted.live()).isEqualTo(500);
+        var result = compacted.search(Tokenizer.tokens("brass"), 0, 1000);
+        assertThat(result.total()).isEqualTo(500);
+        assertThat(result.items()).extracting(SearchHit::id).allSatisfy(id -> assertThat(id).isGreaterThan(1500L));
+    }
+}
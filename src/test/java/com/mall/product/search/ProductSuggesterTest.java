@@ -0,0 +1,87 @@
+package com.mall.product.search;
+
+import com.mall.product.ProductRepository;
+import com.mall.product.StockChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Slf4j
+class ProductSuggesterTest {
+
+    private static ProductSuggester suggester(List<SuggestSource> rows) {
+        var repo = mock(ProductRepository.class);
+        when(repo.findSuggestSources(eq(0L), any(Limit.class))).thenReturn(rows);
+        var s = new ProductSuggester(repo);
+        s.rebuild();
+        return s;
+    }
+
+    @Test
+    void matchesNamesWordsAndSkusWeightedByStock() {
+        var s = suggester(List.of(
+                new SuggestSource(1L, "LMP-01", "Desk Lamp", 0, true),
+                new SuggestSource(2L, "LMP-02", "Desk Lamp Pro", 500, true),
+                new SuggestSource(3L, "DSK-01", "Standing Desk", 3, true),
+                new SuggestSource(4L, "DSK-02", "Desk Hidden", 900, false)));
+
+        assertThat(s.suggest("desk", 10)).extracting(Suggestion::productId).containsExactly(2L, 3L, 1L);
+        assertThat(s.suggest("Lámp", 1)).extracting(Suggestion::productId).containsExactly(2L);
+        assertThat(s.suggest("lmp-0", 10)).extracting(Suggestion::productId).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(s.suggest("zzz", 10)).isEmpty();
+    }
+
+    @Test
+    void rebuildsForStockOnlyWhenTheRankingMoves() {
+        var repo = mock(ProductRepository.class);
+        when(repo.findSuggestSources(eq(0L), any(Limit.class))).thenReturn(List.of(new SuggestSource(1L, "LMP-01", "Desk Lamp", 5, true)));
+        var s = new ProductSuggester(repo);
+        s.rebuild();
+        clearInvocations(repo);
+
+        s.onStockChanged(new StockChangedEvent(List.of(new StockChangedEvent.Level(1L, 6, Instant.now()),
+                new StockChangedEvent.Level(9L, 0, Instant.now()))));
+        s.rebuildIfDirty();
+        verify(repo, never()).findSuggestSources(any(), any());
+
+        s.onStockChanged(new StockChangedEvent(List.of(new StockChangedEvent.Level(1L, 0, Instant.now()))));
+        s.rebuildIfDirty();
+        verify(repo).findSuggestSources(eq(0L), any(Limit.class));
+    }
+
+    /** Measures allocation over 100k products and 20k queries; runs with {@code -Pbenchmark}. */
+    @Test
+    @Tag("benchmark")
+    void allocatesLittlePerQuery() {
+        var rows = new ArrayList<SuggestSource>();
+        for (long i = 1; i <= 100_000; i++)
+            rows.add(new SuggestSource(i, "SKU-" + i, "Item " + (i % 977) + " model " + i, (int) (i % 50), true));
+        var s = suggester(rows);
+
+        var mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        for (int i = 0; i < 10_000; i++) s.suggest("item " + (i % 9), 10); // warm up
+        int queries = 10_000;
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < queries; i++) s.suggest("item " + (i % 9), 10);
+        long perQuery = (mx.getThreadAllocatedBytes(tid) - before) / queries;
+
+        log.info("suggest allocation per query: {} bytes", perQuery);
+        assertThat(perQuery).isLessThan(8 * 1024);
+    }
+}
@@ -0,0 +1,90 @@
+package com.mall.service;
+
+import com.mall.storage.LocalStorageBackend;
+import com.mall.storage.OpenFileCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDerivativeServiceTest {
+
+    @TempDir Path dir;
+    private ImageDerivativeService service;
+
+    @BeforeEach
+    void start() {
+        service = new ImageDerivativeService(new LocalStorageBackend(dir.toString(), new OpenFileCache(4)), 1, 4);
+    }
+
+    @AfterEach
+    void stop() { service.shutdown(); }
+
+    @Test
+    void variantUrlsRoundTrip() {
+        assertThat(ImageVariant.THUMBNAIL.urlOf("/uploads/product_1_a.png")).isEqualTo("/uploads/product_1_a.thumb.png");
+        assertThat(ImageVariant.MEDIUM.urlOf("/uploads/noext")).isEqualTo("/uploads/noext.medium");
+        assertThat(ImageVariant.THUMBNAIL.urlOf(null)).isNull();
+        assertThat(ImageVariant.originalOf("/uploads/product_1_a.thumb.png")).isEqualTo("/uploads/product_1_a.png");
+        assertThat(ImageVariant.originalOf("/uploads/noext.medium")).isEqualTo("/uploads/noext");
+        assertThat(ImageVariant.originalOf("/uploads/product_1_a.png")).isNull();
+    }
+
+    @Test
+    void rendersBoundedVariantsNextToTheOriginal() throws IOException {
+        Path jpg = write("photo.jpg", 3000, 1500, "jpg");
+        Path png = write("logo.png", 900, 1800, "png");
+
+        service.submit("photo.jpg").join();
+        service.submit("logo.png").join();
+
+        assertSize(dir.resolve("photo.thumb.jpg"), 200, 100);
+        assertSize(dir.resolve("photo.medium.jpg"), 640, 320);
+        assertSize(dir.resolve("logo.thumb.png"), 100, 200);
+        assertThat(Files.size(dir.resolve("photo.medium.jpg"))).isLessThan(Files.size(jpg));
+        try (var staged = Files.list(dir.resolve("tmp"))) {
+            assertThat(staged).isEmpty();
+        }
+
+        service.deleteVariants("photo.jpg");
+        assertThat(dir.resolve("photo.thumb.jpg")).doesNotExist();
+        assertThat(jpg).exists();
+    }
+
+    @Test
+    void unreadableUploadLeavesOnlyTheOriginal() throws IOException {
+        Path bogus = Files.writeString(dir.resolve("fake.png"), "not an image");
+
+        service.submit("fake.png").join();
+
+        assertThat(dir.resolve("fake.thumb.png")).doesNotExist();
+    }
+
+    private Path write(String name, int w, int h, String format) throws IOException {
+        var image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        for (int x = 0; x < w; x += 50) {
+            g.setColor(new Color(x % 255, (x * 7) % 255, (x * 13) % 255));
+            g.fillRect(x, 0, 50, h);
+        }
+        g.dispose();
+        Path file = dir.resolve(name);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+
+    private static void assertSize(Path file, int w, int h) throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        assertThat(image.getWidth()).isEqualTo(w);
+        assertThat(image.getHeight()).isEqualTo(h);
+    }
+}
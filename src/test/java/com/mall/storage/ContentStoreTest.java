@@ -0,0 +1,126 @@
+package com.mall.storage;
+
+import com.mall.service.ImageDerivativeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "storage.reclaim-grace=PT0S"
+})
+@Import({ContentStore.class, ImageDerivativeService.class, OpenFileCache.class, LocalStorageBackend.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ContentStoreTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.directory", uploads::toString);
+    }
+
+    @Autowired ContentStore store;
+    @Autowired StoredBlobRepository blobs;
+
+    @AfterEach
+    void tearDown() {
+        blobs.deleteAllInBatch();
+    }
+
+    private static MockMultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void identicalUploadsShareOneFile() throws Exception {
+        String first = store.store(file("a.TXT", "same bytes"));
+        String second = store.store(file("b.txt", "same bytes"));
+        String other = store.store(file("c.txt", "other bytes"));
+
+        assertThat(second).isEqualTo(first).matches("/uploads/cas/[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.txt");
+        assertThat(other).isNotEqualTo(first);
+        assertThat(Files.readString(uploads.resolve(first.substring("/uploads/".length())))).isEqualTo("same bytes");
+        try (var tmp = Files.list(uploads.resolve("tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+        assertThat(blobs.findById(ContentStore.hashOf(first).orElseThrow()).orElseThrow().getRefCount()).isEqualTo(2);
+    }
+
+    @Test
+    void fileIsReclaimedOnlyAfterTheLastReferenceIsReleased() throws Exception {
+        String url = store.store(file("a.txt", "shared"));
+        store.retain(url);
+        Path file = uploads.resolve(url.substring("/uploads/".length()));
+
+        store.release(url);
+        assertThat(store.reclaim()).isZero();
+        assertThat(file).exists();
+
+        store.release(url);
+        store.release(url);
+        var blob = blobs.findById(ContentStore.hashOf(url).orElseThrow()).orElseThrow();
+        assertThat(blob.getRefCount()).isZero();
+        assertThat(blob.getReleasedAt()).isNotNull();
+
+        Thread.sleep(5);
+        assertThat(store.reclaim()).isEqualTo(1);
+        assertThat(file).doesNotExist();
+        assertThat(blobs.existsById(blob.getHash())).isFalse();
+
+        // uploading the same bytes again writes a fresh copy
+        assertThat(store.store(file("again.txt", "shared"))).isEqualTo(url);
+        assertThat(file).exists();
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameNewFileAllSucceed() throws Exception {
+        int uploads = 8;
+        var start = new CountDownLatch(1);
+        var urls = new ArrayList<Future<String>>();
+        try (var pool = Executors.newFixedThreadPool(uploads)) {
+            for (int i = 0; i < uploads; i++) {
+                urls.add(pool.submit(() -> {
+                    start.await();
+                    return store.store(file("same.txt", "raced bytes"));
+                }));
+            }
+            start.countDown();
+            var stored = new HashSet<String>();
+            for (var f : urls) stored.add(f.get(30, TimeUnit.SECONDS));
+            assertThat(stored).hasSize(1);
+        }
+        String url = urls.get(0).get();
+        assertThat(blobs.findById(ContentStore.hashOf(url).orElseThrow()).orElseThrow().getRefCount()).isEqualTo(uploads);
+    }
+
+    @Test
+    void legacyUrlsAreIgnoredAndUnknownBlobsRejected() {
+        store.release("/uploads/product_1_1234.jpg");
+        store.retain("/profile-pictures/abc.png");
+
+        assertThatThrownBy(() -> store.retain("/uploads/cas/00/00/" + "0".repeat(64) + ".png"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
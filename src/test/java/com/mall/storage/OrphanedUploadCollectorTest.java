@@ -0,0 +1,128 @@
+package com.mall.storage;
+
+import com.mall.payment.Payment;
+import com.mall.payment.PaymentRepository;
+import com.mall.payment.PaymentStatus;
+import com.mall.product.Product;
+import com.mall.product.ProductRepository;
+import com.mall.service.ImageDerivativeService;
+import com.mall.user.User;
+import com.mall.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "storage.gc.grace=PT1H",
+        "storage.gc.quarantine-retention=P1D"
+})
+@Import({OrphanedUploadCollector.class, ContentStore.class, ImageDerivativeService.class, OpenFileCache.class, LocalStorageBackend.class})
+class OrphanedUploadCollectorTest {
+    private static final String HASH_A = "a".repeat(64), HASH_B = "b".repeat(64), HASH_C = "c".repeat(64);
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.directory", uploads::toString);
+    }
+
+    @Autowired OrphanedUploadCollector collector;
+    @Autowired ProductRepository products;
+    @Autowired UserRepository users;
+    @Autowired PaymentRepository payments;
+    @Autowired StoredBlobRepository blobs;
+    @Autowired TestEntityManager em;
+
+    private static Path write(String key, Duration age) throws Exception {
+        Path file = uploads.resolve(key);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, key);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+        return file;
+    }
+
+    private static String cas(String hash) {
+        return "cas/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".png";
+    }
+
+    @Test
+    void legacyOrphansAreQuarantinedAndReferencedFilesKept() throws Exception {
+        Duration old = Duration.ofHours(3);
+        Path productImage = write("product_1.png", old);
+        Path productThumb = write("product_1.thumb.png", old);
+        Path avatar = write("profile-pictures/me.png", old);
+        Path receipt = write("receipts/r.pdf", old);
+        Path orphan = write("product_2.png", old);
+        Path orphanThumb = write("product_2.thumb.png", old);
+        Path fresh = write("product_3.png", Duration.ZERO);
+        Path staged = write("tmp/upload-1.tmp", old);
+        Path expired = write("quarantine/gone.png", Duration.ofDays(2));
+
+        products.save(Product.builder().sku("P-1").name("One").price(1.0).stock(1).active(true).imageUrl("/uploads/product_1.png").build());
+        users.save(User.builder().email("me@example.com").profilePictureUrl("http://localhost:8080/profile-pictures/me.png").build());
+        payments.save(Payment.builder().orderId(1L).userEmail("me@example.com").status(PaymentStatus.PENDING)
+                .reference("REF-1").amount(1.0).receiptUrl("/receipts/r.pdf").build());
+
+        var report = collector.collect();
+
+        assertThat(productImage).exists();
+        assertThat(productThumb).exists();
+        assertThat(avatar).exists();
+        assertThat(receipt).exists();
+        assertThat(fresh).exists();
+        assertThat(orphan).doesNotExist();
+        assertThat(orphanThumb).doesNotExist();
+        assertThat(uploads.resolve("quarantine/product_2.png")).exists();
+        assertThat(uploads.resolve("quarantine/product_2.thumb.png")).exists();
+        assertThat(staged).doesNotExist();
+        assertThat(expired).doesNotExist();
+        assertThat(report.removed()).isEqualTo(4);
+
+        // the freshly quarantined files wait out their retention
+        collector.collect();
+        assertThat(uploads.resolve("quarantine/product_2.png")).exists();
+    }
+
+    @Test
+    void contentAddressedFilesAreReconciledWithTheirBlobRows() throws Exception {
+        Duration old = Duration.ofHours(3);
+        Instant longAgo = Instant.now().minus(old);
+        Path rowless = write(cas(HASH_A), old);
+        Path leaked = write(cas(HASH_B), old);
+        Path uncounted = write(cas(HASH_C), old);
+        blobs.save(StoredBlob.builder().hash(HASH_B).path(cas(HASH_B)).size(1).refCount(2).retainedAt(longAgo).build());
+        blobs.save(StoredBlob.builder().hash(HASH_C).path(cas(HASH_C)).size(1).refCount(0).releasedAt(longAgo).build());
+        payments.save(Payment.builder().orderId(1L).userEmail("me@example.com").status(PaymentStatus.PENDING)
+                .reference("REF-2").amount(1.0).receiptUrl("/uploads/" + cas(HASH_C)).build());
+
+        var report = collector.collect();
+        em.clear();
+
+        assertThat(report.adopted()).isEqualTo(1);
+        assertThat(report.repaired()).isEqualTo(2);
+        var adopted = blobs.findById(HASH_A).orElseThrow();
+        assertThat(adopted.getRefCount()).isZero();
+        assertThat(adopted.getReleasedAt()).isNotNull();
+        assertThat(blobs.findById(HASH_B).orElseThrow().getRefCount()).isZero();
+        assertThat(blobs.findById(HASH_C).orElseThrow().getRefCount()).isEqualTo(1);
+        // deletion is left to ContentStore.reclaim
+        assertThat(rowless).exists();
+        assertThat(leaked).exists();
+        assertThat(uncounted).exists();
+    }
+}
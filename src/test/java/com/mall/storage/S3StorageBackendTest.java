@@ -0,0 +1,85 @@
+package com.mall.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3StorageBackendTest {
+    private static final int PART_SIZE = 64 * 1024;
+
+    @TempDir Path dir;
+    private S3Stub s3;
+    private S3StorageBackend backend;
+
+    @BeforeEach
+    void start() throws Exception {
+        s3 = new S3Stub("AKIDTEST", "secret", "eu-west-1");
+        backend = new S3StorageBackend(s3.endpoint(), "mall-uploads", "eu-west-1", "AKIDTEST", "secret", PART_SIZE);
+    }
+
+    @AfterEach
+    void stop() { s3.close(); }
+
+    @Test
+    void smallObjectsRoundTripWithRanges() throws Exception {
+        Path file = Files.writeString(dir.resolve("a.txt"), "0123456789");
+
+        backend.put("cas/ab/cd/file name.txt", file, "text/plain");
+
+        assertThat(s3.objects.get("cas/ab/cd/file%20name.txt").contentType()).isEqualTo("text/plain");
+        assertThat(backend.stat("cas/ab/cd/file name.txt")).get().extracting(StorageBackend.StoredObject::size).isEqualTo(10L);
+        try (var in = backend.open("cas/ab/cd/file name.txt", 3, 6)) {
+            assertThat(new String(in.readAllBytes())).isEqualTo("345");
+        }
+
+        backend.delete("cas/ab/cd/file name.txt");
+        backend.delete("cas/ab/cd/file name.txt");
+        assertThat(backend.stat("cas/ab/cd/file name.txt")).isEmpty();
+        assertThatThrownBy(() -> backend.open("cas/ab/cd/file name.txt", 0, 1)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void aStoreIgnoringRangesStillYieldsTheRequestedSlice() throws Exception {
+        backend.put("plain.txt", Files.writeString(dir.resolve("b.txt"), "0123456789"), "text/plain");
+        s3.ignoreRanges = true;
+
+        try (var in = backend.open("plain.txt", 3, 6)) {
+            assertThat(new String(in.readAllBytes())).isEqualTo("345");
+        }
+    }
+
+    @Test
+    void largeObjectsGoUpAsStreamedMultipartParts() throws Exception {
+        byte[] data = new byte[PART_SIZE * 5 + 123];
+        new Random(3).nextBytes(data);
+        Path file = Files.write(dir.resolve("receipt.pdf"), data);
+
+        backend.put("receipts/big.pdf", file, "application/pdf");
+
+        assertThat(s3.partsReceived).hasValue(6);
+        assertThat(s3.largestPart).isEqualTo(PART_SIZE);
+        assertThat(s3.uploads).isEmpty();
+        assertThat(s3.objects.get("receipts/big.pdf").data()).isEqualTo(data);
+        try (var in = backend.open("receipts/big.pdf", PART_SIZE - 2, PART_SIZE + 2)) {
+            assertThat(in.readAllBytes()).containsExactly(data[PART_SIZE - 2], data[PART_SIZE - 1], data[PART_SIZE], data[PART_SIZE + 1]);
+        }
+    }
+
+    @Test
+    void wrongCredentialsAreRejected() throws Exception {
+        var forged = new S3StorageBackend(s3.endpoint(), "mall-uploads", "eu-west-1", "AKIDTEST", "not-the-secret", PART_SIZE);
+        Path file = Files.writeString(dir.resolve("a.txt"), "x");
+
+        assertThatThrownBy(() -> forged.put("a.txt", file, null)).hasMessageContaining("403");
+        assertThat(s3.objects).isEmpty();
+    }
+}
@@ -0,0 +1,165 @@
+package com.mall.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the slice of the S3 REST API that {@link S3StorageBackend} uses. Every
+ * request's SigV4 signature is recomputed from what actually arrived and rejected with 403 when it
+ * does not match.
+ */
+class S3Stub implements AutoCloseable {
+    private static final Pattern CREDENTIAL = Pattern.compile("Credential=([^/]+)/([^,]+), SignedHeaders=([^,]+), Signature=(\\w+)");
+    private static final Pattern PART = Pattern.compile("<PartNumber>(\\d+)</PartNumber><ETag>([^<]+)</ETag>");
+
+    record Obj(byte[] data, String contentType, long lastModified) {}
+
+    final Map<String, Obj> objects = new ConcurrentHashMap<>();
+    final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    final AtomicInteger partsReceived = new AtomicInteger();
+    volatile int largestPart;
+    /** Answers ranged GETs with the whole object and 200, as some S3-compatible stores do. */
+    volatile boolean ignoreRanges;
+
+    private final HttpServer server;
+    private final String accessKey, secretKey, region;
+    private final AtomicInteger ids = new AtomicInteger();
+
+    S3Stub(String accessKey, String secretKey, String region) throws IOException {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() { return "http://localhost:" + server.getAddress().getPort(); }
+
+    @Override
+    public void close() { server.stop(0); }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            byte[] body = ex.getRequestBody().readAllBytes();
+            if (!signatureMatches(ex)) {
+                respond(ex, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            String path = ex.getRequestURI().getRawPath();
+            String key = path.substring(path.indexOf('/', 1) + 1);
+            Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+            String method = ex.getRequestMethod();
+
+            if (method.equals("POST") && query.containsKey("uploads")) {
+                String id = "upload-" + ids.incrementAndGet();
+                uploads.put(id, new TreeMap<>());
+                respond(ex, 200, "<InitiateMultipartUploadResult><UploadId>" + id + "</UploadId></InitiateMultipartUploadResult>");
+            } else if (method.equals("PUT") && query.containsKey("partNumber")) {
+                var parts = uploads.get(query.get("uploadId"));
+                if (parts == null) { respond(ex, 404, "<Error><Code>NoSuchUpload</Code></Error>"); return; }
+                parts.put(Integer.parseInt(query.get("partNumber")), body);
+                partsReceived.incrementAndGet();
+                largestPart = Math.max(largestPart, body.length);
+                ex.getResponseHeaders().add("ETag", "\"etag-" + query.get("partNumber") + "\"");
+                respond(ex, 200, "");
+            } else if (method.equals("POST") && query.containsKey("uploadId")) {
+                var parts = uploads.remove(query.get("uploadId"));
+                var all = new ByteArrayOutputStream();
+                Matcher m = PART.matcher(new String(body, StandardCharsets.UTF_8));
+                int expected = 1;
+                while (m.find()) {
+                    int n = Integer.parseInt(m.group(1));
+                    if (parts == null || n != expected++ || !parts.containsKey(n)) {
+                        respond(ex, 200, "<Error><Code>InvalidPart</Code></Error>");
+                        return;
+                    }
+                    all.write(parts.get(n));
+                }
+                objects.put(key, new Obj(all.toByteArray(), null, System.currentTimeMillis()));
+                respond(ex, 200, "<CompleteMultipartUploadResult/>");
+            } else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                respond(ex, 204, null);
+            } else if (method.equals("PUT")) {
+                objects.put(key, new Obj(body, ex.getRequestHeaders().getFirst("content-type"), System.currentTimeMillis()));
+                respond(ex, 200, "");
+            } else if (method.equals("DELETE")) {
+                objects.remove(key);
+                respond(ex, 204, null);
+            } else {
+                Obj o = objects.get(key);
+                if (o == null) { respond(ex, 404, method.equals("HEAD") ? null : "<Error><Code>NoSuchKey</Code></Error>"); return; }
+                ex.getResponseHeaders().add("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME
+                        .format(ZonedDateTime.ofInstant(java.time.Instant.ofEpochMilli(o.lastModified()), ZoneOffset.UTC)));
+                if (method.equals("HEAD")) {
+                    ex.getResponseHeaders().add("Content-Length", String.valueOf(o.data().length));
+                    ex.sendResponseHeaders(200, -1);
+                    return;
+                }
+                String range = ex.getRequestHeaders().getFirst("range");
+                byte[] data = o.data();
+                int status = 200;
+                if (range != null && !ignoreRanges) {
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    int from = Integer.parseInt(bounds[0]), to = Math.min(data.length - 1, Integer.parseInt(bounds[1]));
+                    data = Arrays.copyOfRange(data, from, to + 1);
+                    status = 206;
+                }
+                ex.sendResponseHeaders(status, data.length);
+                ex.getResponseBody().write(data);
+            }
+        }
+    }
+
+    private boolean signatureMatches(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("authorization");
+        String amzDate = ex.getRequestHeaders().getFirst("x-amz-date");
+        if (auth == null || amzDate == null) return false;
+        Matcher m = CREDENTIAL.matcher(auth);
+        if (!m.find() || !m.group(1).equals(accessKey)) return false;
+        var headers = new TreeMap<String, String>();
+        for (String name : m.group(3).split(";")) {
+            String value = ex.getRequestHeaders().getFirst(name);
+            if (value == null) return false;
+            headers.put(name, value);
+        }
+        String canonical = SigV4.canonicalRequest(ex.getRequestMethod(), ex.getRequestURI().getRawPath(),
+                ex.getRequestURI().getRawQuery(), headers, ex.getRequestHeaders().getFirst("x-amz-content-sha256"));
+        return SigV4.authorization(accessKey, secretKey, region, amzDate, headers, canonical).equals(auth);
+    }
+
+    private static Map<String, String> query(String raw) {
+        var map = new HashMap<String, String>();
+        if (raw == null) return map;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            map.put(eq < 0 ? pair : pair.substring(0, eq),
+                    eq < 0 ? "" : java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        if (body == null) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) ex.getResponseBody().write(bytes);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mall.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class UploadControllerTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @TempDir Path uploads;
+    private OpenFileCache cache;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(uploads.resolve("cas/ab/ab"));
+        Files.writeString(uploads.resolve("cas/ab/ab/" + HASH + ".png"), "0123456789");
+        Files.writeString(uploads.resolve("legacy.txt"), "legacy");
+        cache = new OpenFileCache(4);
+        mvc = MockMvcBuilders.standaloneSetup(new UploadController(new LocalStorageBackend(uploads.toString(), cache), cache, Long.MAX_VALUE)).build();
+    }
+
+    @AfterEach
+    void tearDown() { cache.closeAll(); }
+
+    @Test
+    void contentAddressedFilesAreImmutable() throws Exception {
+        var result = mvc.perform(get("/uploads/cas/ab/ab/" + HASH + ".png"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andReturn();
+        long lastModified = result.getResponse().getDateHeader(HttpHeaders.LAST_MODIFIED);
+
+        mvc.perform(get("/uploads/cas/ab/ab/" + HASH + ".png").header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mvc.perform(get("/uploads/legacy.txt"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600, public"));
+    }
+
+    @Test
+    void servesSingleByteRanges() throws Exception {
+        String url = "/uploads/cas/ab/ab/" + HASH + ".png";
+        mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=2-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10"))
+                .andExpect(content().string("234"));
+        mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("789"));
+        mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=7-"))
+                .andExpect(content().string("789"));
+        mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+        mvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void unrenderedVariantFallsBackToOriginalWithoutCaching() throws Exception {
+        mvc.perform(get("/uploads/cas/ab/ab/" + HASH + ".thumb.png"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"));
+        mvc.perform(get("/uploads/missing.png")).andExpect(status().isNotFound());
+        mvc.perform(get("/uploads/../secret.txt")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void evictedHandleStopsServingDeletedFile() throws Exception {
+        Path file = uploads.resolve("legacy.txt");
+        mvc.perform(get("/uploads/legacy.txt")).andExpect(content().string("legacy"));
+
+        Files.delete(file);
+        cache.evict(file.toAbsolutePath().normalize());
+
+        mvc.perform(get("/uploads/legacy.txt")).andExpect(status().isNotFound());
+        assertThat(UploadController.parseRange("bytes=5-2", 10)).isEmpty();
+    }
+}
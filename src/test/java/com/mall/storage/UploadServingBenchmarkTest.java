@@ -0,0 +1,115 @@
+package com.mall.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Serves the same files through UploadController and through the resource handler that used to
+ * serve uploads, over a real Tomcat connector, and logs the throughput of each. Runs with
+ * {@code -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(classes = UploadServingBenchmarkTest.App.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UploadServingBenchmarkTest {
+    private static final int THREADS = 8;
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.directory", uploads::toString);
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class})
+    @Import({UploadController.class, OpenFileCache.class, LocalStorageBackend.class})
+    static class App implements WebMvcConfigurer {
+        @Value("${file.upload.directory}") String dir;
+
+        @Override
+        public void addResourceHandlers(ResourceHandlerRegistry registry) {
+            registry.addResourceHandler("/legacy/**").addResourceLocations("file:" + dir + "/");
+        }
+    }
+
+    @LocalServerPort int port;
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void zeroCopyEndpointVersusResourceHandler() throws Exception {
+        byte[] large = new byte[1 << 20], small = new byte[24 << 10];
+        new Random(7).nextBytes(large);
+        new Random(8).nextBytes(small);
+        Path dir = Files.createDirectories(uploads.resolve("cas/00/00"));
+        Files.write(dir.resolve("large.jpg"), large);
+        Files.write(dir.resolve("small.jpg"), small);
+
+        for (String file : new String[]{"large.jpg", "small.jpg"}) {
+            int requests = file.startsWith("large") ? 200 : 2000;
+            long size = file.startsWith("large") ? large.length : small.length;
+            String path = "cas/00/00/" + file;
+            run("/legacy/" + path, requests / 4, size);   // warm up
+            run("/uploads/" + path, requests / 4, size);
+            double legacy = run("/legacy/" + path, requests, size);
+            double zeroCopy = run("/uploads/" + path, requests, size);
+            log.info(String.format("%s x%d: resource handler %.0f req/s (%.0f MB/s), upload endpoint %.0f req/s (%.0f MB/s)",
+                    file, requests, legacy, legacy * size / 1e6, zeroCopy, zeroCopy * size / 1e6));
+        }
+    }
+
+    /** Requests per second for {@code requests} GETs spread over {@link #THREADS} clients. */
+    private double run(String path, int requests, long expectedSize) throws Exception {
+        var uri = URI.create("http://localhost:" + port + path);
+        try (var pool = Executors.newFixedThreadPool(THREADS)) {
+            long start = System.nanoTime();
+            var results = new ArrayList<Future<Long>>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    long bytes = 0;
+                    for (int i = 0; i < requests / THREADS; i++) {
+                        var response = http.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray());
+                        assertThat(response.statusCode()).isEqualTo(200);
+                        bytes += response.body().length;
+                    }
+                    return bytes;
+                }));
+            }
+            long total = 0;
+            for (var r : results) total += r.get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertThat(total).isEqualTo(expectedSize * (requests / THREADS) * THREADS);
+            return (requests / THREADS) * THREADS / seconds;
+        }
+    }
+}